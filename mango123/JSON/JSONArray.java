@@ -1,10 +1,15 @@
 package mango123.JSON;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <p>This class represents a JSON array. It cannot be constructed directly. Instead, use the static
@@ -12,11 +17,23 @@ import java.util.List;
  * of JSONArray.</p>
  * <p>e.g. a JSONTokener containing the input "{@code [1, true, "d", [1], {"a": 1}]" can be passed
  * into {@code .parse()} to get an instance of JSONArray containing the above elements.</p>
+ * <p>A JSONArray can be made immutable with {@link #freeze()}. The mutators of a frozen JSONArray
+ * throw an <code>UnsupportedOperationException</code>.</p>
  * @version 0.8
  * @see JSONObject
  */
 public class JSONArray {
-	private List<Object> list;
+	final List<Object> list;
+
+	/**
+	 * Set by .freeze(), checked by the mutators
+	 */
+	boolean frozen;
+
+	/**
+	 * The structural hash, kept once it is computed if frozen, see JSONEquality
+	 */
+	int hash;
 	
 	/**
 	 * Prevent direct instantiation. Must use .parse() and .newEmptyInstance()
@@ -34,6 +51,19 @@ public class JSONArray {
 		return new JSONArray(new ArrayList<Object>());
 	}
 
+	/**
+	 * <p>Creates and returns a new, empty instance of {@code JSONArray} that can be used by many
+	 * threads at the same time without locking.</p>
+	 * <p>Every modification copies the underlying array, so it suits arrays that are read and
+	 * written out much more often than they are modified. Iterating, .toString() and .write()
+	 * work on a snapshot: they never throw a <code>ConcurrentModificationException</code> and
+	 * never block the threads modifying the JSONArray.</p>
+	 * @return an empty, thread-safe instance of JSONArray
+	 */
+	public static JSONArray newConcurrentInstance() {
+		return new JSONArray(new CopyOnWriteArrayList<Object>());
+	}
+
 	/**
 	 * Parses and constructs a <code>JSONArray</code> from a <code>JSONTokener</code>.
 	 * @param tokener the JSON input
@@ -41,6 +71,46 @@ public class JSONArray {
 	 * @throws JSONException any error that may have occurred during parsing
 	 */
 	public static JSONArray parse(JSONTokener tokener) throws JSONException {
+		JSONEvents.Parse event = new JSONEvents.Parse();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			return parseDocument(tokener);
+		}
+		long start = JSONEvents.parseStarted(tokener, event);
+		try {
+			JSONArray array = parseDocument(tokener);
+			JSONEvents.parsed(tokener, event, start, array);
+			return array;
+		}
+		catch(JSONException e) {
+			JSONEvents.parseFailed(tokener, event, JSONArray.class, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Parses a <code>JSONArray</code> from a <code>JSONTokener</code> like .parse(), but returns the
+	 * error in the result instead of throwing a <code>JSONException</code>, see {@link JSONParseResult}.
+	 * @param tokener the JSON input
+	 * @return the result, with the <code>JSONArray</code> if the input is valid
+	 */
+	public static JSONParseResult<JSONArray> tryParse(JSONTokener tokener) {
+		boolean quiet = tokener.quiet;
+		tokener.quiet = true;
+		try {
+			return JSONParseResult.valid(parse(tokener));
+		}
+		catch(JSONException e) {
+			return JSONParseResult.invalid(tokener.errorCode, tokener.errorOffset);
+		}
+		finally {
+			tokener.quiet = quiet;
+		}
+	}
+
+	/**
+	 * Parse the whole input of the tokener, see .parse()
+	 */
+	private static JSONArray parseDocument(JSONTokener tokener) throws JSONException {
 		//parseArrayFrom() requires the '[' to be read
 		if (tokener.nextToken() != JSONTokener.LEFT_SQUARE) {
 			throw tokener.newSyntaxError("JSON array needs to start with '[");
@@ -50,12 +120,41 @@ public class JSONArray {
 
 		//if that's not the end of the JSON input -> syntax error
 		if (tokener.nextToken() != null) {
-			throw tokener.newSyntaxError("JSON array needs to end with ']'");
+			throw tokener.newSyntaxError(JSONParseResult.Error.TRAILING_INPUT, "JSON array needs to end with ']'");
 		}
 
 		return array;
 	}
 
+	/**
+	 * <p>Parses and constructs a <code>JSONArray</code> from a UTF-8 file asynchronously.</p>
+	 * <p>The file is read with an <code>AsynchronousFileChannel</code> and parsed by the threads
+	 * that complete the reads, so no thread is blocked waiting for the disk, and the next chunk
+	 * of the file is read while the current one is parsed.</p>
+	 * @param path the file containing the JSON input
+	 * @return a future completed with a <code>JSONArray</code> that represents the JSON array, or
+	 *         completed exceptionally with a <code>JSONException</code> if any syntax error is
+	 *         encountered or an <code>IOException</code> if the file cannot be read
+	 */
+	public static CompletableFuture<JSONArray> parseAsync(Path path) {
+		return parseAsync(path, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * <p>Parses and constructs a <code>JSONArray</code> from a UTF-8 file asynchronously, as
+	 * {@link #parseAsync(Path)} does, within the specified limits and with numbers of the
+	 * specified type, as {@link JSONFeedParser#setLimits(JSONLimits)} and
+	 * {@link JSONFeedParser#setNumberPolicy(JSONNumberPolicy)} apply them.</p>
+	 * @param path the file containing the JSON input
+	 * @param limits the limits of the input
+	 * @param numberPolicy the type of the numbers
+	 * @return a future completed as by {@link #parseAsync(Path)}, or completed exceptionally with a
+	 *         <code>JSONException</code> if a limit is exceeded
+	 */
+	public static CompletableFuture<JSONArray> parseAsync(Path path, JSONLimits limits, JSONNumberPolicy numberPolicy) {
+		return JSONAsyncParse.parse(path, JSONArray.class, limits, numberPolicy);
+	}
+
 	/**
 	 * Returns the length of the JSONArray
 	 * @return the length of the JSONArray
@@ -115,7 +214,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public Integer getInt(int index) {
-		Object ob = list.get(index);
+		Object ob = JSONNumber.decoded(list.get(index));
 		return (ob instanceof Integer) ? (Integer) ob : null;
 	}
 
@@ -128,7 +227,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public Long getLong(int index) {
-		Object ob = list.get(index);
+		Object ob = JSONNumber.decoded(list.get(index));
 		return (ob instanceof Long) ? (Long) ob : null;
 	}
 	
@@ -141,7 +240,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public BigInteger getBigInt(int index) {
-		Object ob = list.get(index);
+		Object ob = JSONNumber.decoded(list.get(index));
 		return (ob instanceof BigInteger) ? (BigInteger) ob : null;
 	}
 	
@@ -154,7 +253,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public Double getDouble(int index) {
-		Object ob = list.get(index);
+		Object ob = JSONNumber.decoded(list.get(index));
 		return (ob instanceof Double) ? (Double) ob : null;
 	}
 	
@@ -167,7 +266,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public BigDecimal getDecimal(int index) {
-		Object ob = list.get(index);
+		Object ob = JSONNumber.decoded(list.get(index));
 		return (ob instanceof BigDecimal) ? (BigDecimal) ob : null;
 	}
 	
@@ -230,6 +329,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, String value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -243,6 +343,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, Integer value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -256,6 +357,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, Long value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -269,6 +371,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, Double value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -282,6 +385,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, BigInteger value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -295,6 +399,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, BigDecimal value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -308,6 +413,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, Boolean value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -321,6 +427,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, JSONObject value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -334,6 +441,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray set(int index, JSONArray value) {
+		checkNotFrozen();
 		list.set(index, value);
 		return this;
 	}
@@ -346,10 +454,171 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray setNull(int index) {
+		checkNotFrozen();
 		list.set(index, null);
 		return this;
 	}
 
+	/**
+	 * <p>Returns a new JSONArray with the element at the specified index replaced, leaving this
+	 * JSONArray unchanged. The new JSONArray is frozen and shares all its unchanged structure with
+	 * this one, so the update takes O(log n) time and memory instead of copying the whole array.</p>
+	 * <p>Updating a JSONArray that was not created by this method or {@link #persistent()} indexes
+	 * its elements in O(n) on every call, so to apply many updates to such a JSONArray, convert it
+	 * once with {@link #persistent()} and update the result. This JSONArray and the value are
+	 * left as they are: a JSONObject or JSONArray in them that is not frozen is copied, so the
+	 * caller can go on modifying it without changing the result.</p>
+	 * @param index the array index
+	 * @param value the <code>String</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, String value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>Integer</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>Integer</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, Integer value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>Long</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>Long</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, Long value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>BigInteger</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>BigInteger</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, BigInteger value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>Double</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>Double</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, Double value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>BigDecimal</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>BigDecimal</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, BigDecimal value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>Boolean</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>Boolean</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, Boolean value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>JSONObject</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>JSONObject</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, JSONObject value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to the <code>JSONArray</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @param value the <code>JSONArray</code> to be set
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSet(int index, JSONArray value) {
+		return withSetValue(index, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONArray with the element at the index set to <code>null</code>. See
+	 * {@link #withSet(int, String)}.</p>
+	 * @param index the array index
+	 * @return a new frozen JSONArray with the element replaced
+	 * @throw ArrayIndexOutOfBoundsException if the index is out of range (<code>index < 0 ||
+	 *        index >= size()</code>)
+	 */
+	public JSONArray withSetNull(int index) {
+		return withSetValue(index, null);
+	}
+
+	/**
+	 * Used by the .withSet() methods
+	 */
+	private JSONArray withSetValue(int index, Object value) {
+		JSONArray array = new JSONArray(((JSONPersistentVector) persistent().list).withSet(index, JSONObject.frozenCopy(value)));
+		array.frozen = true;
+		return array;
+	}
+
+	/**
+	 * <p>Returns a frozen JSONArray with the same elements as this one that the .withSet() methods
+	 * update in O(log n). This JSONArray is returned itself if it was created by a .withSet()
+	 * method or by this method, otherwise its elements are indexed once in O(n) and a JSONObject
+	 * or JSONArray in it that is not frozen is copied, as by {@link #withSet(int, String)}.</p>
+	 * @return a frozen JSONArray that is updated in O(log n)
+	 */
+	public JSONArray persistent() {
+		if (list instanceof JSONPersistentVector) {
+			return this;
+		}
+		JSONArray array = new JSONArray(JSONPersistentVector.copyOf(list));
+		array.frozen = true;
+		return array;
+	}
+
 	/**
 	 * <p>Inserts the specified <code>String</code> at the specified index.</p>
 	 * @param index the array index
@@ -359,6 +628,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, String value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -373,6 +643,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, Integer value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -386,6 +657,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, Long value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -400,6 +672,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, Double value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -418,6 +691,7 @@ public class JSONArray {
 	 * @throw IllegalArgumentException if an instance of a subclass of BigInteger is passed as the value
 	 */
 	public JSONArray add(int index, BigInteger value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -436,6 +710,7 @@ public class JSONArray {
 	 * @throw IllegalArgumentException if an instance of a subclass of BigDecimal is passed as the value
 	 */
 	public JSONArray add(int index, BigDecimal value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -449,6 +724,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, Boolean value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -462,6 +738,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, JSONObject value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -475,6 +752,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray add(int index, JSONArray value) {
+		checkNotFrozen();
 		list.add(index, value);
 		return this;
 	}
@@ -487,6 +765,7 @@ public class JSONArray {
 	 *        index > size()</code>)
 	 */
 	public JSONArray addNull(int index) {
+		checkNotFrozen();
 		list.add(index, null);
 		return this;
 	}
@@ -496,6 +775,7 @@ public class JSONArray {
 	 * @return a reference to this object
 	 */
 	public JSONArray clear() {
+		checkNotFrozen();
 		list.clear();
 		return this;
 	}
@@ -508,6 +788,7 @@ public class JSONArray {
 	 *        index >= size()</code>)
 	 */
 	public JSONArray remove(int index) {
+		checkNotFrozen();
 		list.remove(index);
 		return this;
 	}
@@ -515,13 +796,15 @@ public class JSONArray {
 	/**
 	 * <p>Returns an iterator over the elements of this JSONArray in proper sequence.</p>
 	 * <p>The iterator supports the <code>.remove()</code> method defined by the
-	 * <code>Iterator</code> interface.</p>
+	 * <code>Iterator</code> interface, unless this JSONArray is frozen or was created by
+	 * {@link #newConcurrentInstance()}, where it throws an <code>UnsupportedOperationException</code>.</p>
 	 * <p>This iterator can throw a <code>ConcurrentModificationException</code> if a runtime 
-	 * concurrent modification is encountered.</p>
+	 * concurrent modification is encountered. The iterator of a concurrent JSONArray goes over a
+	 * snapshot of the elements taken when it is created, and never throws it.</p>
 	 * @return an iterator of this array
 	 */
 	public Iterator<Object> iterator() {
-		return list.iterator();
+		return frozen ? Collections.unmodifiableList(list).iterator() : list.iterator();
 	}
 
 	/**
@@ -532,6 +815,84 @@ public class JSONArray {
 		return list.toArray();
 	}
 	
+	/**
+	 * <p>Makes this JSONArray and every JSONObject and JSONArray nested in it immutable, in place
+	 * and without copying anything. A nested JSONObject or JSONArray can be frozen on its own
+	 * without freezing the containers around it.</p>
+	 * <p>Reading a frozen JSONArray needs no synchronization, so one frozen document can be shared
+	 * by any number of threads once it is safely published to them: through a happens-before edge
+	 * such as a final or volatile field, a concurrent collection, a lock, or starting the thread.
+	 * Freezing does not publish the document by itself, and a thread that gets it through a data
+	 * race may see it unfrozen or only partly built.</p>
+	 * <p>The document is walked with a stack of its own, so it can be nested to any depth.</p>
+	 * @return a reference to this object
+	 */
+	public JSONArray freeze() {
+		if (!frozen) {
+			JSONObject.freeze(this);
+		}
+		return this;
+	}
+
+	/**
+	 * <p>Returns <code>true</code> if this JSONArray has been frozen by {@link #freeze()}.</p>
+	 * @return <code>true</code> if this JSONArray is immutable
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Used by the mutators to reject modification of a frozen JSONArray
+	 */
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException("the JSONArray is frozen");
+		}
+	}
+
+	/**
+	 * <p>Writes the JSONArray in JSON to the specified <code>Appendable</code> (e.g. a
+	 * <code>Writer</code> or a <code>StringBuilder</code>), in the same format as
+	 * {@link #toString()}.</p>
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public void write(Appendable out) throws IOException {
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			JSONSerializer.writeArray(list, out);
+			return;
+		}
+		long start = JSONEvents.serializeStarted(event);
+		JSONMetrics.CountingAppendable counting = new JSONMetrics.CountingAppendable(out);
+		JSONSerializer.writeArray(list, counting);
+		JSONEvents.serialized(event, start, counting.chars, this);
+	}
+
+	/**
+	 * <p>Returns true if the other one is a JSONArray with equal elements, in the same order. Numbers are
+	 * equal if they have the same value, whatever their type, e.g. 1, 1L, 1.0 and
+	 * new BigDecimal("1.00"). Nested objects and arrays are compared the same way.</p>
+	 * <p>Two frozen ones are compared by their hashes first.</p>
+	 * @param o the object to compare to
+	 * @return true if they are structurally equal
+	 */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof JSONArray && JSONEquality.equal(this, o);
+	}
+
+	/**
+	 * <p>Returns a hash consistent with .equals(). It is computed from the whole document every
+	 * time, except once frozen, when it is kept.</p>
+	 * @return the structural hash
+	 */
+	@Override
+	public int hashCode() {
+		return JSONEquality.hash(this);
+	}
+
 	/**
 	 * <p>Returns the string representation of the JSONArray in JSON.</p>
 	 * <p>The format will be the most compact (no whitespaces) and strictly conform to JSON.</p>
@@ -540,24 +901,27 @@ public class JSONArray {
 	 */
 	@Override
 	public String toString() {
-		StringBuilder str = new StringBuilder().append('[');
-
-		int size = list.size(), i = 0;
-		for (Object ob : list) {
-			if (ob instanceof String) {
-				str.append('"')
-						.append(JSONTokener.escapeStr((String) ob))
-						.append('"');
-			}
-			else {
-				str.append(ob);
-			}
-
-			if (++i < size) {
-				str.append(',');
-			}
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			return serialize();
+		}
+		long start = JSONEvents.serializeStarted(event);
+		String str = serialize();
+		JSONEvents.serialized(event, start, str.length(), this);
+		return str;
+	}
+
+	/**
+	 * The compact JSON of the JSONArray, without recording an event
+	 */
+	private String serialize() {
+		StringBuilder str = new StringBuilder();
+		try {
+			JSONSerializer.writeArray(list, str);
+		}
+		catch(IOException e) {
+			throw new IllegalStateException(e); //StringBuilder does not throw IOException
 		}
-		str.append(']');
 		return str.toString();
 	}
-}
\ No newline at end of file
+}
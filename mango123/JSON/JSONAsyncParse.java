@@ -0,0 +1,191 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Parses a file with an AsynchronousFileChannel and a JSONFeedParser. Two buffers are used so the
+ * next chunk is read from the disk while the current one is parsed, and no thread ever waits for
+ * the disk: each chunk is parsed by the thread that completes its read, or by the thread that
+ * parsed the previous chunk if it finishes after the read.
+ */
+final class JSONAsyncParse<T> implements CompletionHandler<Integer, ByteBuffer> {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final AsynchronousFileChannel channel;
+	private final Class<T> type;
+	private final CompletableFuture<T> result = new CompletableFuture<T>();
+	private final JSONFeedParser parser;
+	private final ByteBuffer[] buffers;
+	private long position;
+
+	/**
+	 * Bytes read by the last read that completed
+	 */
+	private volatile int lastRead;
+
+	/**
+	 * Counts down the read and the parsing of the previous chunk, whichever finishes last parses
+	 * the chunk that was read
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private JSONAsyncParse(AsynchronousFileChannel channel, Class<T> type, int bufferSize, JSONFeedParser parser) {
+		this.channel = channel;
+		this.type = type;
+		this.parser = parser;
+		this.buffers = new ByteBuffer[] {ByteBuffer.allocate(bufferSize), ByteBuffer.allocate(bufferSize)};
+	}
+
+	/**
+	 * Parse a file that contains a single document of the type (JSONObject, JSONArray, or Object
+	 * for either), within the limits and with the number policy
+	 */
+	static <T> CompletableFuture<T> parse(Path path, Class<T> type, JSONLimits limits, JSONNumberPolicy numberPolicy) {
+		JSONFeedParser parser = new JSONFeedParser().setLimits(limits).setNumberPolicy(numberPolicy);
+		AsynchronousFileChannel channel;
+		int bufferSize;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+			bufferSize = (int) Math.min(channel.size() + 1, BUFFER_SIZE);
+		} catch(IOException e) {
+			CompletableFuture<T> failed = new CompletableFuture<T>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+
+		JSONAsyncParse<T> parse = new JSONAsyncParse<T>(channel, type, bufferSize, parser);
+		parse.pending.set(1);
+		channel.read(parse.buffers[0], 0, parse.buffers[0], parse);
+		return parse.result;
+	}
+
+	/**
+	 * Parse the files, with at most maxOpenFiles of them being read at the same time
+	 */
+	static CompletableFuture<List<Object>> parseAll(List<Path> paths, int maxOpenFiles, final JSONLimits limits,
+	                                                final JSONNumberPolicy numberPolicy) {
+		if (limits == null || numberPolicy == null) {
+			throw new NullPointerException(limits == null ? "limits is null" : "numberPolicy is null");
+		}
+		final Path[] files = paths.toArray(new Path[paths.size()]);
+		final Object[] values = new Object[files.length];
+		final CompletableFuture<List<Object>> result = new CompletableFuture<List<Object>>();
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger remaining = new AtomicInteger(files.length);
+		if (files.length == 0) {
+			result.complete(new ArrayList<Object>());
+			return result;
+		}
+
+		//each of these starts the next file when one of its files is done
+		Runnable start = new Runnable() {
+			public void run() {
+				final int i = next.getAndIncrement();
+				if (i >= files.length || result.isDone()) {
+					return;
+				}
+				final Runnable self = this;
+				parse(files[i], Object.class, limits, numberPolicy).whenComplete(new BiConsumer<Object, Throwable>() {
+					public void accept(Object value, Throwable e) {
+						if (e != null) {
+							result.completeExceptionally(e);
+							return;
+						}
+						values[i] = value;
+						if (remaining.decrementAndGet() == 0) {
+							result.complete(new ArrayList<Object>(Arrays.asList(values)));
+						}
+						else {
+							self.run();
+						}
+					}
+				});
+			}
+		};
+		for (int i = 0; i < Math.min(maxOpenFiles, files.length); i++) {
+			start.run();
+		}
+		return result;
+	}
+
+	public void completed(Integer bytesRead, ByteBuffer buffer) {
+		lastRead = bytesRead;
+		if (pending.decrementAndGet() == 0) {
+			run(buffer);
+		}
+	}
+
+	public void failed(Throwable e, ByteBuffer buffer) {
+		close();
+		result.completeExceptionally(e);
+	}
+
+	/**
+	 * Parse the chunks that have been read, starting with the one in buffer, until the next read
+	 * is still in progress
+	 */
+	private void run(ByteBuffer buffer) {
+		try {
+			while (true) {
+				int n = lastRead;
+				if (n < 0) {
+					finish();
+					return;
+				}
+				buffer.flip();
+				position += n;
+
+				ByteBuffer next = buffer == buffers[0] ? buffers[1] : buffers[0];
+				next.clear();
+				pending.set(2);
+				channel.read(next, position, next, this);
+
+				parser.feed(buffer);
+				if (pending.decrementAndGet() != 0) {
+					return; //.completed() continues once the read is done
+				}
+				buffer = next;
+			}
+		} catch(JSONException e) {
+			close();
+			result.completeExceptionally(e);
+		} catch(RuntimeException e) {
+			close();
+			result.completeExceptionally(e);
+		}
+	}
+
+	private void finish() throws JSONException {
+		close();
+		parser.endOfInput();
+		Object value = parser.poll();
+		if (value == null) {
+			throw new JSONException("Syntax error: JSON document needs to start with '{' or '['");
+		}
+		else if (parser.poll() != null) {
+			throw new JSONException("Syntax error: JSON document needs to end after its closing '}' or ']'");
+		}
+		else if (!type.isInstance(value)) {
+			throw new JSONException(type == JSONObject.class
+			        ? "Syntax error: JSON object needs to start with '{" : "Syntax error: JSON array needs to start with '[");
+		}
+		result.complete(type.cast(value));
+	}
+
+	private void close() {
+		try {
+			channel.close();
+		} catch(IOException e) {} //swallow, the file has been read
+	}
+}
@@ -0,0 +1,47 @@
+package mango123.JSON;
+
+/**
+ * <p>Constants of the binary encoding written by JSONBinaryWriter and read by JSONBinaryReader.</p>
+ * <p>A stream starts with the header 'J' 'B' VERSION FLAGS, followed by any number of values. A
+ * value is a tag byte followed by its payload:</p>
+ * <ul>
+ * <li>NULL, FALSE, TRUE: no payload</li>
+ * <li>INT, LONG: the zigzag encoded number as an unsigned LEB128 varint</li>
+ * <li>DOUBLE: the 8 bytes of the IEEE 754 bits, big-endian</li>
+ * <li>BIG_INTEGER: varint length, then the two's complement bytes</li>
+ * <li>BIG_DECIMAL: zigzag varint scale, varint length, then the bytes of the unscaled value</li>
+ * <li>STRING: varint length in bytes, then the string in UTF-8 (lone surrogates are encoded as
+ * 3 byte sequences so every Java string survives the round trip)</li>
+ * <li>STRING_REF: varint index of a string in the dictionary</li>
+ * <li>OBJECT: varint number of entries, then the key (STRING or STRING_REF) and the value of each</li>
+ * <li>ARRAY: varint number of elements, then the elements</li>
+ * </ul>
+ * <p>If the DICTIONARY flag is set, every STRING of at most MAX_DICTIONARY_STRING chars is added
+ * to the dictionary of the stream until it holds MAX_DICTIONARY_SIZE strings, and a string that
+ * is already in it is written as a STRING_REF.</p>
+ */
+final class JSONBinary {
+	private JSONBinary() {}
+
+	static final byte MAGIC_0 = 'J';
+	static final byte MAGIC_1 = 'B';
+	static final byte VERSION = 1;
+
+	static final int FLAG_DICTIONARY = 1;
+
+	static final int MAX_DICTIONARY_SIZE = 1 << 16;
+	static final int MAX_DICTIONARY_STRING = 64;
+
+	static final int NULL = 0;
+	static final int FALSE = 1;
+	static final int TRUE = 2;
+	static final int INT = 3;
+	static final int LONG = 4;
+	static final int DOUBLE = 5;
+	static final int BIG_INTEGER = 6;
+	static final int BIG_DECIMAL = 7;
+	static final int STRING = 8;
+	static final int STRING_REF = 9;
+	static final int OBJECT = 10;
+	static final int ARRAY = 11;
+}
@@ -0,0 +1,440 @@
+package mango123.JSON;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Reads JSONObjects and JSONArrays written by {@link JSONBinaryWriter} from an
+ * <code>InputStream</code>.</p>
+ * <p>Decoding the binary encoding needs no tokenizing: every value starts with its type, strings
+ * and numbers are read with their length known in advance, and each object is allocated with
+ * the number of its entries, as far as one buffer of input can hold them. Strings that the
+ * writer put in its dictionary are decoded once and shared by all the documents of the stream,
+ * so the keys of records of the same shape are shared.</p>
+ * <p>e.g. {@code while ((ob = reader.readObject()) != null) ...}</p>
+ * @see JSONBinaryWriter
+ */
+public final class JSONBinaryReader implements Closeable {
+	private final InputStream in;
+	private final byte[] buffer = new byte[8192];
+	private int pos;
+	private int limit;
+
+	private boolean headerRead;
+
+	/**
+	 * Strings read so far, or null if the stream has no dictionary
+	 */
+	private List<String> dictionary;
+
+	/**
+	 * Reusable buffer for decoding strings
+	 */
+	private char[] chars = new char[64];
+
+	/**
+	 * The limits on the documents read, see .setLimits()
+	 */
+	private JSONLimits limits = JSONLimits.DEFAULT;
+
+	/**
+	 * Constructs a <code>JSONBinaryReader</code>.
+	 * @param in the input of bytes
+	 */
+	public JSONBinaryReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next document.
+	 * @return the next JSONObject or JSONArray, or <code>null</code> if the end of the input has
+	 *         been reached
+	 * @throws JSONException if the input is not valid or the <code>InputStream</code> throws
+	 *         an <code>IOException</code>
+	 */
+	public Object read() throws JSONException {
+		try {
+			if (!headerRead) {
+				readHeader();
+			}
+			if (pos == limit && !fill(1)) {
+				return null;
+			}
+			return readValue(buffer[pos++]);
+		} catch(IOException e) {
+			throw new JSONException(e);
+		}
+	}
+
+	/**
+	 * Reads the next document, which must be a JSONObject.
+	 * @return the next JSONObject, or <code>null</code> if the end of the input has been reached
+	 * @throws JSONException if the input is not valid, the document is not a JSONObject, or the
+	 *         <code>InputStream</code> throws an <code>IOException</code>
+	 */
+	public JSONObject readObject() throws JSONException {
+		Object value = read();
+		if (value != null && !(value instanceof JSONObject)) {
+			throw new JSONException("the document is not a JSON object");
+		}
+		return (JSONObject) value;
+	}
+
+	/**
+	 * Reads the next document, which must be a JSONArray.
+	 * @return the next JSONArray, or <code>null</code> if the end of the input has been reached
+	 * @throws JSONException if the input is not valid, the document is not a JSONArray, or the
+	 *         <code>InputStream</code> throws an <code>IOException</code>
+	 */
+	public JSONArray readArray() throws JSONException {
+		Object value = read();
+		if (value != null && !(value instanceof JSONArray)) {
+			throw new JSONException("the document is not a JSON array");
+		}
+		return (JSONArray) value;
+	}
+
+	/**
+	 * <p>Sets the limits on the documents read, {@link JSONLimits#DEFAULT} by default, for input
+	 * that is not trusted. The depth, entries and string length limits are applied, and a document
+	 * that crosses one fails with a <code>JSONException</code> before anything is allocated for
+	 * it.</p>
+	 * @param limits the limits
+	 * @return a reference to this object
+	 */
+	public JSONBinaryReader setLimits(JSONLimits limits) {
+		this.limits = limits;
+		return this;
+	}
+
+	/**
+	 * Returns the limits on the documents read.
+	 * @return the limits
+	 */
+	public JSONLimits getLimits() {
+		return limits;
+	}
+
+	/**
+	 * Closes the <code>InputStream</code>.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void readHeader() throws IOException, JSONException {
+		require(4);
+		if (buffer[pos] != JSONBinary.MAGIC_0 || buffer[pos + 1] != JSONBinary.MAGIC_1) {
+			throw new JSONException("not a JSON binary stream");
+		}
+		if (buffer[pos + 2] != JSONBinary.VERSION) {
+			throw new JSONException("unsupported JSON binary version " + buffer[pos + 2]);
+		}
+		if ((buffer[pos + 3] & JSONBinary.FLAG_DICTIONARY) != 0) {
+			dictionary = new ArrayList<String>();
+		}
+		pos += 4;
+		headerRead = true;
+	}
+
+	/**
+	 * Read a value. The objects and arrays that are still open are kept on a stack of their own,
+	 * like JSONParse does, so a deep document cannot overflow the thread's stack.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object readValue(int tag) throws IOException, JSONException {
+		if (tag != JSONBinary.OBJECT && tag != JSONBinary.ARRAY) {
+			return readScalar(tag);
+		}
+
+		int maxDepth = limits.maxDepth();
+		Object[] stack = new Object[16]; //the open objects and arrays around the current one
+		int[] counts = new int[16];      //the number of values still to read in each of them
+		String[] keys = new String[16];  //the key of the current one in each open object
+		int depth = 0;
+
+		int count = readSize();
+		Object container = newContainer(tag, count);
+		while (true) {
+			if (count == 0) {
+				Object value = container instanceof Map ? new JSONObject((Map<String, Object>) container) : new JSONArray((List<Object>) container);
+				if (depth == 0) {
+					return value;
+				}
+				depth--;
+				container = stack[depth];
+				count = counts[depth];
+				add(container, keys[depth], value);
+				stack[depth] = null;
+				keys[depth] = null;
+				continue;
+			}
+
+			count--;
+			String key = container instanceof Map ? readString(readByte(), true) : null;
+			tag = readByte();
+			if (tag == JSONBinary.OBJECT || tag == JSONBinary.ARRAY) {
+				if (depth + 2 > maxDepth) {
+					throw new JSONException("maximum depth of " + maxDepth + " exceeded");
+				}
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					counts = Arrays.copyOf(counts, depth * 2);
+					keys = Arrays.copyOf(keys, depth * 2);
+				}
+				stack[depth] = container;
+				counts[depth] = count;
+				keys[depth] = key;
+				depth++;
+				count = readSize();
+				container = newContainer(tag, count);
+			}
+			else {
+				add(container, key, readScalar(tag));
+			}
+		}
+	}
+
+	/**
+	 * Read the number of entries or elements of an object or array
+	 */
+	private int readSize() throws IOException, JSONException {
+		int size = readLength();
+		if (size > limits.maxEntries()) {
+			throw new JSONException("an object or array has more than " + limits.maxEntries() + " values");
+		}
+		return size;
+	}
+
+	/**
+	 * Each value takes at least one byte, so the size read is trusted for no more values than one
+	 * buffer of input holds, and a container with more grows as it is read
+	 */
+	private Object newContainer(int tag, int size) {
+		int capacity = Math.min(size, buffer.length);
+		if (tag == JSONBinary.OBJECT) {
+			return new LinkedHashMap<String, Object>(capacity * 4 / 3 + 1);
+		}
+		return new ArrayList<Object>(capacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void add(Object container, String key, Object value) {
+		if (key != null) {
+			((Map<String, Object>) container).put(key, value);
+		}
+		else {
+			((List<Object>) container).add(value);
+		}
+	}
+
+	private Object readScalar(int tag) throws IOException, JSONException {
+		switch (tag) {
+		case JSONBinary.NULL:
+			return null;
+		case JSONBinary.FALSE:
+			return Boolean.FALSE;
+		case JSONBinary.TRUE:
+			return Boolean.TRUE;
+		case JSONBinary.INT:
+			int n = (int) readVarint();
+			return Integer.valueOf((n >>> 1) ^ -(n & 1));
+		case JSONBinary.LONG:
+			long l = readVarint();
+			return Long.valueOf((l >>> 1) ^ -(l & 1));
+		case JSONBinary.DOUBLE:
+			require(8);
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | (buffer[pos++] & 0xFF);
+			}
+			return Double.valueOf(Double.longBitsToDouble(bits));
+		case JSONBinary.BIG_INTEGER:
+			return new BigInteger(readBytes());
+		case JSONBinary.BIG_DECIMAL:
+			int scale = (int) readVarint();
+			return new BigDecimal(new BigInteger(readBytes()), (scale >>> 1) ^ -(scale & 1));
+		case JSONBinary.STRING:
+		case JSONBinary.STRING_REF:
+			return readString(tag, false);
+		default:
+			throw new JSONException("invalid tag " + tag);
+		}
+	}
+
+	private String readString(int tag, boolean key) throws IOException, JSONException {
+		if (tag == JSONBinary.STRING_REF) {
+			long index = readVarint();
+			if (dictionary == null || index >= dictionary.size()) {
+				throw new JSONException("invalid string reference " + index);
+			}
+			return dictionary.get((int) index);
+		}
+		else if (tag != JSONBinary.STRING) {
+			throw new JSONException(key ? "invalid key tag " + tag : "invalid tag " + tag);
+		}
+
+		int length = readLength();
+		if (length / 3 > limits.maxStringLength()) {
+			throw tooLong(); //no more than 3 bytes per char, checked before the bytes are read
+		}
+		String s;
+		if (length <= buffer.length) {
+			require(length);
+			s = decode(buffer, pos, length);
+			pos += length;
+		}
+		else {
+			s = decode(readFully(length), 0, length);
+		}
+
+		if (s.length() > limits.maxStringLength()) {
+			throw tooLong();
+		}
+		if (dictionary != null && s.length() <= JSONBinary.MAX_DICTIONARY_STRING
+		    && dictionary.size() < JSONBinary.MAX_DICTIONARY_SIZE) {
+			dictionary.add(s);
+		}
+		return s;
+	}
+
+	private JSONException tooLong() {
+		return new JSONException("a string is longer than " + limits.maxStringLength() + " chars");
+	}
+
+	/**
+	 * Decode UTF-8, accepting the 3 byte encoding of lone surrogates written by JSONBinaryWriter
+	 */
+	private String decode(byte[] bytes, int offset, int length) throws JSONException {
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+		int end = offset + length;
+		int n = 0;
+		int i = offset;
+		while (i < end) {
+			int b = bytes[i++];
+			if (b >= 0) {
+				chars[n++] = (char) b;
+			}
+			else if ((b & 0xE0) == 0xC0 && i < end) {
+				chars[n++] = (char) (((b & 0x1F) << 6) | continuation(bytes[i++]));
+			}
+			else if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+				chars[n++] = (char) (((b & 0x0F) << 12) | (continuation(bytes[i]) << 6) | continuation(bytes[i + 1]));
+				i += 2;
+			}
+			else if ((b & 0xF8) == 0xF0 && i + 2 < end) {
+				int cp = ((b & 0x07) << 18) | (continuation(bytes[i]) << 12) | (continuation(bytes[i + 1]) << 6) | continuation(bytes[i + 2]);
+				if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+					throw new JSONException("invalid UTF-8 sequence");
+				}
+				chars[n++] = Character.highSurrogate(cp);
+				chars[n++] = Character.lowSurrogate(cp);
+				i += 3;
+			}
+			else {
+				throw new JSONException("invalid UTF-8 sequence");
+			}
+		}
+		return new String(chars, 0, n);
+	}
+
+	private static int continuation(byte b) throws JSONException {
+		if ((b & 0xC0) != 0x80) {
+			throw new JSONException("invalid UTF-8 sequence");
+		}
+		return b & 0x3F;
+	}
+
+	private byte[] readBytes() throws IOException, JSONException {
+		return readFully(readLength());
+	}
+
+	/**
+	 * Read the specified number of bytes. The array grows as they arrive instead of being
+	 * allocated for the length read from the input up front, so a corrupt or hostile length fails
+	 * at the end of the input instead of allocating it.
+	 */
+	private byte[] readFully(int length) throws IOException, JSONException {
+		byte[] bytes = new byte[Math.min(length, buffer.length)];
+		int n = 0;
+		while (n < length) {
+			if (pos == limit && !fill(1)) {
+				throw new JSONException("unexpected end of input");
+			}
+			int chunk = Math.min(limit - pos, length - n);
+			if (n + chunk > bytes.length) {
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, Math.max(n + chunk, 2L * bytes.length)));
+			}
+			System.arraycopy(buffer, pos, bytes, n, chunk);
+			pos += chunk;
+			n += chunk;
+		}
+		return bytes;
+	}
+
+	private int readLength() throws IOException, JSONException {
+		long length = readVarint();
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new JSONException("invalid length " + length);
+		}
+		return (int) length;
+	}
+
+	private long readVarint() throws IOException, JSONException {
+		long n = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			n |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return n;
+			}
+		}
+		throw new JSONException("invalid varint");
+	}
+
+	private int readByte() throws IOException, JSONException {
+		if (pos == limit) {
+			require(1);
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * Make sure n bytes are in the buffer, n <= buffer.length
+	 */
+	private void require(int n) throws IOException, JSONException {
+		if (limit - pos < n && !fill(n)) {
+			throw new JSONException("unexpected end of input");
+		}
+	}
+
+	/**
+	 * Move the remaining bytes to the start of the buffer and read until there are n of them,
+	 * returns false if the end of the input is reached first
+	 */
+	private boolean fill(int n) throws IOException {
+		int remaining = limit - pos;
+		System.arraycopy(buffer, pos, buffer, 0, remaining);
+		pos = 0;
+		limit = remaining;
+		while (limit < n) {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read == -1) {
+				return false;
+			}
+			limit += read;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,340 @@
+package mango123.JSON;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Writes JSONObjects and JSONArrays to an <code>OutputStream</code> in a compact binary
+ * encoding, which {@link JSONBinaryReader} reads back much faster than JSON text can be parsed.</p>
+ * <p>Numbers are written with their type (<code>Integer</code>, <code>Long</code>,
+ * <code>Double</code>, <code>BigInteger</code> or <code>BigDecimal</code>) so they are read back
+ * exactly as they were, and strings are length-prefixed. By default the writer also keeps a
+ * dictionary of the short strings it has written, so repeated keys and values are written as
+ * a back-reference to the first occurrence. The dictionary is kept for the whole stream, so
+ * writing many documents with the same keys to one stream pays for each key once.</p>
+ * <p>e.g. {@code writer.write(ob); writer.flush();}</p>
+ * @see JSONBinaryReader
+ */
+public final class JSONBinaryWriter implements Closeable, Flushable {
+	private final OutputStream out;
+	private final byte[] buffer = new byte[8192];
+	private int pos;
+
+	/**
+	 * Number of bytes written to the OutputStream so far
+	 */
+	private long flushed;
+
+	/**
+	 * Strings written so far and their index, or null if the dictionary is disabled
+	 */
+	private final Map<String, Integer> dictionary;
+
+	/**
+	 * Constructs a <code>JSONBinaryWriter</code> with a string dictionary.
+	 * @param out the output for bytes
+	 */
+	public JSONBinaryWriter(OutputStream out) {
+		this(out, true);
+	}
+
+	/**
+	 * Constructs a <code>JSONBinaryWriter</code>.
+	 * @param out the output for bytes
+	 * @param useDictionary whether repeated strings are written as back-references
+	 */
+	public JSONBinaryWriter(OutputStream out, boolean useDictionary) {
+		this.out = out;
+		this.dictionary = useDictionary ? new HashMap<String, Integer>() : null;
+		buffer[pos++] = JSONBinary.MAGIC_0;
+		buffer[pos++] = JSONBinary.MAGIC_1;
+		buffer[pos++] = JSONBinary.VERSION;
+		buffer[pos++] = (byte) (useDictionary ? JSONBinary.FLAG_DICTIONARY : 0);
+	}
+
+	/**
+	 * Writes a JSONObject.
+	 * @param ob the JSONObject to be written
+	 * @throws IOException if the <code>OutputStream</code> throws it
+	 */
+	public void write(JSONObject ob) throws IOException {
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		event.begin();
+		long start = flushed + pos;
+		writeValue(ob);
+		JSONEvents.commit(event, "binary", flushed + pos - start, ob);
+	}
+
+	/**
+	 * Writes a JSONArray.
+	 * @param array the JSONArray to be written
+	 * @throws IOException if the <code>OutputStream</code> throws it
+	 */
+	public void write(JSONArray array) throws IOException {
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		event.begin();
+		long start = flushed + pos;
+		writeValue(array);
+		JSONEvents.commit(event, "binary", flushed + pos - start, array);
+	}
+
+	/**
+	 * Writes the buffered bytes to the <code>OutputStream</code> and flushes it.
+	 * @throws IOException if the <code>OutputStream</code> throws it
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Flushes and closes the <code>OutputStream</code>.
+	 * @throws IOException if the <code>OutputStream</code> throws it
+	 */
+	public void close() throws IOException {
+		flushBuffer();
+		out.close();
+	}
+
+	/**
+	 * Write a value. The objects and arrays that are still open are kept on a stack of their own,
+	 * like JSONSerializer does, so a deep document cannot overflow the thread's stack.
+	 */
+	private void writeValue(Object root) throws IOException {
+		if (!(root instanceof JSONObject || root instanceof JSONArray)) {
+			writeScalar(root);
+			return;
+		}
+
+		Iterator<?>[] stack = new Iterator<?>[16];
+		boolean[] objects = new boolean[16];
+		int depth = 0;
+		stack[0] = open(root);
+		objects[0] = root instanceof JSONObject;
+
+		while (depth >= 0) {
+			Iterator<?> it = stack[depth];
+			if (!it.hasNext()) {
+				stack[depth--] = null;
+				continue;
+			}
+
+			Object value;
+			if (objects[depth]) {
+				@SuppressWarnings("unchecked")
+				Map.Entry<String, Object> e = (Map.Entry<String, Object>) it.next();
+				writeString(e.getKey());
+				value = e.getValue();
+			}
+			else {
+				value = it.next();
+			}
+
+			if (value instanceof JSONObject || value instanceof JSONArray) {
+				depth++;
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					objects = Arrays.copyOf(objects, depth * 2);
+				}
+				stack[depth] = open(value);
+				objects[depth] = value instanceof JSONObject;
+			}
+			else {
+				writeScalar(value);
+			}
+		}
+	}
+
+	/**
+	 * Write the tag and the size of a JSONObject or JSONArray, returns an iterator over its
+	 * entries or elements
+	 */
+	private Iterator<?> open(Object container) throws IOException {
+		if (container instanceof JSONObject) {
+			Map<String, Object> map = ((JSONObject) container).map;
+			Collection<Map.Entry<String, Object>> entries = map.entrySet();
+			if (map instanceof JSONConcurrentMap) {
+				//the size written must match the entries, so write a snapshot of a concurrent map
+				entries = new ArrayList<Map.Entry<String, Object>>(entries);
+			}
+			writeByte(JSONBinary.OBJECT);
+			writeVarint(entries.size());
+			return entries.iterator();
+		}
+
+		List<Object> list = ((JSONArray) container).list;
+		if (list instanceof CopyOnWriteArrayList) {
+			list = Arrays.asList(list.toArray()); //a snapshot, like the entries of a concurrent map
+		}
+		writeByte(JSONBinary.ARRAY);
+		writeVarint(list.size());
+		return list.iterator();
+	}
+
+	private void writeScalar(Object value) throws IOException {
+		if (value == null) {
+			writeByte(JSONBinary.NULL);
+		}
+		else if (value instanceof String) {
+			writeString((String) value);
+		}
+		else if (value instanceof Integer) {
+			writeByte(JSONBinary.INT);
+			int n = (Integer) value;
+			writeVarint(((n << 1) ^ (n >> 31)) & 0xFFFFFFFFL);
+		}
+		else if (value instanceof Long) {
+			writeByte(JSONBinary.LONG);
+			long n = (Long) value;
+			writeVarint((n << 1) ^ (n >> 63));
+		}
+		else if (value instanceof Double) {
+			writeByte(JSONBinary.DOUBLE);
+			long bits = Double.doubleToRawLongBits((Double) value);
+			require(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buffer[pos++] = (byte) (bits >>> shift);
+			}
+		}
+		else if (value instanceof Boolean) {
+			writeByte((Boolean) value ? JSONBinary.TRUE : JSONBinary.FALSE);
+		}
+		else if (value instanceof BigInteger) {
+			writeByte(JSONBinary.BIG_INTEGER);
+			writeBytes(((BigInteger) value).toByteArray());
+		}
+		else if (value instanceof BigDecimal) {
+			BigDecimal num = (BigDecimal) value;
+			writeByte(JSONBinary.BIG_DECIMAL);
+			int scale = num.scale();
+			writeVarint(((scale << 1) ^ (scale >> 31)) & 0xFFFFFFFFL);
+			writeBytes(num.unscaledValue().toByteArray());
+		}
+		else if (value instanceof JSONNumber) {
+			writeScalar(((JSONNumber) value).toNumber());
+		}
+		else {
+			throw new IllegalArgumentException("cannot write a " + value.getClass().getName());
+		}
+	}
+
+	private void writeString(String s) throws IOException {
+		if (dictionary != null) {
+			Integer ref = dictionary.get(s);
+			if (ref != null) {
+				writeByte(JSONBinary.STRING_REF);
+				writeVarint(ref);
+				return;
+			}
+			if (s.length() <= JSONBinary.MAX_DICTIONARY_STRING
+			    && dictionary.size() < JSONBinary.MAX_DICTIONARY_SIZE) {
+				dictionary.put(s, dictionary.size());
+			}
+		}
+
+		writeByte(JSONBinary.STRING);
+		int l = s.length();
+		int length = l;
+		for (int i = 0; i < l; i++) {
+			char ch = s.charAt(i);
+			if (ch < 0x80) {
+				continue;
+			}
+			if (ch < 0x800) {
+				length += 1;
+			}
+			else if (Character.isHighSurrogate(ch) && i + 1 < l && Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 2; //4 bytes for 2 chars
+				i++;
+			}
+			else {
+				length += 2;
+			}
+		}
+		writeVarint(length);
+
+		for (int i = 0; i < l; i++) {
+			char ch = s.charAt(i);
+			if (ch < 0x80) {
+				require(1);
+				buffer[pos++] = (byte) ch;
+				continue;
+			}
+
+			require(4);
+			if (ch < 0x800) {
+				buffer[pos++] = (byte) (0xC0 | (ch >> 6));
+				buffer[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+			else if (Character.isHighSurrogate(ch) && i + 1 < l && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(ch, s.charAt(++i));
+				buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+				buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+			}
+			else {
+				buffer[pos++] = (byte) (0xE0 | (ch >> 12));
+				buffer[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		writeVarint(bytes.length);
+		if (bytes.length > buffer.length - pos) {
+			flushBuffer();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				flushed += bytes.length;
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+		pos += bytes.length;
+	}
+
+	private void writeVarint(long n) throws IOException {
+		require(10);
+		while ((n & ~0x7FL) != 0) {
+			buffer[pos++] = (byte) ((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		buffer[pos++] = (byte) n;
+	}
+
+	private void writeByte(int b) throws IOException {
+		require(1);
+		buffer[pos++] = (byte) b;
+	}
+
+	/**
+	 * Make room for n bytes in the buffer
+	 */
+	private void require(int n) throws IOException {
+		if (pos + n > buffer.length) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (pos > 0) {
+			out.write(buffer, 0, pos);
+			flushed += pos;
+			pos = 0;
+		}
+	}
+}
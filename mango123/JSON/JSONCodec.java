@@ -0,0 +1,37 @@
+package mango123.JSON;
+
+import java.io.IOException;
+
+/**
+ * <p>Reads and writes instances of a class directly from a {@link JSONTokener} and to an
+ * <code>Appendable</code>, without building a JSONObject in between.</p>
+ * <p>Codecs for classes marked with {@link JSONType} are generated at compile time. They use no
+ * reflection, so they start fast and work in native images. {@link JSONCodecs} contains the codecs
+ * of the basic types.</p>
+ * @param <T> the type that is read and written
+ * @see JSONType
+ */
+public interface JSONCodec<T> {
+	/**
+	 * Reads the next JSON value from the tokener. Nothing after the value is read, so a tokener
+	 * can contain many values one after another.
+	 * <p>The objects and arrays of the value count towards the <code>maxDepth</code> of the
+	 * tokener's <code>JSONLimits</code> from the given depth on, which is <code>0</code> for a
+	 * value that is read on its own. A codec passes <code>depth + 1</code> to the codecs of the
+	 * values inside its object or array.</p>
+	 * @param tokener the JSON input
+	 * @param depth the number of objects and arrays around the value
+	 * @return the value read, which is <code>null</code> if the JSON value is <code>null</code>
+	 * @throws JSONException if any syntax error is encountered, the JSON value does not have
+	 *         the expected type or it is nested deeper than the limit
+	 */
+	T read(JSONTokener tokener, int depth) throws JSONException;
+
+	/**
+	 * Writes the value as compact JSON.
+	 * @param value the value to be written, <code>null</code> is written as <code>null</code>
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	void write(T value, Appendable out) throws IOException;
+}
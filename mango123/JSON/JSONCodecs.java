@@ -0,0 +1,403 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The codecs of the basic types, and the methods that the codecs generated for classes marked
+ * with {@link JSONType} are built on.</p>
+ * <p>The <code>read</code> methods of the primitive types decode the token directly into the
+ * primitive value without boxing it, and they throw a <code>JSONException</code> if the JSON
+ * value has a different type (<code>null</code> included).</p>
+ * @see JSONCodec
+ */
+public final class JSONCodecs {
+	private JSONCodecs() {}
+
+	/**
+	 * Reads a JSON number as an <code>int</code>.
+	 * @param tokener the JSON input
+	 * @return the number
+	 * @throws JSONException if the next value is not an integer in the range of <code>int</code>
+	 */
+	public static int readInt(JSONTokener tokener) throws JSONException {
+		String token = nextNumber(tokener, "an int");
+		try {
+			return Integer.parseInt(token);
+		}
+		catch(NumberFormatException e) {
+			throw tokener.newSyntaxError("expects an int but found " + token);
+		}
+	}
+
+	/**
+	 * Reads a JSON number as a <code>long</code>.
+	 * @param tokener the JSON input
+	 * @return the number
+	 * @throws JSONException if the next value is not an integer in the range of <code>long</code>
+	 */
+	public static long readLong(JSONTokener tokener) throws JSONException {
+		String token = nextNumber(tokener, "a long");
+		try {
+			return Long.parseLong(token);
+		}
+		catch(NumberFormatException e) {
+			throw tokener.newSyntaxError("expects a long but found " + token);
+		}
+	}
+
+	/**
+	 * Reads a JSON number as a <code>double</code>.
+	 * @param tokener the JSON input
+	 * @return the number
+	 * @throws JSONException if the next value is not a number
+	 */
+	public static double readDouble(JSONTokener tokener) throws JSONException {
+		return Double.parseDouble(nextNumber(tokener, "a double"));
+	}
+
+	/**
+	 * Reads a JSON <code>true</code> or <code>false</code>.
+	 * @param tokener the JSON input
+	 * @return the boolean
+	 * @throws JSONException if the next value is not a boolean
+	 */
+	public static boolean readBoolean(JSONTokener tokener) throws JSONException {
+		String token = tokener.nextToken();
+		if (token == JSONTokener.TRUE) {
+			return true;
+		}
+		else if (token == JSONTokener.FALSE) {
+			return false;
+		}
+		throw tokener.newSyntaxError("expects a boolean but found " + token);
+	}
+
+	/**
+	 * Checks that an object or array inside <code>depth</code> others is within the
+	 * <code>maxDepth</code> of the tokener's <code>JSONLimits</code>.
+	 * @param tokener the JSON input
+	 * @param depth the number of objects and arrays around it
+	 * @throws JSONException if the object or array is nested deeper than the limit
+	 */
+	public static void checkDepth(JSONTokener tokener, int depth) throws JSONException {
+		int maxDepth = tokener.getLimits().maxDepth();
+		if (depth >= maxDepth) {
+			throw JSONParse.tooDeep(tokener, maxDepth);
+		}
+	}
+
+	/**
+	 * Reads and discards the next JSON value.
+	 * @param tokener the JSON input
+	 * @param depth the number of objects and arrays around the value
+	 * @throws JSONException if any syntax error is encountered or the value is nested deeper
+	 *         than the limit
+	 */
+	public static void skipValue(JSONTokener tokener, int depth) throws JSONException {
+		//checked like JSONParser.validate() does, without building anything
+		int token = tokener.skipToken();
+		if (token == '{' || token == '[') {
+			checkDepth(tokener, depth);
+			JSONParse.skipContainer(tokener, token == '{', depth);
+		}
+		else if (token != '"' && token != '0' && token != 't' && token != 'f' && token != 'n') {
+			throw tokener.newSyntaxError("missing value");
+		}
+	}
+
+	/**
+	 * Reads a JSON array with the codec of its elements.
+	 * @param tokener the JSON input
+	 * @param codec the codec of the elements
+	 * @param depth the number of objects and arrays around the array
+	 * @return the elements, or <code>null</code> if the JSON value is <code>null</code>
+	 * @throws JSONException if any syntax error is encountered, the value is not an array or it
+	 *         is nested deeper than the limit
+	 */
+	public static <T> List<T> readList(JSONTokener tokener, JSONCodec<T> codec, int depth) throws JSONException {
+		String token = tokener.nextToken();
+		if (token == JSONTokener.NULL) {
+			return null;
+		}
+		if (token != JSONTokener.LEFT_SQUARE) {
+			throw tokener.newSyntaxError("expects an array but found " + token);
+		}
+		checkDepth(tokener, depth);
+
+		List<T> list = new ArrayList<T>();
+		if (tokener.nextTokenIs(JSONTokener.RIGHT_SQUARE)) {
+			return list;
+		}
+		while (true) {
+			list.add(codec.read(tokener, depth + 1));
+			token = tokener.nextToken();
+			if (token == JSONTokener.RIGHT_SQUARE) {
+				return list;
+			}
+			else if (token != JSONTokener.COMMA) {
+				throw tokener.newSyntaxError("missing ']'");
+			}
+		}
+	}
+
+	/**
+	 * Writes an <code>int</code>.
+	 * @param value the number
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static void writeInt(int value, Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		}
+		else {
+			out.append(Integer.toString(value));
+		}
+	}
+
+	/**
+	 * Writes a <code>long</code>.
+	 * @param value the number
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static void writeLong(long value, Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		}
+		else {
+			out.append(Long.toString(value));
+		}
+	}
+
+	/**
+	 * Writes a <code>double</code>.
+	 * @param value the number
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static void writeDouble(double value, Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		}
+		else {
+			out.append(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Writes a <code>boolean</code>.
+	 * @param value the boolean
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static void writeBoolean(boolean value, Appendable out) throws IOException {
+		out.append(value ? JSONTokener.TRUE : JSONTokener.FALSE);
+	}
+
+	/**
+	 * Writes a quoted and escaped JSON string, or <code>null</code>.
+	 * @param value the string
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static void writeString(String value, Appendable out) throws IOException {
+		if (value == null) {
+			out.append(JSONTokener.NULL);
+		}
+		else {
+			JSONSerializer.writeString(value, out);
+		}
+	}
+
+	/**
+	 * Writes a list as a JSON array with the codec of its elements.
+	 * @param list the elements, <code>null</code> is written as <code>null</code>
+	 * @param codec the codec of the elements
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public static <T> void writeList(List<T> list, JSONCodec<T> codec, Appendable out) throws IOException {
+		if (list == null) {
+			out.append(JSONTokener.NULL);
+			return;
+		}
+		out.append('[');
+		boolean first = true;
+		for (T value : list) {
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			codec.write(value, out);
+		}
+		out.append(']');
+	}
+
+	/**
+	 * Codec of <code>String</code>
+	 */
+	public static final JSONCodec<String> STRING = new JSONCodec<String>() {
+		public String read(JSONTokener tokener, int depth) throws JSONException {
+			String token = tokener.nextToken();
+			if (token == JSONTokener.NULL) {
+				return null;
+			}
+			if (token == null || token.charAt(0) != '"') {
+				throw tokener.newSyntaxError("expects a string but found " + token);
+			}
+			return token.substring(1, token.length() - 1);
+		}
+
+		public void write(String value, Appendable out) throws IOException {
+			writeString(value, out);
+		}
+	};
+
+	/**
+	 * Codec of <code>Integer</code>
+	 */
+	public static final JSONCodec<Integer> INTEGER = new JSONCodec<Integer>() {
+		public Integer read(JSONTokener tokener, int depth) throws JSONException {
+			return tokener.nextTokenIs(JSONTokener.NULL) ? null : Integer.valueOf(readInt(tokener));
+		}
+
+		public void write(Integer value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>Long</code>
+	 */
+	public static final JSONCodec<Long> LONG = new JSONCodec<Long>() {
+		public Long read(JSONTokener tokener, int depth) throws JSONException {
+			return tokener.nextTokenIs(JSONTokener.NULL) ? null : Long.valueOf(readLong(tokener));
+		}
+
+		public void write(Long value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>Double</code>
+	 */
+	public static final JSONCodec<Double> DOUBLE = new JSONCodec<Double>() {
+		public Double read(JSONTokener tokener, int depth) throws JSONException {
+			return tokener.nextTokenIs(JSONTokener.NULL) ? null : Double.valueOf(readDouble(tokener));
+		}
+
+		public void write(Double value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>Boolean</code>
+	 */
+	public static final JSONCodec<Boolean> BOOLEAN = new JSONCodec<Boolean>() {
+		public Boolean read(JSONTokener tokener, int depth) throws JSONException {
+			return tokener.nextTokenIs(JSONTokener.NULL) ? null : Boolean.valueOf(readBoolean(tokener));
+		}
+
+		public void write(Boolean value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>BigInteger</code>
+	 */
+	public static final JSONCodec<BigInteger> BIG_INTEGER = new JSONCodec<BigInteger>() {
+		public BigInteger read(JSONTokener tokener, int depth) throws JSONException {
+			if (tokener.nextTokenIs(JSONTokener.NULL)) {
+				return null;
+			}
+			String token = nextNumber(tokener, "an integer");
+			try {
+				return new BigInteger(token);
+			}
+			catch(NumberFormatException e) {
+				throw tokener.newSyntaxError("expects an integer but found " + token);
+			}
+		}
+
+		public void write(BigInteger value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>BigDecimal</code>
+	 */
+	public static final JSONCodec<BigDecimal> BIG_DECIMAL = new JSONCodec<BigDecimal>() {
+		public BigDecimal read(JSONTokener tokener, int depth) throws JSONException {
+			if (tokener.nextTokenIs(JSONTokener.NULL)) {
+				return null;
+			}
+			return new BigDecimal(nextNumber(tokener, "a number"));
+		}
+
+		public void write(BigDecimal value, Appendable out) throws IOException {
+			out.append(String.valueOf(value));
+		}
+	};
+
+	/**
+	 * Codec of <code>JSONObject</code>
+	 */
+	public static final JSONCodec<JSONObject> OBJECT = new JSONCodec<JSONObject>() {
+		public JSONObject read(JSONTokener tokener, int depth) throws JSONException {
+			String token = tokener.nextToken();
+			if (token == JSONTokener.NULL) {
+				return null;
+			}
+			if (token != JSONTokener.LEFT_BRACE) {
+				throw tokener.newSyntaxError("expects an object but found " + token);
+			}
+			checkDepth(tokener, depth);
+			return new JSONObject(JSONParse.parseObject(tokener, depth));
+		}
+
+		public void write(JSONObject value, Appendable out) throws IOException {
+			JSONSerializer.writeValue(value, out);
+		}
+	};
+
+	/**
+	 * Codec of <code>JSONArray</code>
+	 */
+	public static final JSONCodec<JSONArray> ARRAY = new JSONCodec<JSONArray>() {
+		public JSONArray read(JSONTokener tokener, int depth) throws JSONException {
+			String token = tokener.nextToken();
+			if (token == JSONTokener.NULL) {
+				return null;
+			}
+			if (token != JSONTokener.LEFT_SQUARE) {
+				throw tokener.newSyntaxError("expects an array but found " + token);
+			}
+			checkDepth(tokener, depth);
+			return new JSONArray(JSONParse.parseArray(tokener, depth));
+		}
+
+		public void write(JSONArray value, Appendable out) throws IOException {
+			JSONSerializer.writeValue(value, out);
+		}
+	};
+
+	/**
+	 * Reads the next token and checks that it is a number
+	 */
+	private static String nextNumber(JSONTokener tokener, String expected) throws JSONException {
+		String token = tokener.nextToken();
+		if (token == null || !(Character.isDigit(token.charAt(0)) || token.charAt(0) == '-')) {
+			throw tokener.newSyntaxError("expects " + expected + " but found " + token);
+		}
+		return token;
+	}
+}
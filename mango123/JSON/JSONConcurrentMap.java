@@ -0,0 +1,96 @@
+package mango123.JSON;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe map used to back concurrent JSONObjects. It is a ConcurrentHashMap that also
+ * accepts <code>null</code> values, which are stored as a sentinel. Reads do not lock, writes only
+ * lock the bin they change, and iteration is weakly consistent: it never throws a
+ * ConcurrentModificationException and never blocks the writers.
+ */
+final class JSONConcurrentMap extends AbstractMap<String, Object> {
+	/**
+	 * Stored in place of null, which ConcurrentHashMap does not accept
+	 */
+	private static final Object NULL = new Object();
+
+	private final ConcurrentHashMap<String, Object> map = new ConcurrentHashMap<String, Object>();
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key != null && map.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return map.containsValue(value == null ? NULL : value);
+	}
+
+	@Override
+	public Object get(Object key) {
+		Object v = key == null ? null : map.get(key);
+		return v == NULL ? null : v;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		Object old = map.put(key, value == null ? NULL : value);
+		return old == NULL ? null : old;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object old = key == null ? null : map.remove(key);
+		return old == NULL ? null : old;
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public int size() {
+				return map.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				final Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+				return new Iterator<Map.Entry<String, Object>>() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public Map.Entry<String, Object> next() {
+						Map.Entry<String, Object> e = it.next();
+						Object v = e.getValue();
+						return new SimpleImmutableEntry<String, Object>(e.getKey(), v == NULL ? null : v);
+					}
+
+					public void remove() {
+						it.remove();
+					}
+				};
+			}
+		};
+	}
+}
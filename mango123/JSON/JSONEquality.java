@@ -0,0 +1,304 @@
+package mango123.JSON;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The structural .equals() and .hashCode() of JSONObject and JSONArray. Objects are equal if
+ * they have the same keys mapped to equal values, in any order, arrays if they have equal
+ * elements in the same order, and numbers if they have the same value, whatever their type.</p>
+ * <p>A Double is compared as the decimal number it is written as in JSON, so 0.1 is equal to
+ * new BigDecimal("0.1"), and a JSONNumber as the number it is decoded to.</p>
+ * <p>Both walk the documents with a stack of their own, like the parser and the serializer, so a
+ * deep document cannot overflow the thread's stack.</p>
+ */
+final class JSONEquality {
+	private JSONEquality() {}
+
+	private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+	private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+	/**
+	 * Compare two JSONObjects or JSONArrays, returning at the first difference. Frozen documents
+	 * are compared by their hashes first, which are kept after they are computed once.
+	 */
+	static boolean equal(Object a, Object b) {
+		if (isFrozen(a) && isFrozen(b) && hash(a) != hash(b)) {
+			return false;
+		}
+
+		ArrayDeque<Object> pairs = new ArrayDeque<Object>();
+		pairs.push(a);
+		pairs.push(b);
+		while (!pairs.isEmpty()) {
+			Object y = pairs.pop();
+			Object x = pairs.pop();
+			if (x == y) {
+				continue;
+			}
+			int hx = cachedHash(x), hy = cachedHash(y);
+			if (hx != 0 && hy != 0 && hx != hy) {
+				return false;
+			}
+
+			if (x instanceof JSONObject) {
+				Map<String, Object> mx = ((JSONObject) x).map, my = ((JSONObject) y).map;
+				if (mx.size() != my.size()) {
+					return false;
+				}
+				for (Map.Entry<String, Object> e : mx.entrySet()) {
+					Object vx = e.getValue();
+					Object vy = my.get(e.getKey());
+					if (vy == null && (vx != null || !my.containsKey(e.getKey()))) {
+						return false;
+					}
+					if (!compare(vx, vy, pairs)) {
+						return false;
+					}
+				}
+			}
+			else {
+				List<Object> lx = ((JSONArray) x).list, ly = ((JSONArray) y).list;
+				if (lx.size() != ly.size()) {
+					return false;
+				}
+				Iterator<Object> ix = lx.iterator(), iy = ly.iterator();
+				while (ix.hasNext() && iy.hasNext()) {
+					if (!compare(ix.next(), iy.next(), pairs)) {
+						return false;
+					}
+				}
+				if (ix.hasNext() || iy.hasNext()) {
+					return false; //modified concurrently
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare two values: scalars right away, and objects or arrays of the same type by pushing
+	 * them to be compared later. Returns false if they differ.
+	 */
+	private static boolean compare(Object x, Object y, ArrayDeque<Object> pairs) {
+		if (x instanceof JSONObject || x instanceof JSONArray) {
+			if (y == null || x.getClass() != y.getClass()) {
+				return false;
+			}
+			pairs.push(x);
+			pairs.push(y);
+			return true;
+		}
+		else if (x instanceof Number && y instanceof Number) {
+			return numbersEqual((Number) x, (Number) y);
+		}
+		return x == null ? y == null : x.equals(y);
+	}
+
+	/**
+	 * The hash of a JSONObject or JSONArray, consistent with .equal(): the sum of the hashes of
+	 * the entries of an object like Map.hashCode(), and the hashes of the elements of an array
+	 * combined in order like List.hashCode(). The hash of a frozen one is kept in it, and the kept
+	 * hashes of the frozen ones nested in it are used.
+	 */
+	static int hash(Object root) {
+		int cached = cachedHash(root);
+		if (cached != 0) {
+			return cached;
+		}
+
+		Object[] containers = new Object[16];
+		Iterator<?>[] iterators = new Iterator<?>[16];
+		int[] hashes = new int[16];
+		int[] keyHashes = new int[16];
+		int depth = 0;
+
+		Object container = root;
+		Iterator<?> it = iterator(container);
+		int h = container instanceof JSONObject ? 0 : 1;
+		int keyHash = 0;
+		while (true) {
+			if (it.hasNext()) {
+				Object value;
+				if (container instanceof JSONObject) {
+					@SuppressWarnings("unchecked")
+					Map.Entry<String, Object> e = (Map.Entry<String, Object>) it.next();
+					keyHash = e.getKey().hashCode();
+					value = e.getValue();
+				}
+				else {
+					value = it.next();
+				}
+
+				if ((value instanceof JSONObject || value instanceof JSONArray) && cachedHash(value) == 0) {
+					if (depth == containers.length) {
+						containers = Arrays.copyOf(containers, depth * 2);
+						iterators = Arrays.copyOf(iterators, depth * 2);
+						hashes = Arrays.copyOf(hashes, depth * 2);
+						keyHashes = Arrays.copyOf(keyHashes, depth * 2);
+					}
+					containers[depth] = container;
+					iterators[depth] = it;
+					hashes[depth] = h;
+					keyHashes[depth] = keyHash;
+					depth++;
+					container = value;
+					it = iterator(container);
+					h = container instanceof JSONObject ? 0 : 1;
+					continue;
+				}
+				h = combine(container, h, keyHash, valueHash(value));
+			}
+			else {
+				keep(container, h);
+				if (depth == 0) {
+					return h;
+				}
+				int child = h;
+				depth--;
+				container = containers[depth];
+				it = iterators[depth];
+				h = hashes[depth];
+				keyHash = keyHashes[depth];
+				containers[depth] = null;
+				iterators[depth] = null;
+				h = combine(container, h, keyHash, child);
+			}
+		}
+	}
+
+	private static int combine(Object container, int h, int keyHash, int valueHash) {
+		return container instanceof JSONObject ? h + (keyHash ^ valueHash) : 31 * h + valueHash;
+	}
+
+	private static Iterator<?> iterator(Object container) {
+		return container instanceof JSONObject ? ((JSONObject) container).map.entrySet().iterator() : ((JSONArray) container).list.iterator();
+	}
+
+	/**
+	 * The hash of a value that is not a JSONObject or JSONArray, or of one whose hash is kept
+	 */
+	private static int valueHash(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		else if (value instanceof Number) {
+			return numberHash((Number) value);
+		}
+		else if (value instanceof JSONObject || value instanceof JSONArray) {
+			return cachedHash(value);
+		}
+		return value.hashCode();
+	}
+
+	private static boolean isFrozen(Object container) {
+		return container instanceof JSONObject ? ((JSONObject) container).isFrozen() : ((JSONArray) container).isFrozen();
+	}
+
+	/**
+	 * The hash kept in a frozen JSONObject or JSONArray, or 0 if it has not been computed
+	 */
+	private static int cachedHash(Object container) {
+		return container instanceof JSONObject ? ((JSONObject) container).hash : ((JSONArray) container).hash;
+	}
+
+	/**
+	 * Keep the hash in a frozen JSONObject or JSONArray. A hash of 0 is computed every time.
+	 */
+	private static void keep(Object container, int h) {
+		if (container instanceof JSONObject) {
+			JSONObject ob = (JSONObject) container;
+			if (ob.isFrozen()) {
+				ob.hash = h;
+			}
+		}
+		else {
+			JSONArray array = (JSONArray) container;
+			if (array.isFrozen()) {
+				array.hash = h;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the numbers have the same value. Integers and Longs, and Doubles, are
+	 * compared directly, the others as BigDecimals.
+	 */
+	static boolean numbersEqual(Number x, Number y) {
+		x = (Number) JSONNumber.decoded(x);
+		y = (Number) JSONNumber.decoded(y);
+		if (isLong(x) && isLong(y)) {
+			return x.longValue() == y.longValue();
+		}
+		else if (x instanceof Double && y instanceof Double) {
+			double dx = x.doubleValue(), dy = y.doubleValue();
+			return dx == dy || (dx != dx && dy != dy); //NaN is equal to itself
+		}
+		BigDecimal bx = toDecimal(x), by = toDecimal(y);
+		if (bx == null || by == null) {
+			return x.equals(y);
+		}
+		return bx.compareTo(by) == 0;
+	}
+
+	/**
+	 * The hash of a number, equal for numbers of the same value: the hash of a Long for those
+	 * that are integers in the range of a long, and of their BigDecimal without trailing zeros
+	 * for the others
+	 */
+	static int numberHash(Number n) {
+		n = (Number) JSONNumber.decoded(n);
+		if (isLong(n)) {
+			return Long.hashCode(n.longValue());
+		}
+		else if (n instanceof Double) {
+			double d = n.doubleValue();
+			if (d == Math.rint(d) && Math.abs(d) < 0x1p53) {
+				return Long.hashCode((long) d); //exact, and written as that integer
+			}
+		}
+		BigDecimal b = toDecimal(n);
+		if (b == null) {
+			return n.hashCode();
+		}
+		b = b.stripTrailingZeros();
+		if (b.scale() <= 0 && b.compareTo(MIN_LONG) >= 0 && b.compareTo(MAX_LONG) <= 0) {
+			return Long.hashCode(b.longValue());
+		}
+		return b.hashCode();
+	}
+
+	private static boolean isLong(Number n) {
+		return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+	}
+
+	/**
+	 * The exact value of a number, a Double being the decimal it is written as, or null for NaN,
+	 * the infinities and numbers that cannot be converted
+	 */
+	private static BigDecimal toDecimal(Number n) {
+		if (n instanceof BigDecimal) {
+			return (BigDecimal) n;
+		}
+		else if (n instanceof BigInteger) {
+			return new BigDecimal((BigInteger) n);
+		}
+		else if (isLong(n)) {
+			return BigDecimal.valueOf(n.longValue());
+		}
+		else if (n instanceof Double) {
+			double d = n.doubleValue();
+			return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+		}
+		try {
+			return new BigDecimal(n.toString()); //a Float too, as the decimal it is written as
+		} catch(NumberFormatException e) {
+			return null;
+		}
+	}
+}
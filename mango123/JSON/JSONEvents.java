@@ -0,0 +1,176 @@
+package mango123.JSON;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * <p>Java Flight Recorder events of parsing and serializing, and the hooks that emit them and
+ * update {@link JSONMetrics}.</p>
+ * <p>The events are only recorded for operations slower than their threshold, 20 ms by default,
+ * which is set like for any JFR event, e.g. in a <code>.jfc</code> file:
+ * {@code <event name="mango123.JSON.Parse"><setting name="threshold">100 ms</setting></event>}, or
+ * with <code>Recording.enable("mango123.JSON.Parse").withThreshold(...)</code>. The element count
+ * and depth are only computed for the operations that are recorded.</p>
+ */
+final class JSONEvents {
+	private JSONEvents() {}
+
+	@Name("mango123.JSON.Parse")
+	@Label("JSON Parse")
+	@Category("JSON")
+	@Description("A JSONObject or JSONArray parsed by .parse()")
+	@Threshold("20 ms")
+	static final class Parse extends Event {
+		@Label("Type")
+		String type;
+
+		@Label("Input Chars")
+		long chars;
+
+		@Label("Elements")
+		@Description("Values in the document, including objects and arrays")
+		long elements;
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Error")
+		@Description("The message of the syntax error, if the input could not be parsed")
+		String error;
+	}
+
+	@Name("mango123.JSON.Serialize")
+	@Label("JSON Serialize")
+	@Category("JSON")
+	@Description("A JSONObject or JSONArray written as JSON text or in the binary encoding")
+	@Threshold("20 ms")
+	static final class Serialize extends Event {
+		@Label("Type")
+		String type;
+
+		@Label("Format")
+		String format;
+
+		@Label("Output Size")
+		@Description("Chars of JSON text, or bytes of the binary encoding")
+		long size;
+
+		@Label("Elements")
+		@Description("Values in the document, including objects and arrays")
+		long elements;
+
+		@Label("Depth")
+		int depth;
+	}
+
+	/**
+	 * Called before a document is parsed from the tokener if the metrics or the event are
+	 * enabled, returns the start time for the metrics
+	 */
+	static long parseStarted(JSONTokener tokener, Parse event) {
+		tokener.startMetrics();
+		event.begin();
+		return JSONMetrics.ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Called after a document is parsed from the tokener
+	 */
+	static void parsed(JSONTokener tokener, Parse event, long start, Object document) {
+		if (JSONMetrics.ENABLED) {
+			JSONMetrics.parsed(tokener, start);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			long[] shape = shape(document);
+			event.type = document instanceof JSONObject ? "object" : "array";
+			event.chars = tokener.charsSinceStart();
+			event.elements = shape[0];
+			event.depth = (int) shape[1];
+			event.commit();
+		}
+	}
+
+	/**
+	 * Called when a document could not be parsed from the tokener
+	 */
+	static void parseFailed(JSONTokener tokener, Parse event, Class<?> type, JSONException e) {
+		if (JSONMetrics.ENABLED) {
+			JSONMetrics.parseFailed(tokener, e);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.type = type == JSONObject.class ? "object" : "array";
+			event.chars = tokener.charsSinceStart();
+			event.error = tokener.quiet ? tokener.errorCode + " at offset " + tokener.errorOffset : e.getMessage();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Called before a document is written as JSON text, returns the start time for the metrics
+	 */
+	static long serializeStarted(Serialize event) {
+		event.begin();
+		return JSONMetrics.ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Called after a document is written as JSON text
+	 */
+	static void serialized(Serialize event, long start, long chars, Object document) {
+		if (JSONMetrics.ENABLED) {
+			JSONMetrics.serialized(chars, start);
+		}
+		commit(event, "json", chars, document);
+	}
+
+	/**
+	 * Ends the event and records it if it is slower than the threshold
+	 */
+	static void commit(Serialize event, String format, long size, Object document) {
+		event.end();
+		if (event.shouldCommit()) {
+			long[] shape = shape(document);
+			event.type = document instanceof JSONObject ? "object" : "array";
+			event.format = format;
+			event.size = size;
+			event.elements = shape[0];
+			event.depth = (int) shape[1];
+			event.commit();
+		}
+	}
+
+	/**
+	 * The number of values and the depth of a document, walked with a stack of its own like
+	 * the parser and the serializer
+	 */
+	private static long[] shape(Object document) {
+		long[] shape = {1, 0};
+		ArrayDeque<Object> containers = new ArrayDeque<Object>();
+		ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+		containers.push(document);
+		depths.push(1);
+		while (!containers.isEmpty()) {
+			Object container = containers.pop();
+			int depth = depths.pop();
+			shape[1] = Math.max(shape[1], depth);
+			Collection<Object> values = container instanceof JSONObject ? ((JSONObject) container).map.values() : ((JSONArray) container).list;
+			shape[0] += values.size();
+			for (Object ob : values) {
+				if (ob instanceof JSONObject || ob instanceof JSONArray) {
+					containers.push(ob);
+					depths.push(depth + 1);
+				}
+			}
+		}
+		return shape;
+	}
+}
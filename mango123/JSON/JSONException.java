@@ -17,6 +17,13 @@ public class JSONException extends Exception {
 		super(message);
 	}
 
+	/**
+	 * Constructs a JSONException without a stack trace, which is cheap to throw and can be shared.
+	 */
+	JSONException(String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+	}
+
 	/**
 	 * Constructs a JSONException with a cause.
 	 * @param cause the cause of the JSONException
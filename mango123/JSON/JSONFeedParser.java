@@ -0,0 +1,641 @@
+package mango123.JSON;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A non-blocking JSON parser that is fed the input as it arrives, instead of reading it from a
+ * <code>Reader</code>.</p>
+ * <p>The input is UTF-8 encoded JSON objects and arrays, one after another, such as the messages
+ * received on a connection. Each chunk of bytes passed to {@link #feed(byte[], int, int)} is parsed
+ * as far as it goes, and the parser keeps its state where the chunk ends, even in the middle of a
+ * multi-byte UTF-8 char, a string, an escape sequence, a number or a <code>true</code>. So it
+ * never waits for more input and can run on the thread that receives the chunks. Every object
+ * or array that is completed by a chunk can be taken with {@link #poll()} right after.</p>
+ * <p>e.g. {@code parser.feed(buffer); while ((value = parser.poll()) != null) ...}</p>
+ * <p>The values are the same as the ones JSONObject.parse() and JSONArray.parse() return. A syntax
+ * error stops the parser for good; it throws an <code>IllegalStateException</code> if it is
+ * fed anything after that, unless it is {@link #reset()}.</p>
+ * <p>Documents are bounded by {@link #setLimits(JSONLimits)} as they are for JSONTokener, and
+ * whitespace is the same as for JSONTokener.</p>
+ * @see JSONTokener
+ */
+public final class JSONFeedParser {
+	/**
+	 * The states of the parser, what the next char can be
+	 */
+	private static final int ROOT = 0;          //a new document
+	private static final int VALUE = 1;         //a value
+	private static final int FIRST_KEY = 2;     //the first key of an object, or '}'
+	private static final int FIRST_VALUE = 3;   //the first value of an array, or ']'
+	private static final int KEY = 4;           //a key after ','
+	private static final int COLON = 5;         //':' after a key
+	private static final int AFTER_VALUE = 6;   //',' or the end of the object/array
+	private static final int STRING = 7;        //in a string
+	private static final int ESCAPE = 8;        //after '\' in a string
+	private static final int UNICODE = 9;       //in the 4 hex digits of a unicode escape sequence
+	private static final int NUMBER = 10;       //in a number
+	private static final int LITERAL = 11;      //in true, false or null
+
+	/**
+	 * The parts of a number, what has been read last
+	 */
+	private static final int MINUS = 0;
+	private static final int ZERO = 1;
+	private static final int DIGITS = 2;
+	private static final int POINT = 3;
+	private static final int FRACTION = 4;
+	private static final int EXPONENT = 5;
+	private static final int EXPONENT_SIGN = 6;
+	private static final int EXPONENT_DIGITS = 7;
+
+	private int state = ROOT;
+	private int numberState;
+	private boolean stringIsKey;
+	private String literal;
+	private int literalIndex;
+	private int unicodeDigits;
+	private int unicodeValue;
+	private boolean failed;
+
+	/**
+	 * The string or number being read
+	 */
+	private final StringBuilder scratch = new StringBuilder();
+
+	/**
+	 * The UTF-8 sequence being decoded: the bits so far, the number of bytes left, and the
+	 * smallest code point that the sequence may encode
+	 */
+	private int codePoint;
+	private int remainingBytes;
+	private int minCodePoint;
+
+	/**
+	 * Number of bytes fed so far, used for error offsets
+	 */
+	private long offset;
+
+	/**
+	 * The open objects (as a Map) and arrays (as a List), and the key of the value being read in
+	 * each object
+	 */
+	private Object[] containers = new Object[16];
+	private String[] keys = new String[16];
+	private int depth;
+
+	/**
+	 * The number of values in each open object or array, checked against maxEntries
+	 */
+	private int[] counts = new int[16];
+
+	/**
+	 * The limits on the documents, see .setLimits()
+	 */
+	private JSONLimits limits = JSONLimits.DEFAULT;
+
+	/**
+	 * The type of the numbers, see .setNumberPolicy()
+	 */
+	private JSONNumberPolicy numberPolicy = JSONNumberPolicy.AUTO;
+
+	/**
+	 * Completed documents that have not been polled
+	 */
+	private final ArrayDeque<Object> values = new ArrayDeque<Object>();
+
+	/**
+	 * Parses a chunk of input.
+	 * @param bytes the chunk of UTF-8 bytes
+	 * @param offset the offset of the chunk in the array
+	 * @param length the length of the chunk
+	 * @throws JSONException if any syntax error is encountered
+	 * @throws IllegalStateException if the parser has already thrown a <code>JSONException</code>
+	 */
+	public void feed(byte[] bytes, int offset, int length) throws JSONException {
+		checkNotFailed();
+		try {
+			for (int i = offset, end = offset + length; i < end; i++) {
+				decode(bytes[i]);
+			}
+		} catch(JSONException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Parses a chunk of input.
+	 * @param bytes the chunk of UTF-8 bytes
+	 * @throws JSONException if any syntax error is encountered
+	 * @throws IllegalStateException if the parser has already thrown a <code>JSONException</code>
+	 */
+	public void feed(byte[] bytes) throws JSONException {
+		feed(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Parses the remaining bytes of the buffer as a chunk of input, and leaves the buffer at its
+	 * limit.
+	 * @param buffer the chunk of UTF-8 bytes
+	 * @throws JSONException if any syntax error is encountered
+	 * @throws IllegalStateException if the parser has already thrown a <code>JSONException</code>
+	 */
+	public void feed(ByteBuffer buffer) throws JSONException {
+		if (buffer.hasArray()) {
+			int length = buffer.remaining();
+			feed(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+			buffer.position(buffer.position() + length);
+			return;
+		}
+		checkNotFailed();
+		try {
+			while (buffer.hasRemaining()) {
+				decode(buffer.get());
+			}
+		} catch(JSONException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Tells the parser that the input has ended.
+	 * @throws JSONException if the input ended in the middle of a document
+	 * @throws IllegalStateException if the parser has already thrown a <code>JSONException</code>
+	 */
+	public void endOfInput() throws JSONException {
+		checkNotFailed();
+		if (remainingBytes != 0 || state != ROOT) {
+			failed = true;
+			throw newSyntaxError(state == STRING ? "missing closing '\"'" : "unexpected end of input");
+		}
+	}
+
+	/**
+	 * Returns the next completed document, in the order they were fed.
+	 * @return the next JSONObject or JSONArray, or <code>null</code> if no document has been
+	 *         completed since it was last called
+	 */
+	public Object poll() {
+		return values.poll();
+	}
+
+	/**
+	 * Returns <code>true</code> if the parser is at the start of a document, which means the input
+	 * fed so far ends with a complete document (or is only whitespace).
+	 * @return <code>true</code> if the parser is not in the middle of a document
+	 */
+	public boolean isIdle() {
+		return state == ROOT && remainingBytes == 0;
+	}
+
+	/**
+	 * <p>Sets the limits on the documents, {@link JSONLimits#DEFAULT} by default, for input that
+	 * is not trusted. The depth, entries, string length and number length limits are applied as
+	 * the chars arrive, so a document that crosses one fails before it grows any further. The
+	 * chars limit is not, as the input is a stream of any number of documents.</p>
+	 * @param limits the limits
+	 * @return a reference to this object
+	 */
+	public JSONFeedParser setLimits(JSONLimits limits) {
+		if (limits == null) {
+			throw new NullPointerException("limits is null");
+		}
+		this.limits = limits;
+		return this;
+	}
+
+	/**
+	 * Returns the limits on the documents.
+	 * @return the limits
+	 */
+	public JSONLimits getLimits() {
+		return limits;
+	}
+
+	/**
+	 * Sets the type of the numbers in the documents, {@link JSONNumberPolicy#AUTO} by default, as
+	 * {@link JSONTokener#setNumberPolicy(JSONNumberPolicy)} does.
+	 * @param numberPolicy the number policy
+	 * @return a reference to this object
+	 */
+	public JSONFeedParser setNumberPolicy(JSONNumberPolicy numberPolicy) {
+		if (numberPolicy == null) {
+			throw new NullPointerException("numberPolicy is null");
+		}
+		this.numberPolicy = numberPolicy;
+		return this;
+	}
+
+	/**
+	 * Returns the type of the numbers in the documents.
+	 * @return the number policy
+	 */
+	public JSONNumberPolicy getNumberPolicy() {
+		return numberPolicy;
+	}
+
+	/**
+	 * Resets the parser, as if it was newly constructed but with the same limits and number
+	 * policy. The documents
+	 * that have not been polled are discarded.
+	 * @return a reference to this object
+	 */
+	public JSONFeedParser reset() {
+		state = ROOT;
+		failed = false;
+		remainingBytes = 0;
+		offset = 0;
+		Arrays.fill(containers, 0, depth, null);
+		Arrays.fill(keys, 0, depth, null);
+		depth = 0;
+		values.clear();
+		return this;
+	}
+
+	private void checkNotFailed() {
+		if (failed) {
+			throw new IllegalStateException("the parser has failed on a syntax error");
+		}
+	}
+
+	/**
+	 * Decode a byte of UTF-8 and parse the char once it is complete
+	 */
+	private void decode(byte b) throws JSONException {
+		offset++;
+		if (remainingBytes == 0) {
+			if (b >= 0) {
+				parse((char) b);
+				return;
+			}
+			else if ((b & 0xE0) == 0xC0) {
+				codePoint = b & 0x1F;
+				remainingBytes = 1;
+				minCodePoint = 0x80;
+			}
+			else if ((b & 0xF0) == 0xE0) {
+				codePoint = b & 0x0F;
+				remainingBytes = 2;
+				minCodePoint = 0x800;
+			}
+			else if ((b & 0xF8) == 0xF0) {
+				codePoint = b & 0x07;
+				remainingBytes = 3;
+				minCodePoint = 0x10000;
+			}
+			else {
+				throw newSyntaxError("invalid UTF-8 sequence");
+			}
+			return;
+		}
+
+		if ((b & 0xC0) != 0x80) {
+			throw newSyntaxError("invalid UTF-8 sequence");
+		}
+		codePoint = (codePoint << 6) | (b & 0x3F);
+		if (--remainingBytes > 0) {
+			return;
+		}
+		if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+		    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+			throw newSyntaxError("invalid UTF-8 sequence");
+		}
+		if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			parse(Character.highSurrogate(codePoint));
+			parse(Character.lowSurrogate(codePoint));
+		}
+		else {
+			parse((char) codePoint);
+		}
+	}
+
+	/**
+	 * Parse the next char of the input
+	 */
+	private void parse(char ch) throws JSONException {
+		switch (state) {
+		case ROOT:
+			if (ch == '{' || ch == '[') {
+				open(ch);
+			}
+			else if (!JSONTokener.isWhitespace(ch)) {
+				throw newSyntaxError("JSON document needs to start with '{' or '['");
+			}
+			return;
+		case VALUE:
+			if (!JSONTokener.isWhitespace(ch)) {
+				startValue(ch);
+			}
+			return;
+		case FIRST_KEY:
+			if (ch == '}') {
+				close();
+			}
+			else {
+				key(ch);
+			}
+			return;
+		case KEY:
+			key(ch);
+			return;
+		case FIRST_VALUE:
+			if (ch == ']') {
+				close();
+			}
+			else if (!JSONTokener.isWhitespace(ch)) {
+				startValue(ch);
+			}
+			return;
+		case COLON:
+			if (ch == ':') {
+				state = VALUE;
+			}
+			else if (!JSONTokener.isWhitespace(ch)) {
+				throw newSyntaxError("missing ':'");
+			}
+			return;
+		case AFTER_VALUE:
+			afterValue(ch);
+			return;
+		case STRING:
+			if (ch == '"') {
+				String s = scratch.toString();
+				if (stringIsKey) {
+					keys[depth - 1] = s;
+					state = COLON;
+				}
+				else {
+					addValue(s);
+				}
+			}
+			else if (ch == '\\') {
+				state = ESCAPE;
+			}
+			else if (Character.isISOControl(ch)) {
+				throw newSyntaxError("a JSON string cannot contain control character (e.g. \\t): " + ch);
+			}
+			else {
+				append(ch);
+			}
+			return;
+		case ESCAPE:
+			escape(ch);
+			return;
+		case UNICODE:
+			if (ch >= '0' && ch <= '9') {
+				unicodeValue = (unicodeValue << 4) + (ch - 48);
+			}
+			else if (ch >= 'A' && ch <= 'F') {
+				unicodeValue = (unicodeValue << 4) + (ch - 55);
+			}
+			else {
+				throw newSyntaxError("invalid hex digit '" + ch + "' in unicode escape sequence");
+			}
+			if (++unicodeDigits == 4) {
+				append((char) unicodeValue);
+				state = STRING;
+			}
+			return;
+		case NUMBER:
+			if (!number(ch)) {
+				//the char after the number
+				addValue(JSONParse.parseNumber(scratch.toString(), numberPolicy));
+				afterValue(ch);
+			}
+			return;
+		case LITERAL:
+			if (ch != literal.charAt(literalIndex)) {
+				throw newSyntaxError("Unrecognized symbol starting with '" + literal.charAt(0) + "'");
+			}
+			if (++literalIndex == literal.length()) {
+				addValue(literal == JSONTokener.TRUE ? Boolean.TRUE : literal == JSONTokener.FALSE ? Boolean.FALSE : null);
+			}
+			return;
+		}
+	}
+
+	private void startValue(char ch) throws JSONException {
+		switch (ch) {
+		case '{':
+		case '[':
+			open(ch);
+			return;
+		case '"':
+			scratch.setLength(0);
+			stringIsKey = false;
+			state = STRING;
+			return;
+		case 't':
+			startLiteral(JSONTokener.TRUE);
+			return;
+		case 'f':
+			startLiteral(JSONTokener.FALSE);
+			return;
+		case 'n':
+			startLiteral(JSONTokener.NULL);
+			return;
+		}
+		if (ch == '-' || (ch >= '0' && ch <= '9')) {
+			scratch.setLength(0);
+			scratch.append(ch);
+			numberState = ch == '-' ? MINUS : ch == '0' ? ZERO : DIGITS;
+			state = NUMBER;
+			return;
+		}
+		throw newSyntaxError("missing value");
+	}
+
+	private void key(char ch) throws JSONException {
+		if (ch == '"') {
+			scratch.setLength(0);
+			stringIsKey = true;
+			state = STRING;
+		}
+		else if (!JSONTokener.isWhitespace(ch)) {
+			throw newSyntaxError("missing key");
+		}
+	}
+
+	private void startLiteral(String s) {
+		literal = s;
+		literalIndex = 1;
+		state = LITERAL;
+	}
+
+	private void afterValue(char ch) throws JSONException {
+		boolean inObject = containers[depth - 1] instanceof Map;
+		if (ch == ',') {
+			state = inObject ? KEY : VALUE;
+		}
+		else if (inObject ? ch == '}' : ch == ']') {
+			close();
+		}
+		else if (!JSONTokener.isWhitespace(ch)) {
+			throw newSyntaxError(inObject ? "missing '}'" : "missing ']'");
+		}
+	}
+
+	private void escape(char ch) throws JSONException {
+		state = STRING;
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			append(ch);
+			return;
+		case 'b':
+			append('\b');
+			return;
+		case 'f':
+			append('\f');
+			return;
+		case 'n':
+			append('\n');
+			return;
+		case 'r':
+			append('\r');
+			return;
+		case 't':
+			append('\t');
+			return;
+		case 'u':
+			unicodeDigits = 0;
+			unicodeValue = 0;
+			state = UNICODE;
+			return;
+		}
+		throw newSyntaxError("invalid escape sequence \\" + ch +
+		      ", valid escape sequences are \\b\\f\\n\\r\\t\\/\\\"\\\\");
+	}
+
+	/**
+	 * Continue a number with ch, returns false if ch is not part of it and the number is complete
+	 */
+	private boolean number(char ch) throws JSONException {
+		boolean digit = ch >= '0' && ch <= '9';
+		switch (numberState) {
+		case MINUS:
+			if (!digit) {
+				throw newSyntaxError("expects numeric character after '-', but it is not found");
+			}
+			numberState = ch == '0' ? ZERO : DIGITS;
+			break;
+		case ZERO:
+		case DIGITS:
+		case FRACTION:
+			if (digit && numberState != ZERO) {
+				break;
+			}
+			else if (ch == '.' && numberState != FRACTION) {
+				numberState = POINT;
+			}
+			else if (ch == 'e' || ch == 'E') {
+				numberState = EXPONENT;
+			}
+			else {
+				return false;
+			}
+			break;
+		case POINT:
+			if (!digit) {
+				throw newSyntaxError("expects numeric character after '.', but it is not found");
+			}
+			numberState = FRACTION;
+			break;
+		case EXPONENT:
+		case EXPONENT_SIGN:
+			if (numberState == EXPONENT && (ch == '+' || ch == '-')) {
+				numberState = EXPONENT_SIGN;
+				break;
+			}
+			if (!digit) {
+				throw newSyntaxError("expects numeric character after '" + ch + "', but it is not found");
+			}
+			numberState = EXPONENT_DIGITS;
+			break;
+		case EXPONENT_DIGITS:
+			if (!digit) {
+				return false;
+			}
+			break;
+		}
+		if (scratch.length() == limits.maxNumberLength()) {
+			throw newSyntaxError("a number is longer than " + limits.maxNumberLength() + " chars");
+		}
+		scratch.append(ch);
+		return true;
+	}
+
+	/**
+	 * Append a char to the string being read
+	 */
+	private void append(char ch) throws JSONException {
+		if (scratch.length() == limits.maxStringLength()) {
+			throw newSyntaxError("a string is longer than " + limits.maxStringLength() + " chars");
+		}
+		scratch.append(ch);
+	}
+
+	private void open(char ch) throws JSONException {
+		if (depth + 1 > limits.maxDepth()) {
+			throw newSyntaxError("maximum depth of " + limits.maxDepth() + " exceeded");
+		}
+		if (depth == containers.length) {
+			containers = Arrays.copyOf(containers, depth * 2);
+			keys = Arrays.copyOf(keys, depth * 2);
+			counts = Arrays.copyOf(counts, depth * 2);
+		}
+		counts[depth] = 0;
+		if (ch == '{') {
+			containers[depth++] = new LinkedHashMap<String, Object>();
+			state = FIRST_KEY;
+		}
+		else {
+			containers[depth++] = new ArrayList<Object>();
+			state = FIRST_VALUE;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void close() throws JSONException {
+		Object container = containers[--depth];
+		containers[depth] = null;
+		keys[depth] = null;
+		Object value = container instanceof Map
+		        ? new JSONObject((Map<String, Object>) container)
+		        : new JSONArray((List<Object>) container);
+		if (depth == 0) {
+			values.add(value);
+			state = ROOT;
+		}
+		else {
+			addValue(value);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addValue(Object value) throws JSONException {
+		if (++counts[depth - 1] > limits.maxEntries()) {
+			throw newSyntaxError("an object or array has more than " + limits.maxEntries() + " values");
+		}
+		Object container = containers[depth - 1];
+		if (container instanceof Map) {
+			((Map<String, Object>) container).put(keys[depth - 1], value);
+		}
+		else {
+			((List<Object>) container).add(value);
+		}
+		state = AFTER_VALUE;
+	}
+
+	private JSONException newSyntaxError(String message) {
+		return new JSONException("Syntax error (offset " + offset + "): " + message);
+	}
+}
@@ -0,0 +1,130 @@
+package mango123.JSON;
+
+/**
+ * <p>Limits on the input read by a {@link JSONTokener}, for input that is not trusted. A limit is
+ * checked as the input is read, so a document that crosses it fails with a
+ * <code>JSONException</code> right there, before the rest of it is read or buffered.</p>
+ * <p>The chars, string and number limits are applied by the tokener to everything parsed from
+ * it. The depth and entries limits are applied by JSONObject.parse() and JSONArray.parse() (and
+ * so by JSONParser).</p>
+ * <p>Instances are immutable, the .with...() methods return an updated copy:</p>
+ * {@code tokener.setLimits(JSONLimits.DEFAULT.withMaxChars(1 << 20).withMaxStringLength(4096))}
+ */
+public final class JSONLimits {
+	/**
+	 * No limits, except a depth of JSONTokener.DEFAULT_MAX_DEPTH
+	 */
+	public static final JSONLimits DEFAULT = new JSONLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, JSONTokener.DEFAULT_MAX_DEPTH, Integer.MAX_VALUE);
+
+	private final long maxChars;
+	private final int maxStringLength;
+	private final int maxNumberLength;
+	private final int maxDepth;
+	private final int maxEntries;
+
+	private JSONLimits(long maxChars, int maxStringLength, int maxNumberLength, int maxDepth, int maxEntries) {
+		this.maxChars = maxChars;
+		this.maxStringLength = maxStringLength;
+		this.maxNumberLength = maxNumberLength;
+		this.maxDepth = maxDepth;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Returns a copy with a limit on the chars read from the input, since the tokener was
+	 * constructed or reset.
+	 * @param maxChars the maximum number of chars, at least 1
+	 * @return the updated copy
+	 */
+	public JSONLimits withMaxChars(long maxChars) {
+		return new JSONLimits(check("maxChars", maxChars), maxStringLength, maxNumberLength, maxDepth, maxEntries);
+	}
+
+	/**
+	 * Returns a copy with a limit on the length of strings and keys, in chars after the escape
+	 * sequences are decoded and without the quotes.
+	 * @param maxStringLength the maximum length, at least 1
+	 * @return the updated copy
+	 */
+	public JSONLimits withMaxStringLength(int maxStringLength) {
+		return new JSONLimits(maxChars, (int) check("maxStringLength", maxStringLength), maxNumberLength, maxDepth, maxEntries);
+	}
+
+	/**
+	 * Returns a copy with a limit on the length of numbers, in chars including the sign, the
+	 * decimal point and the exponent. Converting a number with a great many digits to a
+	 * BigInteger or a BigDecimal takes time quadratic in its length.
+	 * @param maxNumberLength the maximum length, at least 1
+	 * @return the updated copy
+	 */
+	public JSONLimits withMaxNumberLength(int maxNumberLength) {
+		return new JSONLimits(maxChars, maxStringLength, (int) check("maxNumberLength", maxNumberLength), maxDepth, maxEntries);
+	}
+
+	/**
+	 * Returns a copy with a limit on the nesting of objects and arrays, see
+	 * JSONTokener.setMaxDepth().
+	 * @param maxDepth the maximum depth, at least 1
+	 * @return the updated copy
+	 */
+	public JSONLimits withMaxDepth(int maxDepth) {
+		return new JSONLimits(maxChars, maxStringLength, maxNumberLength, (int) check("maxDepth", maxDepth), maxEntries);
+	}
+
+	/**
+	 * Returns a copy with a limit on the values in one object or array.
+	 * @param maxEntries the maximum number of values, at least 1
+	 * @return the updated copy
+	 */
+	public JSONLimits withMaxEntries(int maxEntries) {
+		return new JSONLimits(maxChars, maxStringLength, maxNumberLength, maxDepth, (int) check("maxEntries", maxEntries));
+	}
+
+	/**
+	 * @return the maximum number of chars read from the input
+	 */
+	public long maxChars() {
+		return maxChars;
+	}
+
+	/**
+	 * @return the maximum length of strings and keys
+	 */
+	public int maxStringLength() {
+		return maxStringLength;
+	}
+
+	/**
+	 * @return the maximum length of numbers
+	 */
+	public int maxNumberLength() {
+		return maxNumberLength;
+	}
+
+	/**
+	 * @return the maximum nesting of objects and arrays
+	 */
+	public int maxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return the maximum number of values in one object or array
+	 */
+	public int maxEntries() {
+		return maxEntries;
+	}
+
+	private static long check(String name, long limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException(name + " must be at least 1: " + limit);
+		}
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return "JSONLimits[maxChars=" + maxChars + ", maxStringLength=" + maxStringLength + ", maxNumberLength=" + maxNumberLength +
+		       ", maxDepth=" + maxDepth + ", maxEntries=" + maxEntries + "]";
+	}
+}
@@ -0,0 +1,286 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Opt-in metrics of the documents parsed by JSONObject.parse() and JSONArray.parse() (and so
+ * by JSONParser), and of the documents serialized by .toString() and .write(): documents and chars,
+ * tokens by type, the maximum depth, syntax errors, and latency histograms.</p>
+ * <p>The metrics are enabled by starting the JVM with <code>-Dmango123.JSON.metrics=true</code>.
+ * The check is a static final constant, so when they are disabled the JIT removes the
+ * instrumentation entirely.</p>
+ * <p>When enabled, the metrics are registered as the MXBean
+ * <code>mango123.JSON:type=JSONMetrics</code> (see {@link JSONMetricsMXBean}), and every operation
+ * is passed to the registered {@link Listener}s, on the thread that performed it.</p>
+ */
+public final class JSONMetrics implements JSONMetricsMXBean {
+	/**
+	 * True if the JVM was started with <code>-Dmango123.JSON.metrics=true</code>
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("mango123.JSON.metrics");
+
+	/**
+	 * Token types, the indexes of JSONTokener.tokenCounts
+	 */
+	static final int STRING = 0, NUMBER = 1, BOOLEAN = 2, NULL = 3, OBJECT = 4, ARRAY = 5, SYMBOL = 6;
+	private static final String[] TOKEN_TYPES = {"string", "number", "boolean", "null", "object", "array", "symbol"};
+	static final int TOKEN_TYPE_COUNT = TOKEN_TYPES.length;
+
+	private static final JSONMetrics INSTANCE = new JSONMetrics();
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("mango123.JSON:type=JSONMetrics"));
+			} catch(JMException e) {} //already registered by another class loader, the metrics still work
+		}
+	}
+
+	/**
+	 * <p>Receives every operation measured while the metrics are enabled. The methods are called on
+	 * the thread that performed the operation, so they should return quickly.</p>
+	 */
+	public interface Listener {
+		/**
+		 * A document was parsed.
+		 * @param chars the chars of the document
+		 * @param tokens the tokens of the document
+		 * @param maxDepth the deepest nesting of objects and arrays in the document
+		 * @param nanos the time it took
+		 */
+		void parsed(long chars, long tokens, int maxDepth, long nanos);
+
+		/**
+		 * A document could not be parsed.
+		 * @param chars the chars read before the error
+		 * @param e the exception thrown
+		 */
+		void parseFailed(long chars, JSONException e);
+
+		/**
+		 * A document was serialized.
+		 * @param chars the chars written
+		 * @param nanos the time it took
+		 */
+		void serialized(long chars, long nanos);
+	}
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final LongAdder documentsParsed = new LongAdder();
+	private final LongAdder charsParsed = new LongAdder();
+	private final LongAdder syntaxErrors = new LongAdder();
+	private final LongAdder[] tokenCounts = new LongAdder[TOKEN_TYPE_COUNT];
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final AtomicLongArray parseLatency = new AtomicLongArray(64);
+	private final LongAdder documentsSerialized = new LongAdder();
+	private final LongAdder charsSerialized = new LongAdder();
+	private final AtomicLongArray serializeLatency = new AtomicLongArray(64);
+
+	private JSONMetrics() {
+		for (int i = 0; i < TOKEN_TYPE_COUNT; i++) {
+			tokenCounts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Returns the metrics, which are only counted if {@link #ENABLED} is true.
+	 * @return the metrics
+	 */
+	public static JSONMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers a listener of the operations measured.
+	 * @param listener the listener
+	 */
+	public static void addListener(Listener listener) {
+		INSTANCE.listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added by {@link #addListener(Listener)}.
+	 * @param listener the listener
+	 */
+	public static void removeListener(Listener listener) {
+		INSTANCE.listeners.remove(listener);
+	}
+
+	@Override
+	public long getDocumentsParsed() {
+		return documentsParsed.sum();
+	}
+
+	@Override
+	public long getCharsParsed() {
+		return charsParsed.sum();
+	}
+
+	@Override
+	public long getSyntaxErrors() {
+		return syntaxErrors.sum();
+	}
+
+	@Override
+	public Map<String, Long> getTokenCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < TOKEN_TYPE_COUNT; i++) {
+			counts.put(TOKEN_TYPES[i], tokenCounts[i].sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public long[] getParseLatencyHistogram() {
+		return toArray(parseLatency);
+	}
+
+	@Override
+	public long getDocumentsSerialized() {
+		return documentsSerialized.sum();
+	}
+
+	@Override
+	public long getCharsSerialized() {
+		return charsSerialized.sum();
+	}
+
+	@Override
+	public long[] getSerializeLatencyHistogram() {
+		return toArray(serializeLatency);
+	}
+
+	/**
+	 * Sets all the metrics back to zero. Operations in progress may or may not be counted.
+	 */
+	@Override
+	public void reset() {
+		documentsParsed.reset();
+		charsParsed.reset();
+		syntaxErrors.reset();
+		for (LongAdder a : tokenCounts) {
+			a.reset();
+		}
+		maxDepth.set(0);
+		documentsSerialized.reset();
+		charsSerialized.reset();
+		for (int i = 0; i < 64; i++) {
+			parseLatency.set(i, 0);
+			serializeLatency.set(i, 0);
+		}
+	}
+
+	/**
+	 * Called after a document is parsed from the tokener
+	 */
+	static void parsed(JSONTokener tokener, long start) {
+		long nanos = System.nanoTime() - start;
+		JSONMetrics m = INSTANCE;
+		long chars = tokener.charsSinceStart();
+		long tokens = 0;
+		for (int i = 0; i < TOKEN_TYPE_COUNT; i++) {
+			long n = tokener.tokenCounts[i];
+			m.tokenCounts[i].add(n);
+			tokens += n;
+		}
+		int depth = tokener.maxTokenDepth;
+		for (int max = m.maxDepth.get(); depth > max && !m.maxDepth.compareAndSet(max, depth); max = m.maxDepth.get()) {}
+		m.documentsParsed.increment();
+		m.charsParsed.add(chars);
+		record(m.parseLatency, nanos);
+		for (Listener l : m.listeners) {
+			l.parsed(chars, tokens, depth, nanos);
+		}
+	}
+
+	/**
+	 * Called when a document could not be parsed from the tokener
+	 */
+	static void parseFailed(JSONTokener tokener, JSONException e) {
+		JSONMetrics m = INSTANCE;
+		long chars = tokener.charsSinceStart();
+		m.syntaxErrors.increment();
+		for (Listener l : m.listeners) {
+			l.parseFailed(chars, e);
+		}
+	}
+
+	/**
+	 * Called after a document is serialized
+	 */
+	static void serialized(long chars, long start) {
+		long nanos = System.nanoTime() - start;
+		JSONMetrics m = INSTANCE;
+		m.documentsSerialized.increment();
+		m.charsSerialized.add(chars);
+		record(m.serializeLatency, nanos);
+		for (Listener l : m.listeners) {
+			l.serialized(chars, nanos);
+		}
+	}
+
+	/**
+	 * Add the duration to its log2 bucket
+	 */
+	private static void record(AtomicLongArray histogram, long nanos) {
+		histogram.incrementAndGet(nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	private static long[] toArray(AtomicLongArray histogram) {
+		long[] a = new long[histogram.length()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = histogram.get(i);
+		}
+		return a;
+	}
+
+	/**
+	 * Counts the chars written to an Appendable, used by .write() when the metrics are enabled
+	 */
+	static final class CountingAppendable implements Appendable {
+		private final Appendable out;
+		long chars;
+
+		CountingAppendable(Appendable out) {
+			this.out = out;
+		}
+
+		@Override
+		public Appendable append(CharSequence s) throws IOException {
+			out.append(s);
+			chars += s.length();
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence s, int start, int end) throws IOException {
+			out.append(s, start, end);
+			chars += end - start;
+			return this;
+		}
+
+		@Override
+		public Appendable append(char ch) throws IOException {
+			out.append(ch);
+			chars++;
+			return this;
+		}
+	}
+}
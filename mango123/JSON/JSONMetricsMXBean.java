@@ -0,0 +1,31 @@
+package mango123.JSON;
+
+import java.util.Map;
+
+/**
+ * <p>The JMX view of {@link JSONMetrics}, registered as <code>mango123.JSON:type=JSONMetrics</code>
+ * when the metrics are enabled.</p>
+ * <p>The histograms have 64 buckets, where bucket <code>i</code> counts the operations that took
+ * from 2<sup>i</sup> to 2<sup>i+1</sup>-1 nanoseconds.</p>
+ */
+public interface JSONMetricsMXBean {
+	long getDocumentsParsed();
+
+	long getCharsParsed();
+
+	long getSyntaxErrors();
+
+	Map<String, Long> getTokenCounts();
+
+	int getMaxDepth();
+
+	long[] getParseLatencyHistogram();
+
+	long getDocumentsSerialized();
+
+	long getCharsSerialized();
+
+	long[] getSerializeLatencyHistogram();
+
+	void reset();
+}
@@ -0,0 +1,90 @@
+package mango123.JSON;
+
+import java.math.BigDecimal;
+
+/**
+ * <p>A number kept as its JSON text, parsed with {@link JSONNumberPolicy#RAW}. It is written back
+ * as the same text, and converted to other types only when it is asked for one.</p>
+ * <p>It is decoded lazily: the first call of .toNumber(), of a method of Number, or of a typed
+ * getter of JSONObject or JSONArray (e.g. .getInt()) decodes it like
+ * {@link JSONNumberPolicy#AUTO} would have, and the result is kept for the later calls. So the
+ * getters return the same as for a document parsed with AUTO, and the numbers that are only
+ * passed through are neither decoded nor formatted again.</p>
+ * <p>A JSONNumber is immutable and can be shared between threads.</p>
+ */
+public final class JSONNumber extends Number {
+	private static final long serialVersionUID = 0L;
+
+	private final String text;
+
+	/**
+	 * The decoded number, set on first use. Like the hash of a String it may be decoded more
+	 * than once by racing threads, which get equal results.
+	 */
+	private transient Number value;
+
+	/**
+	 * The text must be a valid JSON number
+	 */
+	JSONNumber(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Returns the number decoded like {@link JSONNumberPolicy#AUTO} decodes it: an Integer, a
+	 * Long, a BigInteger, a Double or a BigDecimal.
+	 * @return the number
+	 */
+	public Number toNumber() {
+		Number n = value;
+		if (n == null) {
+			n = (Number) JSONParse.parseNumber(text);
+			value = n;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the value, or its decoded number if it is a JSONNumber, used by the typed getters
+	 */
+	static Object decoded(Object value) {
+		return value instanceof JSONNumber ? ((JSONNumber) value).toNumber() : value;
+	}
+
+	/**
+	 * Returns the exact value of the number.
+	 * @return the number as a BigDecimal
+	 */
+	public BigDecimal toBigDecimal() {
+		return new BigDecimal(text);
+	}
+
+	@Override
+	public int intValue() {
+		return toNumber().intValue();
+	}
+
+	@Override
+	public long longValue() {
+		return toNumber().longValue();
+	}
+
+	@Override
+	public float floatValue() {
+		return toNumber().floatValue();
+	}
+
+	@Override
+	public double doubleValue() {
+		return toNumber().doubleValue();
+	}
+
+	/**
+	 * Returns the JSON text of the number.
+	 * @return the text
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+}
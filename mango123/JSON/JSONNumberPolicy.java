@@ -0,0 +1,40 @@
+package mango123.JSON;
+
+/**
+ * <p>How numbers are decoded by JSONObject.parse() and JSONArray.parse(), set with
+ * JSONTokener.setNumberPolicy().</p>
+ * <p>{@link #AUTO} picks the type of each number by trying the smallest one that holds it. The
+ * other policies decode every number into a fixed type, straight from its digits for numbers of
+ * up to 18 digits, so the typed getters that match the policy are the ones to use, e.g.
+ * .getDecimal() for {@link #ALL_DECIMAL}.</p>
+ */
+public enum JSONNumberPolicy {
+	/**
+	 * Integer, Long or BigInteger for integers, and Double for the other numbers, or BigDecimal
+	 * if they are out of the range of a double. This is the default.
+	 */
+	AUTO,
+
+	/**
+	 * Long for integers, or BigInteger if they are out of the range of a long, and the other
+	 * numbers like AUTO.
+	 */
+	INTEGERS_AS_LONG,
+
+	/**
+	 * Double for every number, or BigDecimal if it is out of the range of a double, so it can
+	 * still be written as JSON.
+	 */
+	ALL_DOUBLE,
+
+	/**
+	 * BigDecimal for every number, which keeps it exactly as written, including its scale.
+	 */
+	ALL_DECIMAL,
+
+	/**
+	 * {@link JSONNumber} for every number, which keeps its text and is written back unchanged.
+	 * It is only decoded when it is read, e.g. by .getInt(), and then like AUTO.
+	 */
+	RAW
+}
@@ -1,9 +1,15 @@
 package mango123.JSON;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>This class represents a JSON object. It cannot be constructed directly. Instead, use the static
@@ -11,11 +17,23 @@ import java.util.Map;
  * of JSONObject.</p>
  * <p>e.g. a JSONTokener containing the input "{@code {"a": 1, "b": "HELLO", "c": [1, 2, 3]}" can be passed
  * into {@code .parse()} to get an instance of JSONArray containing the above elements.</p>
+ * <p>A JSONObject can be made immutable with {@link #freeze()}. The mutators of a frozen JSONObject
+ * throw an <code>UnsupportedOperationException</code>.</p>
  * @version 0.8
  * @see JSONArray
  */
 public final class JSONObject {
-	Map<String, Object> map;
+	final Map<String, Object> map;
+
+	/**
+	 * Set by .freeze(), checked by the mutators
+	 */
+	boolean frozen;
+
+	/**
+	 * The structural hash, kept once it is computed if frozen, see JSONEquality
+	 */
+	int hash;
 	
 	/**
 	 * Used privately for the .parse() and .newEmptyInstance()
@@ -33,6 +51,21 @@ public final class JSONObject {
 		return new JSONObject(new LinkedHashMap<String, Object>());
 	}
 
+	/**
+	 * <p>Creates and returns a new, empty instance of JSONObject that can be used by many threads
+	 * at the same time without locking.</p>
+	 * <p>Reads do not lock, and writes to different keys rarely contend. Iterating, .toString() and
+	 * .write() are weakly consistent: they never throw a <code>ConcurrentModificationException</code>
+	 * and never block the threads writing to the JSONObject, and they may or may not reflect
+	 * writes made while they run. The keys of a concurrent JSONObject are not kept in insertion
+	 * order. Nested JSONObjects and JSONArrays that are modified concurrently should be concurrent
+	 * instances as well.</p>
+	 * @return an empty, thread-safe instance of JSONObject
+	 */
+	public static JSONObject newConcurrentInstance() {
+		return new JSONObject(new JSONConcurrentMap());
+	}
+
 	/**
 	 * Parses and constructs a <code>JSONObject</code> from a <code>JSONTokener</code>.
 	 * @param tokener the JSON input
@@ -40,6 +73,46 @@ public final class JSONObject {
 	 * @throws JSONException if any syntax error is encountered
 	 */
 	public static JSONObject parse(JSONTokener tokener) throws JSONException {
+		JSONEvents.Parse event = new JSONEvents.Parse();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			return parseDocument(tokener);
+		}
+		long start = JSONEvents.parseStarted(tokener, event);
+		try {
+			JSONObject ob = parseDocument(tokener);
+			JSONEvents.parsed(tokener, event, start, ob);
+			return ob;
+		}
+		catch(JSONException e) {
+			JSONEvents.parseFailed(tokener, event, JSONObject.class, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Parses a <code>JSONObject</code> from a <code>JSONTokener</code> like .parse(), but returns the
+	 * error in the result instead of throwing a <code>JSONException</code>, see {@link JSONParseResult}.
+	 * @param tokener the JSON input
+	 * @return the result, with the <code>JSONObject</code> if the input is valid
+	 */
+	public static JSONParseResult<JSONObject> tryParse(JSONTokener tokener) {
+		boolean quiet = tokener.quiet;
+		tokener.quiet = true;
+		try {
+			return JSONParseResult.valid(parse(tokener));
+		}
+		catch(JSONException e) {
+			return JSONParseResult.invalid(tokener.errorCode, tokener.errorOffset);
+		}
+		finally {
+			tokener.quiet = quiet;
+		}
+	}
+
+	/**
+	 * Parse the whole input of the tokener, see .parse()
+	 */
+	private static JSONObject parseDocument(JSONTokener tokener) throws JSONException {
 		//parseObjectFrom() requires the '{' to be read
 		if (tokener.nextToken() != JSONTokener.LEFT_BRACE) {
 			throw tokener.newSyntaxError("JSON object needs to start with '{");
@@ -49,12 +122,41 @@ public final class JSONObject {
 	
 		//if that's not the end of the JSON input -> syntax error
 		if (tokener.nextToken() != null) {
-			throw tokener.newSyntaxError("JSON object needs to end with '}'");
+			throw tokener.newSyntaxError(JSONParseResult.Error.TRAILING_INPUT, "JSON object needs to end with '}'");
 		}
 
 		return ob;
 	}
 
+	/**
+	 * <p>Parses and constructs a <code>JSONObject</code> from a UTF-8 file asynchronously.</p>
+	 * <p>The file is read with an <code>AsynchronousFileChannel</code> and parsed by the threads
+	 * that complete the reads, so no thread is blocked waiting for the disk, and the next chunk
+	 * of the file is read while the current one is parsed.</p>
+	 * @param path the file containing the JSON input
+	 * @return a future completed with a <code>JSONObject</code> of the JSON data, or completed
+	 *         exceptionally with a <code>JSONException</code> if any syntax error is encountered or
+	 *         an <code>IOException</code> if the file cannot be read
+	 */
+	public static CompletableFuture<JSONObject> parseAsync(Path path) {
+		return parseAsync(path, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * <p>Parses and constructs a <code>JSONObject</code> from a UTF-8 file asynchronously, as
+	 * {@link #parseAsync(Path)} does, within the specified limits and with numbers of the
+	 * specified type, as {@link JSONFeedParser#setLimits(JSONLimits)} and
+	 * {@link JSONFeedParser#setNumberPolicy(JSONNumberPolicy)} apply them.</p>
+	 * @param path the file containing the JSON input
+	 * @param limits the limits of the input
+	 * @param numberPolicy the type of the numbers
+	 * @return a future completed as by {@link #parseAsync(Path)}, or completed exceptionally with a
+	 *         <code>JSONException</code> if a limit is exceeded
+	 */
+	public static CompletableFuture<JSONObject> parseAsync(Path path, JSONLimits limits, JSONNumberPolicy numberPolicy) {
+		return JSONAsyncParse.parse(path, JSONObject.class, limits, numberPolicy);
+	}
+
 	/**
 	 * <p>Returns <code>true</code> if the JSONObject contains the specified key.</p>
 	 * @param key the string key
@@ -101,7 +203,7 @@ public final class JSONObject {
 	 * @return the <code>Integer</code> mapped by the key, or null if it cannot be found
 	 */
 	public Integer getInt(String key) {
-		Object v = map.get(key);
+		Object v = JSONNumber.decoded(map.get(key));
 		return (v instanceof Integer) ? (Integer) v : null;
 	}
 	
@@ -112,7 +214,7 @@ public final class JSONObject {
 	 * @return the <code>Long</code> mapped by the key, or null if it cannot be found
 	 */
 	public Long getLong(String key) {
-		Object v = map.get(key);
+		Object v = JSONNumber.decoded(map.get(key));
 		return (v instanceof Long) ? (Long) v : null;
 	}
 	
@@ -124,7 +226,7 @@ public final class JSONObject {
 	 * @return the <code>BigInteger</code> mapped by the key, or null if it cannot be found
 	 */
 	public BigInteger getBigInt(String key) {
-		Object v = map.get(key);
+		Object v = JSONNumber.decoded(map.get(key));
 		return (v instanceof BigInteger) ? (BigInteger) v : null;
 	}
 	
@@ -135,7 +237,7 @@ public final class JSONObject {
 	 * @return the <code>Double</code> mapped by the key, or null if it cannot be found
 	 */
 	public Double getDouble(String key) {
-		Object v = map.get(key);
+		Object v = JSONNumber.decoded(map.get(key));
 		return (v instanceof Double) ? (Double) v : null;
 	}
 	
@@ -146,7 +248,7 @@ public final class JSONObject {
 	 * @return the <code>BigDecimal</code> mapped by the key, or null if it cannot be found
 	 */
 	public BigDecimal getDecimal(String key) {
-		Object v = map.get(key);
+		Object v = JSONNumber.decoded(map.get(key));
 		return (v instanceof BigDecimal) ? (BigDecimal) v : null;
 	}
 	
@@ -203,6 +305,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, String value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -214,6 +317,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, Integer value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -225,6 +329,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, Long value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -240,6 +345,7 @@ public final class JSONObject {
 	 * @throw IllegalArgumentException if an instance of a subclass of BigInteger is passed as num
 	 */
 	public JSONObject put(String key, BigInteger value) {
+		checkNotFrozen();
 		if (value.getClass() == BigInteger.class) map.put(key, value);
 		else throw new IllegalArgumentException(".put() does not accept a subclass of BigInteger");
 		return this;
@@ -252,6 +358,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, Double value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -268,6 +375,7 @@ public final class JSONObject {
 	 * @throw IllegalArgumentException if an instance of a subclass of BigDecimal is passed as num
 	 */
 	public JSONObject put(String key, BigDecimal value) {
+		checkNotFrozen();
 		if (value.getClass() == BigDecimal.class) map.put(key, value);
 		else throw new IllegalArgumentException(".put() does not accept a subclass of BigDecimal");
 		return this;
@@ -281,6 +389,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, Boolean value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -292,6 +401,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, JSONObject value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -303,6 +413,7 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject put(String key, JSONArray value) {
+		checkNotFrozen();
 		map.put(key, value);
 		return this;
 	}
@@ -313,19 +424,347 @@ public final class JSONObject {
 	 * @return a reference to this object
 	 */
 	public JSONObject putNull(String key) {
+		checkNotFrozen();
 		map.put(key, null);
 		return this;
 	}
 
+	/**
+	 * <p>Returns a new JSONObject with the specified key mapped to the value, leaving this JSONObject
+	 * unchanged. The new JSONObject is frozen and shares all its unchanged structure with this one,
+	 * so the update takes O(log n) time and memory instead of copying the whole object.</p>
+	 * <p>Updating a JSONObject that was not created by this method or {@link #persistent()} indexes
+	 * its entries in O(n) on every call, so to apply many updates to such a JSONObject, convert it
+	 * once with {@link #persistent()} and update the result. This JSONObject and the value are
+	 * left as they are: a JSONObject or JSONArray in them that is not frozen is copied, so the
+	 * caller can go on modifying it without changing the result.</p>
+	 * @param key the string key
+	 * @param value the string value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, String value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>Integer</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>Integer</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, Integer value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>Long</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>Long</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, Long value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>BigInteger</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * <p>This method only accepts an instance of BigInteger and not its subclasses as the value.</p>
+	 * @param key the string key
+	 * @param value the <code>BigInteger</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 * @throw IllegalArgumentException if an instance of a subclass of BigInteger is passed as the value
+	 */
+	public JSONObject with(String key, BigInteger value) {
+		if (value.getClass() != BigInteger.class) {
+			throw new IllegalArgumentException(".with() does not accept a subclass of BigInteger");
+		}
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>Double</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>Double</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, Double value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>BigDecimal</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * <p>This method only accepts an instance of BigDecimal and not its subclasses as the value.</p>
+	 * @param key the string key
+	 * @param value the <code>BigDecimal</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 * @throw IllegalArgumentException if an instance of a subclass of BigDecimal is passed as the value
+	 */
+	public JSONObject with(String key, BigDecimal value) {
+		if (value.getClass() != BigDecimal.class) {
+			throw new IllegalArgumentException(".with() does not accept a subclass of BigDecimal");
+		}
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>Boolean</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>Boolean</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, Boolean value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>JSONObject</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>JSONObject</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, JSONObject value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with the key/value (<code>JSONArray</code>) pair. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @param value the <code>JSONArray</code> value
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject with(String key, JSONArray value) {
+		return withValue(key, value);
+	}
+
+	/**
+	 * <p>Returns a new JSONObject with <code>null</code> associated with the specified key. See
+	 * {@link #with(String, String)}.</p>
+	 * @param key the string key
+	 * @return a new frozen JSONObject with the mapping
+	 */
+	public JSONObject withNull(String key) {
+		return withValue(key, null);
+	}
+
+	/**
+	 * Used by the .with() methods
+	 */
+	private JSONObject withValue(String key, Object value) {
+		JSONObject ob = new JSONObject(((JSONPersistentMap) persistent().map).with(key, frozenCopy(value)));
+		ob.frozen = true;
+		return ob;
+	}
+
+	/**
+	 * <p>Returns a frozen JSONObject with the same mappings as this one that the .with() methods
+	 * update in O(log n). This JSONObject is returned itself if it was created by a .with() method
+	 * or by this method, otherwise its entries are indexed once in O(n) and a JSONObject or
+	 * JSONArray in it that is not frozen is copied, as by {@link #with(String, String)}.</p>
+	 * <p>e.g. {@code JSONObject base = ob.persistent(); JSONObject a = base.with("a", 1), b = base.with("b", 2);}</p>
+	 * @return a frozen JSONObject that is updated in O(log n)
+	 */
+	public JSONObject persistent() {
+		if (map instanceof JSONPersistentMap) {
+			return this;
+		}
+		JSONObject ob = new JSONObject(JSONPersistentMap.copyOf(map));
+		ob.frozen = true;
+		return ob;
+	}
+
 	/**
 	 * <p>Remove all mappings from this JSONObject</p>
 	 * @return a reference to this object
 	 */
 	public JSONObject clear() {
+		checkNotFrozen();
 		map.clear();
 		return this;
 	}
 
+	/**
+	 * <p>Makes this JSONObject and every JSONObject and JSONArray nested in it immutable, in place
+	 * and without copying anything. A nested JSONObject or JSONArray can be frozen on its own
+	 * without freezing the containers around it.</p>
+	 * <p>Reading a frozen JSONObject needs no synchronization, so one frozen document can be shared
+	 * by any number of threads once it is safely published to them: through a happens-before edge
+	 * such as a final or volatile field, a concurrent collection, a lock, or starting the thread.
+	 * Freezing does not publish the document by itself, and a thread that gets it through a data
+	 * race may see it unfrozen or only partly built.</p>
+	 * <p>The document is walked with a stack of its own, so it can be nested to any depth.</p>
+	 * @return a reference to this object
+	 */
+	public JSONObject freeze() {
+		if (!frozen) {
+			JSONObject.freeze(this);
+		}
+		return this;
+	}
+
+	/**
+	 * Freeze a JSONObject or JSONArray and everything nested in it, used by .freeze(). A frozen
+	 * container is not walked again, since everything in it is frozen already.
+	 */
+	static void freeze(Object root) {
+		ArrayDeque<Object> pending = new ArrayDeque<Object>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			Object container = pending.pop();
+			Iterable<Object> values;
+			if (container instanceof JSONObject) {
+				JSONObject ob = (JSONObject) container;
+				if (ob.frozen) {
+					continue;
+				}
+				ob.frozen = true;
+				values = ob.map.values();
+			}
+			else {
+				JSONArray array = (JSONArray) container;
+				if (array.frozen) {
+					continue;
+				}
+				array.frozen = true;
+				values = array.list;
+			}
+			for (Object v : values) {
+				if (v instanceof JSONObject || v instanceof JSONArray) {
+					pending.push(v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a frozen deep copy of a JSONObject or JSONArray that is not frozen, used by the
+	 * .with() methods to leave the caller's containers mutable. Frozen containers are shared, and
+	 * other values are returned as they are.
+	 */
+	static Object frozenCopy(Object value) {
+		if (!(value instanceof JSONObject || value instanceof JSONArray) || isFrozen(value)) {
+			return value;
+		}
+
+		//pairs of containers to copy and their empty copies, filled in order
+		ArrayDeque<Object> pending = new ArrayDeque<Object>();
+		Object root = emptyFrozenCopy(value);
+		pending.push(value);
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			Object copy = pending.pop();
+			Object source = pending.pop();
+			if (source instanceof JSONObject) {
+				Map<String, Object> target = ((JSONObject) copy).map;
+				for (Map.Entry<String, Object> e : ((JSONObject) source).map.entrySet()) {
+					target.put(e.getKey(), copyLater(e.getValue(), pending));
+				}
+			}
+			else {
+				List<Object> target = ((JSONArray) copy).list;
+				for (Object v : ((JSONArray) source).list) {
+					target.add(copyLater(v, pending));
+				}
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Returns the value, or an empty copy of a container that is not frozen, pushed with it to be
+	 * filled by .frozenCopy()
+	 */
+	private static Object copyLater(Object value, ArrayDeque<Object> pending) {
+		if (!(value instanceof JSONObject || value instanceof JSONArray) || isFrozen(value)) {
+			return value;
+		}
+		Object copy = emptyFrozenCopy(value);
+		pending.push(value);
+		pending.push(copy);
+		return copy;
+	}
+
+	private static Object emptyFrozenCopy(Object container) {
+		if (container instanceof JSONObject) {
+			JSONObject ob = new JSONObject(new LinkedHashMap<String, Object>(((JSONObject) container).map.size() * 4 / 3 + 1));
+			ob.frozen = true;
+			return ob;
+		}
+		JSONArray array = new JSONArray(new ArrayList<Object>(((JSONArray) container).list.size()));
+		array.frozen = true;
+		return array;
+	}
+
+	private static boolean isFrozen(Object container) {
+		return container instanceof JSONObject ? ((JSONObject) container).frozen : ((JSONArray) container).frozen;
+	}
+
+	/**
+	 * <p>Returns <code>true</code> if this JSONObject has been frozen by {@link #freeze()}.</p>
+	 * @return <code>true</code> if this JSONObject is immutable
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Used by the mutators to reject modification of a frozen JSONObject
+	 */
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException("the JSONObject is frozen");
+		}
+	}
+
+	/**
+	 * <p>Writes the JSONObject in JSON to the specified <code>Appendable</code> (e.g. a
+	 * <code>Writer</code> or a <code>StringBuilder</code>), in the same format as
+	 * {@link #toString()}.</p>
+	 * @param out where the JSON is written to
+	 * @throws IOException if the <code>Appendable</code> throws it
+	 */
+	public void write(Appendable out) throws IOException {
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			JSONSerializer.writeObject(map, out);
+			return;
+		}
+		long start = JSONEvents.serializeStarted(event);
+		JSONMetrics.CountingAppendable counting = new JSONMetrics.CountingAppendable(out);
+		JSONSerializer.writeObject(map, counting);
+		JSONEvents.serialized(event, start, counting.chars, this);
+	}
+
+	/**
+	 * <p>Returns true if the other one is a JSONObject with equal keys and values, in any order. Numbers are
+	 * equal if they have the same value, whatever their type, e.g. 1, 1L, 1.0 and
+	 * new BigDecimal("1.00"). Nested objects and arrays are compared the same way.</p>
+	 * <p>Two frozen ones are compared by their hashes first.</p>
+	 * @param o the object to compare to
+	 * @return true if they are structurally equal
+	 */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof JSONObject && JSONEquality.equal(this, o);
+	}
+
+	/**
+	 * <p>Returns a hash consistent with .equals(). It is computed from the whole document every
+	 * time, except once frozen, when it is kept.</p>
+	 * @return the structural hash
+	 */
+	@Override
+	public int hashCode() {
+		return JSONEquality.hash(this);
+	}
+
 	/**
 	 * <p>Returns the string representation of the JSONObject in JSON.</p>
 	 * <p>The format will be the most compact (no whitespaces) and strictly conform to JSON.</p>
@@ -334,26 +773,27 @@ public final class JSONObject {
 	 */
 	@Override
 	public String toString() {
-		StringBuilder str = new StringBuilder().append('{');
-
-		int size = map.size(), i = 0;
-		for (Map.Entry<String, Object> m : map.entrySet()) {
-			str.append('"').append(m.getKey()).append('"').append(':');
-			
-			if (m.getValue() instanceof String) {
-				str.append('"')
-					.append(JSONTokener.escapeStr((String) m.getValue()))
-					.append('"');
-			}
-			else {
-				str.append(m.getValue());
-			}
+		JSONEvents.Serialize event = new JSONEvents.Serialize();
+		if (!JSONMetrics.ENABLED && !event.isEnabled()) {
+			return serialize();
+		}
+		long start = JSONEvents.serializeStarted(event);
+		String str = serialize();
+		JSONEvents.serialized(event, start, str.length(), this);
+		return str;
+	}
 
-			if (++i < size) {
-				str.append(',');
-			}
+	/**
+	 * The compact JSON of the JSONObject, without recording an event
+	 */
+	private String serialize() {
+		StringBuilder str = new StringBuilder();
+		try {
+			JSONSerializer.writeObject(map, str);
+		}
+		catch(IOException e) {
+			throw new IllegalStateException(e); //StringBuilder does not throw IOException
 		}
-		str.append('}');
 		return str.toString();
 	}
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package mango123.JSON;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,74 +18,283 @@ class JSONParse {
 	 * Parse a JSON Object, assuming the starting '{' has been read by the tokener
 	 */
 	static Map<String, Object> parseObject(JSONTokener tokener) throws JSONException {
-		Map<String, Object> ob = new LinkedHashMap<String, Object>();
+		return parseObject(tokener, 0);
+	}
+
+	/**
+	 * Parse a JSON Object that is inside <code>outer</code> other objects and arrays, e.g. a
+	 * field read by a JSONCodec, so it counts towards the depth limit of the tokener as well
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> parseObject(JSONTokener tokener, int outer) throws JSONException {
+		return (Map<String, Object>) parseContainer(new LinkedHashMap<String, Object>(), tokener, outer);
+	}
+
+	/**
+	 * Parse a JSON Array, assuming the starting '[' has been read by the tokener
+	 */
+	static List<Object> parseArray(JSONTokener tokener) throws JSONException {
+		return parseArray(tokener, 0);
+	}
+
+	/**
+	 * See .parseObject(JSONTokener, int)
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Object> parseArray(JSONTokener tokener, int outer) throws JSONException {
+		return (List<Object>) parseContainer(new ArrayList<Object>(), tokener, outer);
+	}
+
+	/**
+	 * <p>Parse the rest of a JSON Object (into a Map) or a JSON Array (into a List), assuming its
+	 * starting '{' or '[' has been read by the tokener.</p>
+	 * <p>The objects and arrays that are still open are kept on a stack of their own, which grows
+	 * as needed, instead of the thread's stack, so a deep document cannot overflow it. The depth
+	 * and the values in each container are limited by the JSONLimits of the tokener instead.</p>
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object parseContainer(Object root, JSONTokener tokener, int outer) throws JSONException {
+		JSONLimits limits = tokener.getLimits();
+		int maxDepth = limits.maxDepth();
+		int maxEntries = limits.maxEntries();
+		Object[] stack = new Object[16]; //the open objects and arrays around the current one
+		String[] keys = new String[16];  //the key of the current one in each open object
+		int depth = 0;
+
+		Object container = root;
+		boolean isObject = root instanceof Map;
 		boolean start = true;
+		String token = tokener.nextToken();
 
 		while (true) {
-			//start by checking whether there is a key
-			String key;
-			String token = tokener.nextToken();
-	
-			//make an extra clause in case of empty object
-			if (start) {
-				if (token == JSONTokener.RIGHT_BRACE) return ob;
-				start = false;
-			}
-			if (token != null && token.charAt(0) == '"') {
-				key = token.substring(1, token.length() - 1);
+			String key = null;
+			boolean close;
+			if (isObject) {
+				//make an extra clause in case of empty object
+				close = start && token == JSONTokener.RIGHT_BRACE;
+				if (!close) {
+					//start by checking whether there is a key
+					if (token != null && token.charAt(0) == '"') {
+						key = tokener.toKey(token);
+					}
+					else {
+						throw tokener.newSyntaxError("missing key");
+					}
+
+					//follow by colon
+					if (tokener.nextToken() != JSONTokener.COLON) {
+						throw tokener.newSyntaxError("missing ':'");
+					}
+					token = tokener.nextToken();
+				}
 			}
 			else {
-				throw tokener.newSyntaxError("missing key");
+				//extra clause in case of empty JSONArray "[]"
+				close = start && token == JSONTokener.RIGHT_SQUARE;
 			}
 
-			//follow by colon
-			if (tokener.nextToken() != JSONTokener.COLON) {
-				throw tokener.newSyntaxError("missing ':'");
+			if (!close) {
+				//follow by a value, which opens a new object or array
+				if (token == JSONTokener.LEFT_BRACE || token == JSONTokener.LEFT_SQUARE) {
+					if (outer + depth + 2 > maxDepth) {
+						throw tooDeep(tokener, maxDepth);
+					}
+					if (depth == stack.length) {
+						stack = Arrays.copyOf(stack, depth * 2);
+						keys = Arrays.copyOf(keys, depth * 2);
+					}
+					stack[depth] = container;
+					keys[depth] = key;
+					depth++;
+					isObject = token == JSONTokener.LEFT_BRACE;
+					container = isObject ? new LinkedHashMap<String, Object>() : new ArrayList<Object>();
+					start = true;
+					token = tokener.nextToken();
+					continue;
+				}
+				if (add(container, key, toScalar(token, tokener)) > maxEntries) {
+					throw tooManyEntries(tokener, maxEntries);
+				}
 			}
 
-			//follow by a value
-			ob.put(key, toCorrespondingPOJO(tokener.nextToken(), tokener));
-			
-			//follow by either '}' (return the JSONObject) or ',' (do nothing and continue)
-			token = tokener.nextToken();
-			if (token == JSONTokener.RIGHT_BRACE) {
-				return ob;
-			}
-			else if (token != JSONTokener.COMMA) {
-				throw tokener.newSyntaxError("missing '}'");
+			//follow by either the end of the container, which then is a value of the one around it,
+			//or ',' (continue with the next value)
+			while (true) {
+				if (!close) {
+					token = tokener.nextToken();
+					if (token == (isObject ? JSONTokener.RIGHT_BRACE : JSONTokener.RIGHT_SQUARE)) {
+						close = true;
+					}
+					else if (token == JSONTokener.COMMA) {
+						break;
+					}
+					else {
+						throw tokener.newSyntaxError(isObject ? "missing '}'" : "missing ']'");
+					}
+				}
+				if (depth == 0) {
+					return container;
+				}
+				Object value = isObject ? new JSONObject((Map<String, Object>) container) : new JSONArray((List<Object>) container);
+				depth--;
+				container = stack[depth];
+				key = keys[depth];
+				stack[depth] = null;
+				keys[depth] = null;
+				isObject = container instanceof Map;
+				if (add(container, key, value) > maxEntries) {
+					throw tooManyEntries(tokener, maxEntries);
+				}
+				close = false;
 			}
+			start = false;
+			token = tokener.nextToken();
 		}
 	}
 
 	/**
-	 * Parse a JSON Array, assuming the starting '[' has been read by the tokener
+	 * Put a value into an object that is parsed outside of .parseContainer(), e.g. a record of
+	 * NDJSONReader, checking the entries limit of the tokener the same way
 	 */
-	static List<Object> parseArray(JSONTokener tokener) throws JSONException {
-		List<Object> list = new ArrayList<Object>();
+	static void put(Map<String, Object> map, String key, Object value, JSONTokener tokener) throws JSONException {
+		int maxEntries = tokener.getLimits().maxEntries();
+		if (add(map, key, value) > maxEntries) {
+			throw tooManyEntries(tokener, maxEntries);
+		}
+	}
+
+	/**
+	 * Add a value to a Map (with its key) or a List, returns the number of values it then has
+	 */
+	@SuppressWarnings("unchecked")
+	private static int add(Object container, String key, Object value) {
+		if (key != null) {
+			Map<String, Object> map = (Map<String, Object>) container;
+			map.put(key, value);
+			return map.size();
+		}
+		List<Object> list = (List<Object>) container;
+		list.add(value);
+		return list.size();
+	}
+
+	static JSONException tooDeep(JSONTokener tokener, int maxDepth) {
+		return tokener.newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "maximum depth of " + maxDepth + " exceeded");
+	}
+
+	private static JSONException tooManyEntries(JSONTokener tokener, int maxEntries) {
+		return tokener.newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "an object or array has more than " + maxEntries + " values");
+	}
+
+	/**
+	 * Check the rest of a JSON Object or Array like .parseContainer() does, assuming its '{' or
+	 * '[' has been read by the tokener, but without building anything. Only the kind of each open
+	 * container and its number of values are kept. Used by JSONParser.validate().
+	 */
+	static void skipContainer(JSONTokener tokener, boolean object) throws JSONException {
+		skipContainer(tokener, object, 0);
+	}
+
+	/**
+	 * See .skipContainer(JSONTokener, boolean), for a container inside <code>outer</code> others
+	 */
+	static void skipContainer(JSONTokener tokener, boolean object, int outer) throws JSONException {
+		JSONLimits limits = tokener.getLimits();
+		int maxDepth = limits.maxDepth();
+		int maxEntries = limits.maxEntries();
+		boolean[] objects = new boolean[16];
+		int[] counts = new int[16];
+		int depth = 0;
+
+		boolean isObject = object;
+		int count = 0;
 		boolean start = true;
+		int token = tokener.skipToken();
 
 		while (true) {
-			String token = tokener.nextToken();
-
-			//extra clause in case of empty JSONArray "[]"
-			if (start) {
-				if (token == JSONTokener.RIGHT_SQUARE) return list;
-				start = false;
+			boolean close;
+			if (isObject) {
+				close = start && token == '}';
+				if (!close) {
+					if (token != '"') {
+						throw tokener.newSyntaxError("missing key");
+					}
+					if (tokener.skipToken() != ':') {
+						throw tokener.newSyntaxError("missing ':'");
+					}
+					token = tokener.skipToken();
+				}
+			}
+			else {
+				close = start && token == ']';
 			}
-			list.add(toCorrespondingPOJO(token, tokener));
 
-			//either a ',' or ']'
-			token = tokener.nextToken();
-			if (token == JSONTokener.RIGHT_SQUARE) {
-				return list;
+			if (!close) {
+				if (++count > maxEntries) {
+					throw tooManyEntries(tokener, maxEntries);
+				}
+				if (token == '{' || token == '[') {
+					if (outer + depth + 2 > maxDepth) {
+						throw tooDeep(tokener, maxDepth);
+					}
+					if (depth == objects.length) {
+						objects = Arrays.copyOf(objects, depth * 2);
+						counts = Arrays.copyOf(counts, depth * 2);
+					}
+					objects[depth] = isObject;
+					counts[depth] = count;
+					depth++;
+					isObject = token == '{';
+					count = 0;
+					start = true;
+					token = tokener.skipToken();
+					continue;
+				}
+				if (token != '"' && token != '0' && token != 't' && token != 'f' && token != 'n') {
+					throw tokener.newSyntaxError("missing value");
+				}
 			}
-			else if (token != JSONTokener.COMMA) {
-				throw tokener.newSyntaxError("missing ']'");
+
+			while (true) {
+				if (!close) {
+					token = tokener.skipToken();
+					if (token == (isObject ? '}' : ']')) {
+						close = true;
+					}
+					else if (token == ',') {
+						break;
+					}
+					else {
+						throw tokener.newSyntaxError(isObject ? "missing '}'" : "missing ']'");
+					}
+				}
+				if (depth == 0) {
+					return;
+				}
+				depth--;
+				isObject = objects[depth];
+				count = counts[depth];
+				close = false;
 			}
+			start = false;
+			token = tokener.skipToken();
 		}
 	}
 
 	static Object toCorrespondingPOJO(String token, JSONTokener tokener) throws JSONException {
+		if (token == JSONTokener.LEFT_BRACE) {           //JSONObject/Map
+			return new JSONObject(parseObject(tokener));
+		}
+		else if (token == JSONTokener.LEFT_SQUARE) {     //JSONArray/List
+			return new JSONArray(parseArray(tokener));
+		}
+		return toScalar(token, tokener);
+	}
+
+	/**
+	 * Convert a token of a value other than an object or an array
+	 */
+	private static Object toScalar(String token, JSONTokener tokener) throws JSONException {
 		if (token == null) {
 			throw tokener.newSyntaxError("missing value");
 		}
@@ -94,13 +304,7 @@ class JSONParse {
 			return token.substring(1, token.length() - 1);
 		}
 		else if (Character.isDigit(id) || id == '-') {        //Number
-			return parseNumber(token);
-		}
-		else if (token == JSONTokener.LEFT_BRACE) {           //JSONObject/Map
-			return new JSONObject(parseObject(tokener));
-		}
-		else if (token == JSONTokener.LEFT_SQUARE) {          //JSONArray/List
-			return new JSONArray(parseArray(tokener));
+			return parseNumber(token, tokener.getNumberPolicy());
 		}
 		else if (token == JSONTokener.TRUE) {                 //true
 			return Boolean.TRUE;
@@ -142,4 +346,111 @@ class JSONParse {
 			return new BigDecimal(token);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Powers of ten that are exact as a double
+	 */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+	        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/**
+	 * <p>Parse a number JSON token into the type of the policy. Numbers of up to 18 digits are
+	 * decoded from their digits as a long and a power of ten: a Long or a BigDecimal is built
+	 * from them directly, and a Double too when both are exact as doubles, so the result of
+	 * the one division or multiplication is correctly rounded. Longer numbers and the other
+	 * doubles are left to the JDK.</p>
+	 */
+	static Object parseNumber(String token, JSONNumberPolicy policy) {
+		if (policy == JSONNumberPolicy.AUTO) {
+			return parseNumber(token);
+		}
+		else if (policy == JSONNumberPolicy.RAW) {
+			return new JSONNumber(token);
+		}
+
+		int length = token.length();
+		boolean negative = token.charAt(0) == '-';
+		int i = negative ? 1 : 0;
+		long digits = 0;
+		int count = 0;
+		int scale = 0; //digits after the '.'
+		boolean integer = true;
+		for (; i < length; i++) {
+			char ch = token.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				digits = digits * 10 + (ch - '0');
+				count++;
+				if (!integer) {
+					scale++;
+				}
+			}
+			else if (ch == '.') {
+				integer = false;
+			}
+			else {
+				break;
+			}
+		}
+		int exponent = 0;
+		if (i < length) { //'e' or 'E'
+			integer = false;
+			i++;
+			boolean negativeExponent = token.charAt(i) == '-';
+			if (negativeExponent || token.charAt(i) == '+') {
+				i++;
+			}
+			if (length - i > 9) {
+				count = Integer.MAX_VALUE; //leave huge exponents to the JDK
+			}
+			for (; i < length; i++) {
+				exponent = exponent * 10 + (token.charAt(i) - '0');
+			}
+			if (negativeExponent) {
+				exponent = -exponent;
+			}
+		}
+
+		if (count > 18) {
+			return parseLongNumber(token, integer, policy);
+		}
+		long value = negative ? -digits : digits;
+		int power = exponent - scale;
+		if (policy == JSONNumberPolicy.ALL_DECIMAL) {
+			return BigDecimal.valueOf(value, -power);
+		}
+		else if (integer && policy == JSONNumberPolicy.INTEGERS_AS_LONG) {
+			return Long.valueOf(value);
+		}
+		else if (digits == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+		else if (digits <= 1L << 53 && power >= -22 && power <= 22) {
+			return power >= 0 ? value * POWERS_OF_TEN[power] : value / POWERS_OF_TEN[-power];
+		}
+		return parseDouble(token);
+	}
+
+	/**
+	 * Parse a number of more than 18 digits into the type of the policy
+	 */
+	private static Object parseLongNumber(String token, boolean integer, JSONNumberPolicy policy) {
+		if (policy == JSONNumberPolicy.ALL_DECIMAL) {
+			return new BigDecimal(token);
+		}
+		else if (integer && policy == JSONNumberPolicy.INTEGERS_AS_LONG) {
+			try {
+				return Long.valueOf(token);
+			} catch(NumberFormatException e) {} //swallow
+			return new BigInteger(token);
+		}
+		return parseDouble(token);
+	}
+
+	/**
+	 * Parse a number into a Double, or a BigDecimal if it is out of the range of a double
+	 */
+	private static Object parseDouble(String token) {
+		Double num = Double.valueOf(token);
+		return num.isInfinite() ? new BigDecimal(token) : num;
+	}
+}
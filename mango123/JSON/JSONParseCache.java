@@ -0,0 +1,384 @@
+package mango123.JSON;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A cache of parsed documents in front of JSONObject.parse() and JSONArray.parse(), for inputs
+ * that are often byte-for-byte the same, such as configuration blobs or repeated poll payloads.</p>
+ * <p>Inputs are looked up by a 64 bit hash of their content and their length, then compared with
+ * the cached input, so a hit costs one pass over the input instead of a full parse, and a hash
+ * collision is never mistaken for a hit. The documents are frozen (see
+ * {@link JSONObject#freeze()}) before they are cached, and every hit returns the same instance,
+ * so they can be shared by any number of threads but not modified.</p>
+ * <p>The cache is bounded by the estimated number of bytes retained by the cached inputs and
+ * documents. The least recently used documents are evicted when it is full, and a document
+ * larger than a sixteenth of the bound is not cached at all. The cache is thread-safe.</p>
+ * <p>e.g. {@code JSONObject config = cache.parseObject(body);}</p>
+ * @see JSONParser
+ */
+public final class JSONParseCache {
+	/**
+	 * The cache is split into segments, each with its own lock and a share of the bound
+	 */
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long maxBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Constructs a <code>JSONParseCache</code>.
+	 * @param maxBytes the bound of the estimated bytes retained by the cache
+	 */
+	public JSONParseCache(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(maxBytes / SEGMENTS);
+		}
+	}
+
+	/**
+	 * Parses a <code>JSONObject</code>, or returns the cached one if the same input has been parsed.
+	 * @param input the JSON input
+	 * @return a frozen <code>JSONObject</code> of the JSON data
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public JSONObject parseObject(String input) throws JSONException {
+		Key key = new Key(input, hash(input), input.length());
+		Object value = get(key, JSONObject.class);
+		if (value != null) {
+			return (JSONObject) value;
+		}
+		JSONObject ob = JSONParser.parseObject(input).freeze();
+		put(key, ob, 40 + 2L * input.length());
+		return ob;
+	}
+
+	/**
+	 * Parses a <code>JSONObject</code> from UTF-8 bytes, or returns the cached one if the same
+	 * bytes have been parsed.
+	 * @param input the UTF-8 JSON input, which is copied if it is cached
+	 * @return a frozen <code>JSONObject</code> of the JSON data
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public JSONObject parseObject(byte[] input) throws JSONException {
+		Key key = new Key(input, hash(input), input.length);
+		Object value = get(key, JSONObject.class);
+		if (value != null) {
+			return (JSONObject) value;
+		}
+		JSONObject ob = JSONParser.parseObject(new String(input, StandardCharsets.UTF_8)).freeze();
+		//the cached key keeps its own copy, the caller may reuse the array
+		put(new Key(input.clone(), key.hash, input.length), ob, 16 + input.length);
+		return ob;
+	}
+
+	/**
+	 * Parses a <code>JSONArray</code>, or returns the cached one if the same input has been parsed.
+	 * @param input the JSON input
+	 * @return a frozen <code>JSONArray</code> that represents the JSON array
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public JSONArray parseArray(String input) throws JSONException {
+		Key key = new Key(input, hash(input), input.length());
+		Object value = get(key, JSONArray.class);
+		if (value != null) {
+			return (JSONArray) value;
+		}
+		JSONArray array = JSONParser.parseArray(input).freeze();
+		put(key, array, 40 + 2L * input.length());
+		return array;
+	}
+
+	/**
+	 * Parses a <code>JSONArray</code> from UTF-8 bytes, or returns the cached one if the same bytes
+	 * have been parsed.
+	 * @param input the UTF-8 JSON input, which is copied if it is cached
+	 * @return a frozen <code>JSONArray</code> that represents the JSON array
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public JSONArray parseArray(byte[] input) throws JSONException {
+		Key key = new Key(input, hash(input), input.length);
+		Object value = get(key, JSONArray.class);
+		if (value != null) {
+			return (JSONArray) value;
+		}
+		JSONArray array = JSONParser.parseArray(new String(input, StandardCharsets.UTF_8)).freeze();
+		//the cached key keeps its own copy, the caller may reuse the array
+		put(new Key(input.clone(), key.hash, input.length), array, 16 + input.length);
+		return array;
+	}
+
+	/**
+	 * Returns the number of parses that returned a cached document.
+	 * @return the number of hits
+	 */
+	public long hitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of parses that did not find a cached document.
+	 * @return the number of misses
+	 */
+	public long missCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of documents evicted to keep the cache within its bound.
+	 * @return the number of evictions
+	 */
+	public long evictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of cached documents.
+	 * @return the number of cached documents
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment s : segments) {
+			synchronized (s) {
+				size += s.map.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the estimated number of bytes retained by the cached inputs and documents.
+	 * @return the estimated bytes
+	 */
+	public long estimatedBytes() {
+		long bytes = 0;
+		for (Segment s : segments) {
+			synchronized (s) {
+				bytes += s.bytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the bound of the estimated bytes retained by the cache.
+	 * @return the bound in bytes
+	 */
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Removes all cached documents. The statistics are not reset.
+	 */
+	public void clear() {
+		for (Segment s : segments) {
+			synchronized (s) {
+				s.map.clear();
+				s.bytes = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached document of the type, or null
+	 */
+	private Object get(Key key, Class<?> type) {
+		Segment s = segments[(int) (key.hash >>> 60)];
+		Object value;
+		synchronized (s) {
+			Entry e = s.map.get(key);
+			value = e == null ? null : e.value;
+		}
+		if (type.isInstance(value)) {
+			hits.incrementAndGet();
+		}
+		else {
+			misses.incrementAndGet();
+		}
+		return type.isInstance(value) ? value : null;
+	}
+
+	private void put(Key key, Object value, long inputSize) {
+		Segment s = segments[(int) (key.hash >>> 60)];
+		long size = inputSize + 48 + estimateSize(value);
+		if (size > s.maxBytes) {
+			return;
+		}
+		synchronized (s) {
+			Entry previous = s.map.put(key, new Entry(value, size));
+			if (previous != null) {
+				s.bytes -= previous.size;
+			}
+			s.bytes += size;
+
+			//evict the least recently used
+			Iterator<Entry> it = s.map.values().iterator();
+			while (s.bytes > s.maxBytes) {
+				s.bytes -= it.next().size;
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Estimate the bytes retained by a parsed value on a 64 bit JVM with compressed references
+	 */
+	static long estimateSize(Object value) {
+		if (value instanceof JSONObject) {
+			Map<String, Object> map = ((JSONObject) value).map;
+			long size = 16 + 56 + 16L * Integer.highestOneBit(map.size() * 2 + 1);
+			for (Map.Entry<String, Object> e : map.entrySet()) {
+				size += 40 + 40 + 2 * e.getKey().length() + estimateSize(e.getValue());
+			}
+			return size;
+		}
+		else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			long size = 16 + 24 + 16 + 4L * array.size();
+			for (int i = 0; i < array.size(); i++) {
+				size += estimateSize(array.get(i));
+			}
+			return size;
+		}
+		else if (value instanceof String) {
+			return 40 + 2 * ((String) value).length();
+		}
+		else if (value instanceof Integer) {
+			return 16;
+		}
+		else if (value instanceof Long || value instanceof Double) {
+			return 24;
+		}
+		else if (value instanceof BigInteger) {
+			return 40 + ((BigInteger) value).bitLength() / 8;
+		}
+		else if (value instanceof BigDecimal) {
+			return 80 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+		}
+		else if (value instanceof JSONNumber) {
+			return 16 + 40 + 2 * value.toString().length();
+		}
+		return 0; //Boolean and null are shared
+	}
+
+	/**
+	 * 64 bit hash of the bytes, 8 at a time
+	 */
+	static long hash(byte[] b) {
+		long h = 0x9E3779B97F4A7C15L ^ b.length;
+		int i = 0;
+		for (int end = b.length - 7; i < end; i += 8) {
+			long k = (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+			        | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48 | (b[i + 7] & 0xFFL) << 56;
+			h = mix(h, k);
+		}
+		long k = 0;
+		for (int shift = 0; i < b.length; i++, shift += 8) {
+			k |= (b[i] & 0xFFL) << shift;
+		}
+		return finish(mix(h, k));
+	}
+
+	/**
+	 * 64 bit hash of the chars, 4 at a time
+	 */
+	static long hash(String s) {
+		int length = s.length();
+		long h = 0x9E3779B97F4A7C15L ^ length;
+		int i = 0;
+		for (int end = length - 3; i < end; i += 4) {
+			long k = s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+			h = mix(h, k);
+		}
+		long k = 0;
+		for (int shift = 0; i < length; i++, shift += 16) {
+			k |= (long) s.charAt(i) << shift;
+		}
+		return finish(mix(h, k));
+	}
+
+	private static long mix(long h, long k) {
+		k *= 0x87C37B91114253D5L;
+		k = Long.rotateLeft(k, 31) * 0x4CF5AD432745937FL;
+		return Long.rotateLeft(h ^ k, 27) * 5 + 0x52DCE729;
+	}
+
+	private static long finish(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * The hash and length of an input, which is compared with the cached input on a match
+	 */
+	private static final class Key {
+		private final Object input;
+		private final long hash;
+		private final int length;
+
+		Key(Object input, long hash, int length) {
+			this.input = input;
+			this.hash = hash;
+			this.length = length;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			if (hash != k.hash || length != k.length || input.getClass() != k.input.getClass()) {
+				return false;
+			}
+			return input instanceof String ? input.equals(k.input) : Arrays.equals((byte[]) input, (byte[]) k.input);
+		}
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long size;
+
+		Entry(Object value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Cached entries in access order, guarded by the segment itself
+	 */
+	private static final class Segment {
+		private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		private final long maxBytes;
+		private long bytes;
+
+		Segment(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+	}
+}
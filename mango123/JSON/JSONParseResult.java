@@ -0,0 +1,114 @@
+package mango123.JSON;
+
+/**
+ * <p>The outcome of .tryParse() or JSONParser.validate(): either the value parsed, or the kind
+ * of error and the offset where it was found. Nothing is thrown for invalid input, and no
+ * message or stack trace is built, so rejecting malformed input costs about as much as reading
+ * it up to the error.</p>
+ * <p>Parse with .parse() instead to get a <code>JSONException</code> with a detailed message,
+ * e.g. to report an error that tryParse() found.</p>
+ * @param <T> the type of the value parsed
+ */
+public final class JSONParseResult<T> {
+	/**
+	 * The kinds of errors in the input
+	 */
+	public enum Error {
+		/**
+		 * The input ended before the document did
+		 */
+		UNEXPECTED_END,
+
+		/**
+		 * A valid token where another was expected, e.g. a missing ':' or ','
+		 */
+		UNEXPECTED_TOKEN,
+
+		/**
+		 * A char that cannot start a token, or a misspelled true, false or null
+		 */
+		INVALID_TOKEN,
+
+		/**
+		 * A control char or an invalid escape sequence in a string
+		 */
+		INVALID_STRING,
+
+		/**
+		 * A malformed number
+		 */
+		INVALID_NUMBER,
+
+		/**
+		 * Anything other than whitespace after the end of the document
+		 */
+		TRAILING_INPUT,
+
+		/**
+		 * A limit of the tokener's JSONLimits was crossed
+		 */
+		LIMIT_EXCEEDED,
+
+		/**
+		 * The input could not be read
+		 */
+		IO_ERROR
+	}
+
+	/**
+	 * The result of valid input that has no value, returned by JSONParser.validate()
+	 */
+	static final JSONParseResult<Void> VALID = new JSONParseResult<Void>(null, null, -1);
+
+	private final T value;
+	private final Error error;
+	private final long offset;
+
+	private JSONParseResult(T value, Error error, long offset) {
+		this.value = value;
+		this.error = error;
+		this.offset = offset;
+	}
+
+	static <T> JSONParseResult<T> valid(T value) {
+		return new JSONParseResult<T>(value, null, -1);
+	}
+
+	static <T> JSONParseResult<T> invalid(Error error, long offset) {
+		return new JSONParseResult<T>(null, error, offset);
+	}
+
+	/**
+	 * @return true if the input is valid JSON
+	 */
+	public boolean isValid() {
+		return error == null;
+	}
+
+	/**
+	 * @return the value parsed, or null if the input is not valid or was only validated
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the kind of error, or null if the input is valid
+	 */
+	public Error getError() {
+		return error;
+	}
+
+	/**
+	 * @return the offset in chars from the start of the input of the char where the error was
+	 *         found (the end of the input for Error.UNEXPECTED_END), or -1 if the input is valid
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public String toString() {
+		return error == null ? "valid" : error + " at offset " + offset;
+	}
+}
@@ -0,0 +1,228 @@
+package mango123.JSON;
+
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>Static entry points that parse with a per-thread {@link JSONTokener}. The tokener of the
+ * calling thread is reset onto each new input instead of being created, so its buffers are reused
+ * and parsing many small messages does not allocate a tokener per call.</p>
+ * <p>e.g. {@code JSONParser.parseObject("{\"a\": 1}")} is equivalent to
+ * {@code JSONObject.parse(new JSONTokener("{\"a\": 1}"))}</p>
+ * @see JSONObject#parse(JSONTokener)
+ * @see JSONArray#parse(JSONTokener)
+ */
+public final class JSONParser {
+	private JSONParser() {}
+
+	/**
+	 * Number of files read at the same time by .parseAsync(List), unless specified
+	 */
+	public static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+	private static final ThreadLocal<JSONTokener> TOKENER = new ThreadLocal<JSONTokener>() {
+		@Override
+		protected JSONTokener initialValue() {
+			return new JSONTokener("");
+		}
+	};
+
+	/**
+	 * Parses and constructs a <code>JSONObject</code> from a <code>String</code>.
+	 * @param input the JSON input
+	 * @return a <code>JSONObject</code> of the JSON data
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public static JSONObject parseObject(String input) throws JSONException {
+		JSONTokener tokener = TOKENER.get().reset(input);
+		try {
+			return JSONObject.parse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Parses and constructs a <code>JSONObject</code> from a <code>Reader</code>. The reader is not
+	 * closed.
+	 * @param reader the JSON input
+	 * @return a <code>JSONObject</code> of the JSON data
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public static JSONObject parseObject(Reader reader) throws JSONException {
+		JSONTokener tokener = TOKENER.get().reset(reader);
+		try {
+			return JSONObject.parse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Parses and constructs a <code>JSONArray</code> from a <code>String</code>.
+	 * @param input the JSON input
+	 * @return a <code>JSONArray</code> that represents the JSON array
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public static JSONArray parseArray(String input) throws JSONException {
+		JSONTokener tokener = TOKENER.get().reset(input);
+		try {
+			return JSONArray.parse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Parses and constructs a <code>JSONArray</code> from a <code>Reader</code>. The reader is not
+	 * closed.
+	 * @param reader the JSON input
+	 * @return a <code>JSONArray</code> that represents the JSON array
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public static JSONArray parseArray(Reader reader) throws JSONException {
+		JSONTokener tokener = TOKENER.get().reset(reader);
+		try {
+			return JSONArray.parse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Parses a <code>JSONObject</code> from a <code>String</code>, returning the error in the
+	 * result instead of throwing a <code>JSONException</code>.
+	 * @param input the JSON input
+	 * @return the result, with the <code>JSONObject</code> if the input is valid
+	 * @see JSONObject#tryParse(JSONTokener)
+	 */
+	public static JSONParseResult<JSONObject> tryParseObject(String input) {
+		JSONTokener tokener = TOKENER.get().reset(input);
+		try {
+			return JSONObject.tryParse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Parses a <code>JSONArray</code> from a <code>String</code>, returning the error in the
+	 * result instead of throwing a <code>JSONException</code>.
+	 * @param input the JSON input
+	 * @return the result, with the <code>JSONArray</code> if the input is valid
+	 * @see JSONArray#tryParse(JSONTokener)
+	 */
+	public static JSONParseResult<JSONArray> tryParseArray(String input) {
+		JSONTokener tokener = TOKENER.get().reset(input);
+		try {
+			return JSONArray.tryParse(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * Checks that a <code>String</code> is a valid JSON object or array, see .validate(JSONTokener).
+	 * @param input the JSON input
+	 * @return the result, which has no value
+	 */
+	public static JSONParseResult<Void> validate(String input) {
+		JSONTokener tokener = TOKENER.get().reset(input);
+		try {
+			return validate(tokener);
+		}
+		finally {
+			tokener.reset("");
+		}
+	}
+
+	/**
+	 * <p>Checks that the input of the tokener is a valid JSON object or array, without building
+	 * it. The tokens are checked without being made into Strings, and only the kind of the open
+	 * objects and arrays is kept, so validating costs about as much as reading the input once.
+	 * The limits of the tokener are checked like in .parse().</p>
+	 * <p>Nothing is thrown for invalid input, the error is returned in the result.</p>
+	 * @param tokener the JSON input
+	 * @return the result, which has no value
+	 */
+	public static JSONParseResult<Void> validate(JSONTokener tokener) {
+		boolean quiet = tokener.quiet;
+		tokener.quiet = true;
+		try {
+			int token = tokener.skipToken();
+			if (token != '{' && token != '[') {
+				throw tokener.newSyntaxError("JSON text needs to start with '{' or '['");
+			}
+			JSONParse.skipContainer(tokener, token == '{');
+			if (tokener.skipToken() != -1) {
+				throw tokener.newSyntaxError(JSONParseResult.Error.TRAILING_INPUT, "JSON text needs to end with '}' or ']'");
+			}
+			return JSONParseResult.VALID;
+		}
+		catch(JSONException e) {
+			return JSONParseResult.invalid(tokener.errorCode, tokener.errorOffset);
+		}
+		finally {
+			tokener.quiet = quiet;
+		}
+	}
+
+	/**
+	 * <p>Parses many UTF-8 files asynchronously, each containing a JSON object or array.</p>
+	 * <p>The files are read like {@link JSONObject#parseAsync(Path)} reads a file, and up to
+	 * {@link #DEFAULT_MAX_OPEN_FILES} of them are read and parsed at the same time, so the
+	 * latency of reading each of them overlaps with the others.</p>
+	 * @param paths the files containing the JSON input
+	 * @return a future completed with a <code>JSONObject</code> or <code>JSONArray</code> for each
+	 *         file, in the order of the paths, or completed exceptionally with the first
+	 *         <code>JSONException</code> or <code>IOException</code> encountered
+	 */
+	public static CompletableFuture<List<Object>> parseAsync(List<Path> paths) {
+		return parseAsync(paths, DEFAULT_MAX_OPEN_FILES);
+	}
+
+	/**
+	 * <p>Parses many UTF-8 files asynchronously, each containing a JSON object or array, with at most
+	 * the specified number of files read and parsed at the same time.</p>
+	 * @param paths the files containing the JSON input
+	 * @param maxOpenFiles the maximum number of files open at the same time, at least 1
+	 * @return a future completed with a <code>JSONObject</code> or <code>JSONArray</code> for each
+	 *         file, in the order of the paths, or completed exceptionally with the first
+	 *         <code>JSONException</code> or <code>IOException</code> encountered
+	 * @see #parseAsync(List)
+	 */
+	public static CompletableFuture<List<Object>> parseAsync(List<Path> paths, int maxOpenFiles) {
+		if (maxOpenFiles < 1) {
+			throw new IllegalArgumentException("maxOpenFiles must be at least 1");
+		}
+		return JSONAsyncParse.parseAll(paths, maxOpenFiles, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * <p>Parses many UTF-8 files asynchronously, each containing a JSON object or array, with at most
+	 * the specified number of files read and parsed at the same time, within the specified limits
+	 * and with numbers of the specified type.</p>
+	 * @param paths the files containing the JSON input
+	 * @param maxOpenFiles the maximum number of files open at the same time, at least 1
+	 * @param limits the limits of each file
+	 * @param numberPolicy the type of the numbers
+	 * @return a future completed as by {@link #parseAsync(List, int)}, or completed exceptionally
+	 *         with a <code>JSONException</code> if a limit is exceeded
+	 * @see JSONObject#parseAsync(Path, JSONLimits, JSONNumberPolicy)
+	 */
+	public static CompletableFuture<List<Object>> parseAsync(List<Path> paths, int maxOpenFiles, JSONLimits limits,
+	                                                         JSONNumberPolicy numberPolicy) {
+		if (maxOpenFiles < 1) {
+			throw new IllegalArgumentException("maxOpenFiles must be at least 1");
+		}
+		return JSONAsyncParse.parseAll(paths, maxOpenFiles, limits, numberPolicy);
+	}
+}
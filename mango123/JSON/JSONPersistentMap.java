@@ -0,0 +1,238 @@
+package mango123.JSON;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, insertion-ordered map used to back persistent JSONObjects. The entries are kept in
+ * a {@link JSONPersistentVector} in insertion order, and a hash array mapped trie maps every key to
+ * the position of its entry. .with() returns a new map that shares every node except the paths
+ * to the changed entry, so it takes O(log32 n) time and memory.
+ * The mutators inherited from AbstractMap throw an UnsupportedOperationException.
+ */
+final class JSONPersistentMap extends AbstractMap<String, Object> {
+	static final JSONPersistentMap EMPTY =
+			new JSONPersistentMap(BitmapNode.EMPTY, JSONPersistentVector.EMPTY);
+
+	/**
+	 * Returned by Node.find() when the key is not in the trie
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * Maps each key to the Integer position of its entry in .entries
+	 */
+	private final Node index;
+	private final JSONPersistentVector entries;
+
+	private JSONPersistentMap(Node index, JSONPersistentVector entries) {
+		this.index = index;
+		this.entries = entries;
+	}
+
+	/**
+	 * Creates a map containing the mappings of the map, in its iteration order, with frozen
+	 * copies of the JSONObjects and JSONArrays in it that are not frozen
+	 */
+	static JSONPersistentMap copyOf(Map<String, Object> map) {
+		JSONPersistentMap m = EMPTY;
+		for (Map.Entry<String, Object> e : map.entrySet()) {
+			m = m.with(e.getKey(), JSONObject.frozenCopy(e.getValue()));
+		}
+		return m;
+	}
+
+	/**
+	 * Returns a new map with the key mapped to the value. A new key is added after all the
+	 * existing ones, an existing key keeps its position.
+	 */
+	JSONPersistentMap with(String key, Object value) {
+		int hash = hash(key);
+		Object i = index.find(0, hash, key);
+		Map.Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(key, value);
+		if (i == NOT_FOUND) {
+			return new JSONPersistentMap(index.assoc(0, hash, key, entries.size()),
+			                             entries.withAppended(entry));
+		}
+		return new JSONPersistentMap(index, entries.withSet((Integer) i, entry));
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && index.find(0, hash((String) key), (String) key) != NOT_FOUND;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		Object i = index.find(0, hash((String) key), (String) key);
+		return i == NOT_FOUND ? null : ((Map.Entry<String, Object>) entries.get((Integer) i)).getValue();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public int size() {
+				return entries.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				final Iterator<Object> it = entries.iterator();
+				return new Iterator<Map.Entry<String, Object>>() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@SuppressWarnings("unchecked")
+					public Map.Entry<String, Object> next() {
+						return (Map.Entry<String, Object>) it.next();
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	private static int hash(String key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * A node of the hash array mapped trie, each level uses 5 bits of the hash
+	 */
+	private static abstract class Node {
+		abstract Object find(int shift, int hash, String key);
+		abstract Node assoc(int shift, int hash, String key, Object value);
+	}
+
+	/**
+	 * A node holding up to 32 key/value pairs or children, the present ones are marked in the
+	 * bitmap. The array holds pairs of (key, value), or (null, child node).
+	 */
+	private static final class BitmapNode extends Node {
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] array;
+
+		BitmapNode(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		@Override
+		Object find(int shift, int hash, String key) {
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((bitmap & bit) == 0) {
+				return NOT_FOUND;
+			}
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[i];
+			if (k == null) {
+				return ((Node) array[i + 1]).find(shift + 5, hash, key);
+			}
+			return (k == key || key.equals(k)) ? array[i + 1] : NOT_FOUND;
+		}
+
+		@Override
+		Node assoc(int shift, int hash, String key, Object value) {
+			int bit = 1 << ((hash >>> shift) & 31);
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+			//empty slot, insert the pair
+			if ((bitmap & bit) == 0) {
+				Object[] copy = new Object[array.length + 2];
+				System.arraycopy(array, 0, copy, 0, i);
+				copy[i] = key;
+				copy[i + 1] = value;
+				System.arraycopy(array, i, copy, i + 2, array.length - i);
+				return new BitmapNode(bitmap | bit, copy);
+			}
+
+			Object[] copy = array.clone();
+			String k = (String) array[i];
+			if (k == null) {
+				copy[i + 1] = ((Node) array[i + 1]).assoc(shift + 5, hash, key, value);
+			}
+			else if (k == key || key.equals(k)) {
+				copy[i + 1] = value;
+			}
+			else {
+				//two different keys in the same slot, move both into a child node
+				copy[i] = null;
+				copy[i + 1] = newNode(shift + 5, k, array[i + 1], hash, key, value);
+			}
+			return new BitmapNode(bitmap, copy);
+		}
+
+		private static Node newNode(int shift, String k1, Object v1, int h2, String k2, Object v2) {
+			int h1 = hash(k1);
+			if (h1 == h2) {
+				return new CollisionNode(h1, new Object[] {k1, v1, k2, v2});
+			}
+			return EMPTY.assoc(shift, h1, k1, v1).assoc(shift, h2, k2, v2);
+		}
+	}
+
+	/**
+	 * A node holding the (key, value) pairs of different keys with the same hash
+	 */
+	private static final class CollisionNode extends Node {
+		final int hash;
+		final Object[] array;
+
+		CollisionNode(int hash, Object[] array) {
+			this.hash = hash;
+			this.array = array;
+		}
+
+		@Override
+		Object find(int shift, int hash, String key) {
+			if (hash == this.hash) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return array[i + 1];
+					}
+				}
+			}
+			return NOT_FOUND;
+		}
+
+		@Override
+		Node assoc(int shift, int hash, String key, Object value) {
+			if (hash != this.hash) {
+				int bit = 1 << ((this.hash >>> shift) & 31);
+				return new BitmapNode(bit, new Object[] {null, this}).assoc(shift, hash, key, value);
+			}
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					Object[] copy = array.clone();
+					copy[i + 1] = value;
+					return new CollisionNode(hash, copy);
+				}
+			}
+			Object[] copy = new Object[array.length + 2];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			copy[array.length] = key;
+			copy[array.length + 1] = value;
+			return new CollisionNode(hash, copy);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package mango123.JSON;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list stored as a 32-way trie with a separate tail, used to back persistent
+ * JSONArrays. .withSet() and .withAppended() return a new vector that shares every node except
+ * the path to the changed element, so they take O(log32 n) time and memory.
+ * The mutators inherited from AbstractList throw an UnsupportedOperationException.
+ */
+final class JSONPersistentVector extends AbstractList<Object> implements RandomAccess {
+	static final JSONPersistentVector EMPTY =
+			new JSONPersistentVector(0, 5, new Object[32], new Object[0]);
+
+	private final int size;
+	private final int shift;
+	private final Object[] root;
+	private final Object[] tail;
+
+	private JSONPersistentVector(int size, int shift, Object[] root, Object[] tail) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+	}
+
+	/**
+	 * Creates a vector containing the elements of the list, in order, with frozen copies of the
+	 * JSONObjects and JSONArrays in it that are not frozen
+	 */
+	static JSONPersistentVector copyOf(List<Object> list) {
+		JSONPersistentVector v = EMPTY;
+		for (Object ob : list) {
+			v = v.withAppended(JSONObject.frozenCopy(ob));
+		}
+		return v;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Object get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return arrayFor(index)[index & 31];
+	}
+
+	/**
+	 * Returns a new vector with the element at the index replaced
+	 */
+	JSONPersistentVector withSet(int index, Object value) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (index >= tailOffset()) {
+			Object[] newTail = tail.clone();
+			newTail[index & 31] = value;
+			return new JSONPersistentVector(size, shift, root, newTail);
+		}
+		return new JSONPersistentVector(size, shift, setInNode(shift, root, index, value), tail);
+	}
+
+	/**
+	 * Returns a new vector with the value added at the end
+	 */
+	JSONPersistentVector withAppended(Object value) {
+		//room in the tail
+		if (size - tailOffset() < 32) {
+			Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+			newTail[tail.length] = value;
+			return new JSONPersistentVector(size + 1, shift, root, newTail);
+		}
+
+		//the tail is full, push it into the trie and start a new one
+		Object[] newRoot;
+		int newShift = shift;
+		if ((size >>> 5) > (1 << shift)) {
+			newRoot = new Object[32];
+			newRoot[0] = root;
+			newRoot[1] = newPath(shift, tail);
+			newShift += 5;
+		}
+		else {
+			newRoot = pushTail(shift, root, tail);
+		}
+		return new JSONPersistentVector(size + 1, newShift, newRoot, new Object[] {value});
+	}
+
+	/**
+	 * Index of the first element stored in the tail
+	 */
+	private int tailOffset() {
+		return size < 32 ? 0 : ((size - 1) >>> 5) << 5;
+	}
+
+	/**
+	 * Returns the leaf array that holds the element at the index
+	 */
+	private Object[] arrayFor(int index) {
+		if (index >= tailOffset()) {
+			return tail;
+		}
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= 5) {
+			node = (Object[]) node[(index >>> level) & 31];
+		}
+		return node;
+	}
+
+	private static Object[] setInNode(int level, Object[] node, int index, Object value) {
+		Object[] copy = node.clone();
+		if (level == 0) {
+			copy[index & 31] = value;
+		}
+		else {
+			int i = (index >>> level) & 31;
+			copy[i] = setInNode(level - 5, (Object[]) node[i], index, value);
+		}
+		return copy;
+	}
+
+	private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+		int i = ((size - 1) >>> level) & 31;
+		Object[] copy = parent.clone();
+		if (level == 5) {
+			copy[i] = tailNode;
+		}
+		else {
+			Object[] child = (Object[]) parent[i];
+			copy[i] = child != null ? pushTail(level - 5, child, tailNode)
+			                        : newPath(level - 5, tailNode);
+		}
+		return copy;
+	}
+
+	private static Object[] newPath(int level, Object[] node) {
+		if (level == 0) {
+			return node;
+		}
+		Object[] path = new Object[32];
+		path[0] = newPath(level - 5, node);
+		return path;
+	}
+}
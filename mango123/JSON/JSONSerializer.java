@@ -0,0 +1,228 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes JSONObjects and JSONArrays as compact JSON to an Appendable, used by .write() and
+ * .toString() of both classes
+ */
+final class JSONSerializer {
+	private JSONSerializer() {}
+
+	/**
+	 * Objects and arrays nested deeper than this are written by .writeContainer() instead of by
+	 * recursion. Recursing keeps the iterators of the open containers in the frames, where escape
+	 * analysis removes them, and the depth bounds the thread's stack that is used.
+	 */
+	private static final int MAX_RECURSION = 64;
+
+	/**
+	 * Write a JSON object. The separators are decided while iterating instead of from the size of
+	 * the map, so a map that is concurrently modified is still written as valid JSON.
+	 */
+	static void writeObject(Map<String, Object> map, Appendable out) throws IOException {
+		writeObject(map, out, 0);
+	}
+
+	private static void writeObject(Map<String, Object> map, Appendable out, int depth) throws IOException {
+		out.append('{');
+		boolean first = true;
+		for (Map.Entry<String, Object> m : map.entrySet()) {
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			writeString(m.getKey(), out);
+			out.append(':');
+			writeValue(m.getValue(), out, depth + 1);
+		}
+		out.append('}');
+	}
+
+	/**
+	 * Write a JSON array, see .writeObject()
+	 */
+	static void writeArray(List<Object> list, Appendable out) throws IOException {
+		writeArray(list, out, 0);
+	}
+
+	private static void writeArray(List<Object> list, Appendable out, int depth) throws IOException {
+		out.append('[');
+		boolean first = true;
+		for (Object ob : list) {
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			writeValue(ob, out, depth + 1);
+		}
+		out.append(']');
+	}
+
+	static void writeValue(Object value, Appendable out) throws IOException {
+		writeValue(value, out, 0);
+	}
+
+	/**
+	 * Write a value at the depth, the number of objects and arrays containing it
+	 */
+	private static void writeValue(Object value, Appendable out, int depth) throws IOException {
+		if (value instanceof JSONObject) {
+			if (depth < MAX_RECURSION) {
+				writeObject(((JSONObject) value).map, out, depth);
+			}
+			else {
+				writeContainer(((JSONObject) value).map, out);
+			}
+		}
+		else if (value instanceof JSONArray) {
+			if (depth < MAX_RECURSION) {
+				writeArray(((JSONArray) value).list, out, depth);
+			}
+			else {
+				writeContainer(((JSONArray) value).list, out);
+			}
+		}
+		else {
+			writeScalar(value, out);
+		}
+	}
+
+	/**
+	 * Write a Map as a JSON object or a List as a JSON array nested deeper than MAX_RECURSION. The
+	 * iterators of the objects and arrays that are still open are kept on a stack of their own,
+	 * which grows as needed, so a deep document cannot overflow the thread's stack.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void writeContainer(Object root, Appendable out) throws IOException {
+		Iterator<?>[] stack = new Iterator<?>[16];
+		boolean[] objects = new boolean[16];
+		int depth = 0;
+
+		boolean isObject = root instanceof Map;
+		Iterator<?> it = open(root, isObject, out);
+		boolean first = true;
+		while (true) {
+			if (it.hasNext()) {
+				if (!first) {
+					out.append(',');
+				}
+				first = false;
+				Object value;
+				if (isObject) {
+					Map.Entry<String, Object> m = (Map.Entry<String, Object>) it.next();
+					writeString(m.getKey(), out);
+					out.append(':');
+					value = m.getValue();
+				}
+				else {
+					value = it.next();
+				}
+
+				Object container = value instanceof JSONObject ? ((JSONObject) value).map : value instanceof JSONArray ? ((JSONArray) value).list : null;
+				if (container == null) {
+					writeScalar(value, out);
+					continue;
+				}
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					objects = Arrays.copyOf(objects, depth * 2);
+				}
+				stack[depth] = it;
+				objects[depth] = isObject;
+				depth++;
+				isObject = value instanceof JSONObject;
+				it = open(container, isObject, out);
+				first = true;
+			}
+			else {
+				out.append(isObject ? '}' : ']');
+				if (depth == 0) {
+					return;
+				}
+				depth--;
+				it = stack[depth];
+				isObject = objects[depth];
+				stack[depth] = null;
+				first = false;
+			}
+		}
+	}
+
+	/**
+	 * Write the start of a JSON object or array and return the iterator of its values
+	 */
+	@SuppressWarnings("unchecked")
+	private static Iterator<?> open(Object container, boolean isObject, Appendable out) throws IOException {
+		if (isObject) {
+			out.append('{');
+			return ((Map<String, Object>) container).entrySet().iterator();
+		}
+		out.append('[');
+		return ((List<Object>) container).iterator();
+	}
+
+	private static void writeScalar(Object value, Appendable out) throws IOException {
+		if (value instanceof String) {
+			writeString((String) value, out);
+		}
+		else {
+			out.append(String.valueOf(value));
+		}
+	}
+
+	/**
+	 * Write a quoted and escaped JSON string. Strings with nothing to escape are written as a whole.
+	 */
+	static void writeString(String s, Appendable out) throws IOException {
+		out.append('"');
+		int l = s.length();
+		int start = 0;
+		for (int i = 0; i < l; i++) {
+			char ch = s.charAt(i);
+			if (ch == '"' || ch == '\\' || Character.isISOControl(ch)) {
+				out.append(s, start, i);
+				appendEscape(ch, out);
+				start = i + 1;
+			}
+		}
+		out.append(s, start, l);
+		out.append('"');
+	}
+
+	/**
+	 * Same escape sequences as JSONTokener.escapeStr()
+	 */
+	private static void appendEscape(char ch, Appendable out) throws IOException {
+		switch (ch) {
+			case '\b':
+				out.append("\\b");
+				break;
+			case '\f':
+				out.append("\\f");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\"':
+				out.append("\\\"");
+				break;
+			default:
+				out.append(ch < 0x10 ? "\\u000" : "\\u00");
+				out.append(Integer.toHexString(ch));
+		}
+	}
+}
@@ -0,0 +1,629 @@
+package mango123.JSON;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A parsed JSON document stored as a flat tape instead of a tree of objects.</p>
+ * <p>Every value is one word (two for numbers) of a single <code>long[]</code>, in the order the
+ * values appear in the document, and the chars of strings are stored one after another in a
+ * single <code>char[]</code>. So a document takes two large arrays however many values it has,
+ * rather than a <code>JSONObject</code>, a map entry and a boxed value for each of them, and
+ * parsing it allocates almost nothing else.</p>
+ * <p>The document is read with a {@link Cursor}, which moves over the tape and decodes values only
+ * when they are asked for. The getters of a Cursor return the same types as the getters of
+ * JSONObject and JSONArray, e.g. {@link Cursor#getInt()} returns <code>null</code> for a number
+ * that would be a <code>Long</code> in a JSONObject.</p>
+ * <p>A very large document can be stored off-heap with {@link #parseOffHeap(Reader)}, which keeps
+ * the tape and the strings in direct memory until the JSONTape is closed.</p>
+ * <p>e.g. {@code JSONTape.Cursor c = JSONTape.parse(input).cursor(); if (c.find("id")) id = c.getLong();}</p>
+ * @see JSONObject
+ */
+public final class JSONTape implements AutoCloseable {
+	/*
+	 * Each word has the type in its highest 8 bits and a payload in the others:
+	 *
+	 * '{' '[' start of an object/array: the number of values in it (saturated at MAX_COUNT) in
+	 *         bits 32-55, and the index of the word after its end word in bits 0-31
+	 * '}' ']' end of an object/array: the index of its start word
+	 * '"'     string: the offset of its length (2 chars) and its chars in the char buffer. A key is
+	 *         a string word followed by its value.
+	 * 'l'     integer: the long value is the next word
+	 * 'd'     double: the bits of the double are the next word
+	 * 'B'     a number that is not a long or a finite double: the offset of its text in the char
+	 *         buffer, stored like a string
+	 * 't' 'f' 'n' true, false and null
+	 */
+	static final int OBJECT = '{';
+	static final int OBJECT_END = '}';
+	static final int ARRAY = '[';
+	static final int ARRAY_END = ']';
+	static final int STRING = '"';
+	static final int INTEGER = 'l';
+	static final int DOUBLE = 'd';
+	static final int BIG_NUMBER = 'B';
+	static final int TRUE = 't';
+	static final int FALSE = 'f';
+	static final int NULL = 'n';
+
+	static final int MAX_COUNT = 0xFFFFFF;
+
+	private final JSONTapeStore store;
+
+	/**
+	 * The policy numbers stored as text are decoded with
+	 */
+	private final JSONNumberPolicy numberPolicy;
+
+	JSONTape(JSONTapeStore store, JSONNumberPolicy numberPolicy) {
+		this.store = store;
+		this.numberPolicy = numberPolicy;
+	}
+
+	/**
+	 * Parses a JSON object or array into a <code>JSONTape</code>.
+	 * @param input the JSON input
+	 * @return the parsed document
+	 * @throws JSONException if any syntax error is encountered
+	 */
+	public static JSONTape parse(String input) throws JSONException {
+		return parse(input, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * Parses a JSON object or array into a <code>JSONTape</code>, within the specified limits and
+	 * with numbers decoded by the specified policy when they are read.
+	 * @param input the JSON input
+	 * @param limits the limits of the input
+	 * @param numberPolicy the type of the numbers
+	 * @return the parsed document
+	 * @throws JSONException if any syntax error is encountered or a limit is exceeded
+	 */
+	public static JSONTape parse(String input, JSONLimits limits, JSONNumberPolicy numberPolicy) throws JSONException {
+		return new JSONTapeParser(input, limits, numberPolicy).parse();
+	}
+
+	/**
+	 * Parses a JSON object or array into a <code>JSONTape</code>. The reader is not closed.
+	 * @param reader the JSON input
+	 * @return the parsed document
+	 * @throws JSONException if any syntax error is encountered or the reader throws an
+	 *         <code>IOException</code>
+	 */
+	public static JSONTape parse(Reader reader) throws JSONException {
+		return parse(reader, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * Parses a JSON object or array into a <code>JSONTape</code>, within the specified limits and
+	 * with numbers decoded by the specified policy when they are read. The reader is not closed.
+	 * @param reader the JSON input
+	 * @param limits the limits of the input
+	 * @param numberPolicy the type of the numbers
+	 * @return the parsed document
+	 * @throws JSONException if any syntax error is encountered, a limit is exceeded or the reader
+	 *         throws an <code>IOException</code>
+	 */
+	public static JSONTape parse(Reader reader, JSONLimits limits, JSONNumberPolicy numberPolicy) throws JSONException {
+		return new JSONTapeParser(reader, new JSONTapeStore.Heap(1024, 4096), limits, numberPolicy).parse();
+	}
+
+	/**
+	 * <p>Parses a JSON object or array into a <code>JSONTape</code> stored off-heap, in direct
+	 * memory. The reader is not closed.</p>
+	 * <p>The tape and the strings of the document are stored in chunks of direct memory, so the
+	 * document adds nothing for the garbage collector to scan or copy however large it is, and
+	 * values are only decoded into Java objects when a cursor reads them. The memory is freed by
+	 * {@link #close()}, which should be called as soon as the document is no longer needed (e.g.
+	 * with try-with-resources), as the garbage collector may take long to free it otherwise.</p>
+	 * <p>The direct memory of the JVM is limited by <code>-XX:MaxDirectMemorySize</code>, which
+	 * is the maximum heap size by default, so a document larger than the heap needs a larger
+	 * limit.</p>
+	 * @param reader the JSON input
+	 * @return the parsed document, which must be closed
+	 * @throws JSONException if any syntax error is encountered or the reader throws an
+	 *         <code>IOException</code>
+	 */
+	public static JSONTape parseOffHeap(Reader reader) throws JSONException {
+		return parseOffHeap(reader, JSONLimits.DEFAULT, JSONNumberPolicy.AUTO);
+	}
+
+	/**
+	 * Parses a JSON object or array into a <code>JSONTape</code> stored off-heap, as
+	 * {@link #parseOffHeap(Reader)} does, within the specified limits and with numbers decoded by
+	 * the specified policy when they are read. The reader is not closed.
+	 * @param reader the JSON input
+	 * @param limits the limits of the input
+	 * @param numberPolicy the type of the numbers
+	 * @return the parsed document, which must be closed
+	 * @throws JSONException if any syntax error is encountered, a limit is exceeded or the reader
+	 *         throws an <code>IOException</code>
+	 */
+	public static JSONTape parseOffHeap(Reader reader, JSONLimits limits, JSONNumberPolicy numberPolicy) throws JSONException {
+		JSONTapeStore store = new JSONTapeStore.Direct();
+		try {
+			return new JSONTapeParser(reader, store, limits, numberPolicy).parse();
+		} catch(JSONException e) {
+			store.close();
+			throw e;
+		} catch(RuntimeException e) {
+			store.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a new cursor positioned at the root of the document.
+	 * @return a new cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Returns the number of words of the tape, for estimating the size of the document.
+	 * @return the number of tape words
+	 */
+	public int tapeLength() {
+		return store.wordCount();
+	}
+
+	/**
+	 * Returns the number of chars used for strings, for estimating the size of the document.
+	 * @return the number of chars
+	 */
+	public int charLength() {
+		return store.charCount();
+	}
+
+	/**
+	 * <p>Frees the memory of a <code>JSONTape</code> stored off-heap. Reading the document after
+	 * it is closed throws an <code>IllegalStateException</code>. Like a confined arena, it must
+	 * not be closed while other threads may still read it (e.g. with a cursor of their own): the
+	 * memory is freed at once, and their reads are not guarded against it.</p>
+	 * <p>Closing a JSONTape stored on the heap does nothing.</p>
+	 */
+	public void close() {
+		store.close();
+	}
+
+	private int type(int index) {
+		return (int) (store.word(index) >>> 56);
+	}
+
+	/**
+	 * The index of the word after the value at index
+	 */
+	private int after(int index) {
+		switch (type(index)) {
+		case OBJECT:
+		case ARRAY:
+			return (int) store.word(index);
+		case INTEGER:
+		case DOUBLE:
+			return index + 2;
+		default:
+			return index + 1;
+		}
+	}
+
+	private String string(int index) {
+		int offset = (int) store.word(index);
+		int length = (store.charAt(offset) << 16) | store.charAt(offset + 1);
+		return store.string(offset + 2, length);
+	}
+
+	private boolean stringEquals(int index, String s) {
+		int offset = (int) store.word(index);
+		int length = (store.charAt(offset) << 16) | store.charAt(offset + 1);
+		if (length != s.length()) {
+			return false;
+		}
+		offset += 2;
+		for (int i = 0; i < length; i++) {
+			if (store.charAt(offset + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The value at index as it would be in a JSONObject. The objects and arrays that are still
+	 * being copied are kept on a stack of their own, as in JSONParse.parseContainer(), so a deep
+	 * document cannot overflow the thread's stack.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object value(int index) {
+		int type = type(index);
+		if (type != OBJECT && type != ARRAY) {
+			return scalar(index);
+		}
+		Object[] stack = new Object[16]; //the open objects and arrays around the current one
+		String[] keys = new String[16];  //the key of the current one in each open object
+		int[] nexts = new int[16];       //the index of the next value of each open one
+		int depth = 0;
+
+		Object container = type == OBJECT ? new LinkedHashMap<String, Object>() : new ArrayList<Object>();
+		int i = index + 1;
+		while (true) {
+			type = type(i);
+			if (type == OBJECT_END || type == ARRAY_END) {
+				Object value = container instanceof Map ? new JSONObject((Map<String, Object>) container)
+				                                        : new JSONArray((List<Object>) container);
+				if (depth == 0) {
+					return value;
+				}
+				depth--;
+				container = stack[depth];
+				add(container, keys[depth], value);
+				i = nexts[depth];
+				stack[depth] = null;
+				keys[depth] = null;
+				continue;
+			}
+
+			String key = null;
+			if (container instanceof Map) {
+				key = string(i);
+				i++;
+				type = type(i);
+			}
+			if (type == OBJECT || type == ARRAY) {
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					keys = Arrays.copyOf(keys, depth * 2);
+					nexts = Arrays.copyOf(nexts, depth * 2);
+				}
+				stack[depth] = container;
+				keys[depth] = key;
+				nexts[depth] = after(i);
+				depth++;
+				container = type == OBJECT ? new LinkedHashMap<String, Object>() : new ArrayList<Object>();
+				i++;
+			}
+			else {
+				add(container, key, scalar(i));
+				i = after(i);
+			}
+		}
+	}
+
+	/**
+	 * Add a value to a Map (with its key) or a List
+	 */
+	@SuppressWarnings("unchecked")
+	private static void add(Object container, String key, Object value) {
+		if (key != null) {
+			((Map<String, Object>) container).put(key, value);
+		}
+		else {
+			((List<Object>) container).add(value);
+		}
+	}
+
+	/**
+	 * The value at index, which is not an object or an array
+	 */
+	private Object scalar(int index) {
+		switch (type(index)) {
+		case STRING:
+			return string(index);
+		case INTEGER:
+			long l = store.word(index + 1);
+			if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+				return Integer.valueOf((int) l);
+			}
+			return Long.valueOf(l);
+		case DOUBLE:
+			return Double.valueOf(Double.longBitsToDouble(store.word(index + 1)));
+		case BIG_NUMBER:
+			return JSONParse.parseNumber(string(index), numberPolicy);
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * <p>A position in a JSONTape. A cursor is a flyweight: moving it and reading values through it
+	 * creates no objects other than the values returned.</p>
+	 * <p>A cursor starts at the root of the document. {@link #down()}, {@link #find(String)} and
+	 * {@link #at(int)} move it into the object or array it is at, {@link #next()} moves it to the
+	 * next value of the same object or array, and {@link #up()} moves it back to the object or
+	 * array containing it. The move methods return <code>false</code> and leave the cursor
+	 * where it was if the move is not possible.</p>
+	 * <p>A cursor is not thread-safe, but any number of cursors can read the same JSONTape.</p>
+	 */
+	public final class Cursor {
+		/**
+		 * Tape index of the current value, and of the objects and arrays containing it
+		 */
+		private int index;
+		private int[] parents = new int[16];
+		private int depth;
+
+		private Cursor() {}
+
+		/**
+		 * Moves the cursor back to the root of the document.
+		 * @return a reference to this cursor
+		 */
+		public Cursor root() {
+			index = 0;
+			depth = 0;
+			return this;
+		}
+
+		/**
+		 * Moves the cursor to the first value of the object or array it is at.
+		 * @return <code>true</code> if the cursor moved, <code>false</code> if it is not at an
+		 *         object or array or the object or array is empty
+		 */
+		public boolean down() {
+			int type = type(index);
+			if ((type != OBJECT && type != ARRAY) || (int) store.word(index) == index + 2) {
+				return false;
+			}
+			push(index);
+			index += type == OBJECT ? 2 : 1;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the next value of the object or array containing it.
+		 * @return <code>true</code> if the cursor moved, <code>false</code> if it is at the last
+		 *         value or at the root
+		 */
+		public boolean next() {
+			if (depth == 0) {
+				return false;
+			}
+			int i = after(index);
+			int type = type(i);
+			if (type == OBJECT_END || type == ARRAY_END) {
+				return false;
+			}
+			index = type(parents[depth - 1]) == OBJECT ? i + 1 : i;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the object or array containing it.
+		 * @return <code>true</code> if the cursor moved, <code>false</code> if it is at the root
+		 */
+		public boolean up() {
+			if (depth == 0) {
+				return false;
+			}
+			index = parents[--depth];
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the value of the specified key in the object it is at. The keys
+		 * are compared with the tape as they are, without creating strings.
+		 * @param key the string key
+		 * @return <code>true</code> if the cursor moved, <code>false</code> if it is not at an
+		 *         object or the object does not contain the key
+		 */
+		public boolean find(String key) {
+			if (type(index) != OBJECT) {
+				return false;
+			}
+			for (int i = index + 1; type(i) != OBJECT_END; i = after(i + 1)) {
+				if (stringEquals(i, key)) {
+					push(index);
+					index = i + 1;
+					return true;
+				}
+			}
+			return false;
+		}
+
+
+		/**
+		 * Moves the cursor to the element at the specified index of the array it is at. The
+		 * elements before it are skipped one by one, so use {@link #down()} and {@link #next()} to
+		 * go through an array.
+		 * @param index the array index
+		 * @return <code>true</code> if the cursor moved, <code>false</code> if it is not at an
+		 *         array or the index is out of range
+		 */
+		public boolean at(int index) {
+			if (type(this.index) != ARRAY || index < 0) {
+				return false;
+			}
+			int i = this.index + 1;
+			for (int n = 0; n < index; n++) {
+				if (type(i) == ARRAY_END) {
+					return false;
+				}
+				i = after(i);
+			}
+			if (type(i) == ARRAY_END) {
+				return false;
+			}
+			push(this.index);
+			this.index = i;
+			return true;
+		}
+
+		/**
+		 * Returns the key of the value the cursor is at.
+		 * @return the key, or <code>null</code> if the value is not in an object
+		 */
+		public String key() {
+			if (depth == 0 || type(parents[depth - 1]) != OBJECT) {
+				return null;
+			}
+			return string(index - 1);
+		}
+
+		/**
+		 * Returns the number of values in the object or array the cursor is at.
+		 * @return the number of values, or 0 if the cursor is not at an object or array
+		 */
+		public int size() {
+			int type = type(index);
+			if (type != OBJECT && type != ARRAY) {
+				return 0;
+			}
+			int count = (int) (store.word(index) >>> 32) & MAX_COUNT;
+			if (count < MAX_COUNT) {
+				return count;
+			}
+			count = 0;
+			int end = (int) store.word(index) - 1;
+			for (int i = index + 1; i < end; i = after(type == OBJECT ? i + 1 : i)) {
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * @return <code>true</code> if the cursor is at an object
+		 */
+		public boolean isObject() {
+			return type(index) == OBJECT;
+		}
+
+		/**
+		 * @return <code>true</code> if the cursor is at an array
+		 */
+		public boolean isArray() {
+			return type(index) == ARRAY;
+		}
+
+		/**
+		 * @return <code>true</code> if the cursor is at a string
+		 */
+		public boolean isString() {
+			return type(index) == STRING;
+		}
+
+		/**
+		 * @return <code>true</code> if the cursor is at a number
+		 */
+		public boolean isNumber() {
+			int type = type(index);
+			return type == INTEGER || type == DOUBLE || type == BIG_NUMBER;
+		}
+
+		/**
+		 * @return <code>true</code> if the cursor is at <code>null</code>
+		 */
+		public boolean isNull() {
+			return type(index) == NULL;
+		}
+
+		/**
+		 * Returns the value the cursor is at as it would be in a JSONObject. Objects and arrays are
+		 * copied into a new JSONObject or JSONArray.
+		 * @return the value, or <code>null</code> if it is <code>null</code>
+		 */
+		public Object get() {
+			return value(index);
+		}
+
+		/**
+		 * @return the <code>String</code> the cursor is at, or <code>null</code> if it is not at a
+		 *         string
+		 */
+		public String getString() {
+			return type(index) == STRING ? string(index) : null;
+		}
+
+		/**
+		 * @return the <code>Integer</code> the cursor is at, or <code>null</code> if it is not at
+		 *         an integer in the range of <code>Integer</code>
+		 */
+		public Integer getInt() {
+			if (type(index) != INTEGER) {
+				Object v = number();
+				return (v instanceof Integer) ? (Integer) v : null;
+			}
+			long l = store.word(index + 1);
+			return l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ? Integer.valueOf((int) l) : null;
+		}
+
+		/**
+		 * @return the <code>Long</code> the cursor is at, or <code>null</code> if it is not at an
+		 *         integer that is out of the range of <code>Integer</code> but in the range of
+		 *         <code>Long</code>
+		 */
+		public Long getLong() {
+			if (type(index) != INTEGER) {
+				Object v = number();
+				return (v instanceof Long) ? (Long) v : null;
+			}
+			long l = store.word(index + 1);
+			return l < Integer.MIN_VALUE || l > Integer.MAX_VALUE ? Long.valueOf(l) : null;
+		}
+
+		/**
+		 * @return the <code>BigInteger</code> the cursor is at, or <code>null</code> if it is not
+		 *         at an integer that is out of the range of <code>Long</code>
+		 */
+		public BigInteger getBigInt() {
+			Object v = number();
+			return (v instanceof BigInteger) ? (BigInteger) v : null;
+		}
+
+		/**
+		 * @return the <code>Double</code> the cursor is at, or <code>null</code> if it is not at a
+		 *         number with a fraction or an exponent in the range of <code>Double</code>
+		 */
+		public Double getDouble() {
+			if (type(index) != DOUBLE) {
+				Object v = number();
+				return (v instanceof Double) ? (Double) v : null;
+			}
+			return Double.valueOf(Double.longBitsToDouble(store.word(index + 1)));
+		}
+
+		/**
+		 * @return the <code>BigDecimal</code> the cursor is at, or <code>null</code> if it is not
+		 *         at a number with a fraction or an exponent that is out of the range of
+		 *         <code>Double</code>
+		 */
+		public BigDecimal getDecimal() {
+			Object v = number();
+			return (v instanceof BigDecimal) ? (BigDecimal) v : null;
+		}
+
+		/**
+		 * @return the <code>Boolean</code> the cursor is at, or <code>null</code> if it is not at
+		 *         <code>true</code> or <code>false</code>
+		 */
+		public Boolean getBoolean() {
+			int type = type(index);
+			return type == TRUE ? Boolean.TRUE : type == FALSE ? Boolean.FALSE : null;
+		}
+
+		/**
+		 * The decoded number stored as text the cursor is at, or null
+		 */
+		private Object number() {
+			return type(index) == BIG_NUMBER ? JSONNumber.decoded(value(index)) : null;
+		}
+
+		private void push(int parent) {
+			if (depth == parents.length) {
+				int[] p = new int[depth * 2];
+				System.arraycopy(parents, 0, p, 0, depth);
+				parents = p;
+			}
+			parents[depth++] = parent;
+		}
+	}
+}
@@ -0,0 +1,475 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Builds a JSONTape. The input is scanned one char at a time without building tokens, values are
+ * written to the tape as they are read, and the open containers are kept on an explicit stack
+ * instead of the call stack, so the depth of a document is only bounded by its JSONLimits. The
+ * limits, the number policy and the whitespace are the ones of JSONTokener, so a document is
+ * accepted by the tape exactly when it is accepted by JSONParse.
+ */
+final class JSONTapeParser {
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The input, or null if the whole input is in the buffer
+	 */
+	private final Reader reader;
+	private char[] buffer;
+	private int pos;
+	private int limit;
+
+	/**
+	 * Number of chars read from the reader before the ones in the buffer, used for error offsets
+	 */
+	private long offset;
+
+	private final JSONTapeStore store;
+
+	private final long maxChars;
+	private final int maxStringLength;
+	private final int maxNumberLength;
+	private final int maxDepth;
+	private final int maxEntries;
+
+	/**
+	 * Numbers are stored as text unless the policy is AUTO, and decoded by JSONTape
+	 */
+	private final JSONNumberPolicy numberPolicy;
+
+	/**
+	 * Set if a String input was cut to maxChars, so the input is too long if it is read to the end
+	 */
+	private boolean truncated;
+
+	/**
+	 * Tape indices of the start words of the open containers, and the number of values in them
+	 */
+	private int[] stack = new int[32];
+	private int[] counts = new int[32];
+	private int depth;
+
+	/**
+	 * Used to build the text of numbers
+	 */
+	private final StringBuilder scratch = new StringBuilder();
+
+	JSONTapeParser(String input, JSONLimits limits, JSONNumberPolicy numberPolicy) {
+		this(null, new JSONTapeStore.Heap(input.length() / 4 + 16, input.length() / 2 + 16), limits, numberPolicy);
+		this.buffer = input.toCharArray();
+		this.limit = buffer.length;
+		if (limit > maxChars) {
+			limit = (int) maxChars;
+			truncated = true;
+		}
+	}
+
+	JSONTapeParser(Reader reader, JSONTapeStore store, JSONLimits limits, JSONNumberPolicy numberPolicy) {
+		if (numberPolicy == null) {
+			throw new NullPointerException("numberPolicy is null");
+		}
+		this.reader = reader;
+		this.buffer = reader == null ? null : new char[BUFFER_SIZE];
+		this.store = store;
+		this.maxChars = limits.maxChars();
+		this.maxStringLength = limits.maxStringLength();
+		this.maxNumberLength = limits.maxNumberLength();
+		this.maxDepth = limits.maxDepth();
+		this.maxEntries = limits.maxEntries();
+		this.numberPolicy = numberPolicy;
+	}
+
+	/**
+	 * Parse the input, which must be a single JSON object or array
+	 */
+	JSONTape parse() throws JSONException {
+		int ch = nextNonWhitespace();
+		if (ch != '{' && ch != '[') {
+			throw newSyntaxError("JSON document needs to start with '{' or '['");
+		}
+
+		while (true) {
+			//ch is the first char of a value
+			if (depth > 0 && ++counts[depth - 1] > maxEntries) {
+				throw newSyntaxError("an object or array has more than " + maxEntries + " values");
+			}
+			switch (ch) {
+			case '{':
+				open(JSONTape.OBJECT);
+				ch = nextNonWhitespace();
+				if (ch != '}') {
+					ch = readKey(ch);
+					continue;
+				}
+				close(JSONTape.OBJECT_END);
+				break;
+			case '[':
+				open(JSONTape.ARRAY);
+				ch = nextNonWhitespace();
+				if (ch != ']') {
+					continue;
+				}
+				close(JSONTape.ARRAY_END);
+				break;
+			case '"':
+				readString();
+				break;
+			case 't':
+				if (next() != 'r' || next() != 'u' || next() != 'e') {
+					throw newSyntaxError("Unrecognized symbol starting with 't'");
+				}
+				store.appendWord((long) JSONTape.TRUE << 56);
+				break;
+			case 'f':
+				if (next() != 'a' || next() != 'l' || next() != 's' || next() != 'e') {
+					throw newSyntaxError("Unrecognized symbol starting with 'f'");
+				}
+				store.appendWord((long) JSONTape.FALSE << 56);
+				break;
+			case 'n':
+				if (next() != 'u' || next() != 'l' || next() != 'l') {
+					throw newSyntaxError("Unrecognized symbol starting with 'n'");
+				}
+				store.appendWord((long) JSONTape.NULL << 56);
+				break;
+			default:
+				if (ch == '-' || isASCIIDigit(ch)) {
+					readNumber(ch);
+					break;
+				}
+				throw newSyntaxError("missing value");
+			}
+
+			//after a value, close the containers that end here and find the next value
+			while (true) {
+				if (depth == 0) {
+					if (nextNonWhitespace() != -1) {
+						throw newSyntaxError("JSON document needs to end after its closing '}' or ']'");
+					}
+					return new JSONTape(store, numberPolicy);
+				}
+				boolean inObject = (store.word(stack[depth - 1]) >>> 56) == JSONTape.OBJECT;
+				ch = nextNonWhitespace();
+				if (ch == ',') {
+					ch = nextNonWhitespace();
+					if (inObject) {
+						ch = readKey(ch);
+					}
+					break;
+				}
+				else if (inObject && ch == '}') {
+					close(JSONTape.OBJECT_END);
+				}
+				else if (!inObject && ch == ']') {
+					close(JSONTape.ARRAY_END);
+				}
+				else {
+					throw newSyntaxError(inObject ? "missing '}'" : "missing ']'");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a key starting with ch and the ':' after it, returns the first char of the value
+	 */
+	private int readKey(int ch) throws JSONException {
+		if (ch != '"') {
+			throw newSyntaxError("missing key");
+		}
+		readString();
+		if (nextNonWhitespace() != ':') {
+			throw newSyntaxError("missing ':'");
+		}
+		return nextNonWhitespace();
+	}
+
+	private void open(int type) throws JSONException {
+		if (depth + 1 > maxDepth) {
+			throw newSyntaxError("maximum depth of " + maxDepth + " exceeded");
+		}
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+			counts = Arrays.copyOf(counts, depth * 2);
+		}
+		stack[depth] = store.wordCount();
+		counts[depth] = 0;
+		depth++;
+		store.appendWord((long) type << 56);
+	}
+
+	private void close(int endType) {
+		depth--;
+		int start = stack[depth];
+		int end = store.wordCount();
+		store.appendWord(((long) endType << 56) | start);
+		long count = Math.min(counts[depth], JSONTape.MAX_COUNT);
+		store.setWord(start, store.word(start) | (count << 32) | (end + 1));
+	}
+
+	/**
+	 * Read a string, assuming the opening '"' has been read, into the char buffer
+	 */
+	private void readString() throws JSONException {
+		int start = store.charCount();
+		store.appendChar((char) 0);
+		store.appendChar((char) 0);
+		store.appendWord(((long) JSONTape.STRING << 56) | start);
+
+		while (true) {
+			//copy the run of plain chars in the buffer at once
+			int i = pos;
+			while (i < limit) {
+				char c = buffer[i];
+				if (c == '"' || c == '\\' || c < 0x20 || (c >= 0x7F && c <= 0x9F)) {
+					break;
+				}
+				i++;
+			}
+			if (i > pos) {
+				store.appendChars(buffer, pos, i - pos);
+				pos = i;
+			}
+			if (store.charCount() - start - 2 > maxStringLength) {
+				throw newSyntaxError("a string is longer than " + maxStringLength + " chars");
+			}
+
+			int ch = next();
+			if (ch == '"') {
+				break;
+			}
+			else if (ch == '\\') {
+				store.appendChar(readEscape());
+			}
+			else if (ch == -1) {
+				throw newSyntaxError("missing closing '\"'");
+			}
+			else if (Character.isISOControl(ch)) {
+				throw newSyntaxError("a JSON string cannot contain control character (e.g. \\t): " + (char) ch);
+			}
+			else {
+				//the run ended at the end of the buffer
+				store.appendChar((char) ch);
+			}
+		}
+
+		int length = store.charCount() - start - 2;
+		store.setChar(start, (char) (length >>> 16));
+		store.setChar(start + 1, (char) length);
+	}
+
+	/**
+	 * Convert \t, \\, \u1234 etc. to the corresponding char, as JSONTokener does
+	 */
+	private char readEscape() throws JSONException {
+		int ch = next();
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char) ch;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int num = 0;
+			for (int i = 0; i < 4; i++) {
+				int c = next();
+				if (isASCIIDigit(c)) {
+					num += (c - 48) << (12 - i * 4);
+				}
+				else if (c >= 'A' && c <= 'F') {
+					num += (c - 55) << (12 - i * 4);
+				}
+				else {
+					throw newSyntaxError("invalid hex digit '" + (char) c + "' in unicode escape sequence");
+				}
+			}
+			return (char) num;
+		default:
+			throw newSyntaxError("invalid escape sequence \\" + (char) ch +
+			      ", valid escape sequences are \\b\\f\\n\\r\\t\\/\\\"\\\\");
+		}
+	}
+
+	/**
+	 * Read a number starting with ch. Integers that fit in a long and finite doubles are stored on
+	 * the tape, other numbers are stored as text in the char buffer, and so are all numbers if the
+	 * number policy is not AUTO.
+	 */
+	private void readNumber(int ch) throws JSONException {
+		StringBuilder str = scratch;
+		str.setLength(0);
+		str.append((char) ch);
+
+		boolean negative = ch == '-';
+		if (negative) {
+			ch = next();
+			if (!isASCIIDigit(ch)) {
+				throw newSyntaxError("expects numeric character after '-', but it is not found");
+			}
+			str.append((char) ch);
+		}
+
+		long value = ch - '0';
+		int digits = 1;
+		if (ch != '0') {
+			ch = next();
+			while (isASCIIDigit(ch)) {
+				str.append((char) ch);
+				value = value * 10 + (ch - '0');
+				digits++;
+				ch = next();
+			}
+		}
+		else {
+			ch = next();
+		}
+
+		boolean integer = true;
+		if (ch == '.') {
+			integer = false;
+			str.append('.');
+			ch = next();
+			if (!isASCIIDigit(ch)) {
+				throw newSyntaxError("expects numeric character after '.', but it is not found");
+			}
+			while (isASCIIDigit(ch)) {
+				str.append((char) ch);
+				ch = next();
+			}
+		}
+
+		if (ch == 'e' || ch == 'E') {
+			integer = false;
+			str.append((char) ch);
+			ch = next();
+			if (ch == '+' || ch == '-') {
+				str.append((char) ch);
+				ch = next();
+			}
+			if (!isASCIIDigit(ch)) {
+				throw newSyntaxError("expects numeric character after '" + (char) ch +
+				                     "', but it is not found");
+			}
+			while (isASCIIDigit(ch)) {
+				str.append((char) ch);
+				ch = next();
+			}
+		}
+
+		//push back the extra character
+		if (ch != -1) {
+			pos--;
+		}
+		if (str.length() > maxNumberLength) {
+			throw newSyntaxError("a number is longer than " + maxNumberLength + " chars");
+		}
+
+		boolean auto = numberPolicy == JSONNumberPolicy.AUTO;
+		if (auto && integer) {
+			if (digits <= 18) {
+				store.appendWord((long) JSONTape.INTEGER << 56);
+				store.appendWord(negative ? -value : value);
+				return;
+			}
+			try {
+				long l = Long.parseLong(str.toString());
+				store.appendWord((long) JSONTape.INTEGER << 56);
+				store.appendWord(l);
+				return;
+			} catch(NumberFormatException e) {} //swallow, it's a BigInteger
+		}
+		else if (auto) {
+			double d = Double.parseDouble(str.toString());
+			if (!Double.isInfinite(d)) {
+				store.appendWord((long) JSONTape.DOUBLE << 56);
+				store.appendWord(Double.doubleToRawLongBits(d));
+				return;
+			}
+		}
+
+		int start = store.charCount();
+		int length = str.length();
+		store.appendChar((char) (length >>> 16));
+		store.appendChar((char) length);
+		for (int i = 0; i < length; i++) {
+			store.appendChar(str.charAt(i));
+		}
+		store.appendWord(((long) JSONTape.BIG_NUMBER << 56) | start);
+	}
+
+	/**
+	 * Gets the next char, or -1 at the end of input
+	 */
+	private int next() throws JSONException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos++];
+	}
+
+	private int nextNonWhitespace() throws JSONException {
+		while (true) {
+			int ch = next();
+			if ((ch > ' ' && ch < 0x80) || ch == -1 || !JSONTokener.isWhitespace((char) ch)) {
+				return ch;
+			}
+		}
+	}
+
+	/**
+	 * Refill the buffer from the reader, returns false if there are no more chars
+	 */
+	private boolean fill() throws JSONException {
+		if (truncated) {
+			throw tooLong();
+		}
+		if (reader == null) {
+			return false;
+		}
+		try {
+			//read no further than maxChars, and only read one more char to see if the input ends there
+			long remaining = maxChars - offset - limit;
+			if (remaining <= 0) {
+				if (reader.read() == -1) {
+					return false;
+				}
+				throw tooLong();
+			}
+			int n = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (n <= 0) {
+				return false;
+			}
+			offset += limit;
+			pos = 0;
+			limit = n;
+			return true;
+		}
+		catch(IOException e) {
+			throw new JSONException(e);
+		}
+	}
+
+	private JSONException tooLong() {
+		return newSyntaxError("the input is longer than " + maxChars + " chars");
+	}
+
+	private JSONException newSyntaxError(String message) {
+		return new JSONException("Syntax error (offset " + (offset + pos) + "): " + message);
+	}
+
+	private static boolean isASCIIDigit(int ch) {
+		return ch >= '0' && ch <= '9';
+	}
+}
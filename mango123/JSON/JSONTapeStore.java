@@ -0,0 +1,277 @@
+package mango123.JSON;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The storage of a JSONTape: the tape words and the chars of the strings. JSONTapeParser appends
+ * to it and JSONTape reads from it, so the same parser and cursor work on the heap and off-heap.
+ */
+abstract class JSONTapeStore {
+	abstract long word(int index);
+
+	abstract void setWord(int index, long word);
+
+	abstract void appendWord(long word);
+
+	abstract int wordCount();
+
+	abstract char charAt(int index);
+
+	abstract void setChar(int index, char ch);
+
+	abstract void appendChar(char ch);
+
+	abstract void appendChars(char[] src, int offset, int length);
+
+	abstract int charCount();
+
+	abstract String string(int offset, int length);
+
+	/**
+	 * Release the memory, the store cannot be used afterwards
+	 */
+	void close() {}
+
+	/**
+	 * Stores the tape in a long[] and the chars in a char[]
+	 */
+	static final class Heap extends JSONTapeStore {
+		private long[] words;
+		private int wordCount;
+		private char[] chars;
+		private int charCount;
+
+		Heap(int wordCapacity, int charCapacity) {
+			this.words = new long[wordCapacity];
+			this.chars = new char[charCapacity];
+		}
+
+		long word(int index) {
+			return words[index];
+		}
+
+		void setWord(int index, long word) {
+			words[index] = word;
+		}
+
+		void appendWord(long word) {
+			if (wordCount == words.length) {
+				words = Arrays.copyOf(words, wordCount + (wordCount >> 1) + 16);
+			}
+			words[wordCount++] = word;
+		}
+
+		int wordCount() {
+			return wordCount;
+		}
+
+		char charAt(int index) {
+			return chars[index];
+		}
+
+		void setChar(int index, char ch) {
+			chars[index] = ch;
+		}
+
+		void appendChar(char ch) {
+			if (charCount == chars.length) {
+				chars = Arrays.copyOf(chars, charCount + (charCount >> 1) + 16);
+			}
+			chars[charCount++] = ch;
+		}
+
+		void appendChars(char[] src, int offset, int length) {
+			if (charCount + length > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(charCount + length, charCount + (charCount >> 1) + 16));
+			}
+			System.arraycopy(src, offset, chars, charCount, length);
+			charCount += length;
+		}
+
+		int charCount() {
+			return charCount;
+		}
+
+		String string(int offset, int length) {
+			return new String(chars, offset, length);
+		}
+	}
+
+	/**
+	 * <p>Stores the tape and the chars in chunks of direct memory, so they are not on the Java heap
+	 * and are never copied or scanned by the garbage collector.</p>
+	 * <p>.close() frees the chunks right away instead of waiting for the garbage collector to find
+	 * their buffers unreachable, and accessing the store after that throws an
+	 * IllegalStateException. Like a confined arena, the store must not be closed while another
+	 * thread reads it: nothing guards the reads, which could then touch freed memory.</p>
+	 * <p>The chunks count towards the direct memory limit of the JVM, -XX:MaxDirectMemorySize,
+	 * which is the maximum heap size by default.</p>
+	 */
+	static final class Direct extends JSONTapeStore {
+		/**
+		 * Each chunk is 1 MB
+		 */
+		private static final int WORD_SHIFT = 17;
+		private static final int CHAR_SHIFT = 19;
+		private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+		private static final int CHAR_MASK = (1 << CHAR_SHIFT) - 1;
+
+		private ByteBuffer[] wordMemory = new ByteBuffer[16];
+		private LongBuffer[] words = new LongBuffer[16];
+		private int wordCount;
+
+		private ByteBuffer[] charMemory = new ByteBuffer[16];
+		private CharBuffer[] chars = new CharBuffer[16];
+		private int charCount;
+
+		private boolean closed;
+
+		private void checkOpen() {
+			if (closed) {
+				throw new IllegalStateException("the JSONTape is closed");
+			}
+		}
+
+		long word(int index) {
+			checkOpen();
+			return words[index >>> WORD_SHIFT].get(index & WORD_MASK);
+		}
+
+		void setWord(int index, long word) {
+			words[index >>> WORD_SHIFT].put(index & WORD_MASK, word);
+		}
+
+		void appendWord(long word) {
+			int chunk = wordCount >>> WORD_SHIFT;
+			if ((wordCount & WORD_MASK) == 0) {
+				if (chunk == words.length) {
+					wordMemory = Arrays.copyOf(wordMemory, chunk * 2);
+					words = Arrays.copyOf(words, chunk * 2);
+				}
+				wordMemory[chunk] = ByteBuffer.allocateDirect(8 << WORD_SHIFT).order(ByteOrder.nativeOrder());
+				words[chunk] = wordMemory[chunk].asLongBuffer();
+			}
+			words[chunk].put(wordCount & WORD_MASK, word);
+			wordCount++;
+		}
+
+		int wordCount() {
+			return wordCount;
+		}
+
+		char charAt(int index) {
+			checkOpen();
+			return chars[index >>> CHAR_SHIFT].get(index & CHAR_MASK);
+		}
+
+		void setChar(int index, char ch) {
+			chars[index >>> CHAR_SHIFT].put(index & CHAR_MASK, ch);
+		}
+
+		void appendChar(char ch) {
+			requireChunk();
+			chars[charCount >>> CHAR_SHIFT].put(charCount & CHAR_MASK, ch);
+			charCount++;
+		}
+
+		void appendChars(char[] src, int offset, int length) {
+			while (length > 0) {
+				requireChunk();
+				CharBuffer chunk = chars[charCount >>> CHAR_SHIFT];
+				int n = Math.min(length, (1 << CHAR_SHIFT) - (charCount & CHAR_MASK));
+				chunk.position(charCount & CHAR_MASK);
+				chunk.put(src, offset, n);
+				charCount += n;
+				offset += n;
+				length -= n;
+			}
+		}
+
+		/**
+		 * Allocate the chunk for the next char if it starts a new one
+		 */
+		private void requireChunk() {
+			if ((charCount & CHAR_MASK) == 0) {
+				int chunk = charCount >>> CHAR_SHIFT;
+				if (chunk == chars.length) {
+					charMemory = Arrays.copyOf(charMemory, chunk * 2);
+					chars = Arrays.copyOf(chars, chunk * 2);
+				}
+				charMemory[chunk] = ByteBuffer.allocateDirect(2 << CHAR_SHIFT).order(ByteOrder.nativeOrder());
+				chars[chunk] = charMemory[chunk].asCharBuffer();
+			}
+		}
+
+		int charCount() {
+			return charCount;
+		}
+
+		String string(int offset, int length) {
+			checkOpen();
+			char[] str = new char[length];
+			int i = 0;
+			while (i < length) {
+				CharBuffer chunk = chars[(offset + i) >>> CHAR_SHIFT].duplicate();
+				int n = Math.min(length - i, (1 << CHAR_SHIFT) - ((offset + i) & CHAR_MASK));
+				chunk.position((offset + i) & CHAR_MASK);
+				chunk.get(str, i, n);
+				i += n;
+			}
+			return new String(str);
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (ByteBuffer b : wordMemory) {
+				free(b);
+			}
+			for (ByteBuffer b : charMemory) {
+				free(b);
+			}
+			wordMemory = null;
+			words = null;
+			charMemory = null;
+			chars = null;
+		}
+
+		/**
+		 * Unsafe.invokeCleaner(), or null if it is not available
+		 */
+		private static final Object UNSAFE;
+		private static final Method INVOKE_CLEANER;
+
+		static {
+			Object unsafe = null;
+			Method invokeCleaner = null;
+			try {
+				Class<?> c = Class.forName("sun.misc.Unsafe");
+				Field f = c.getDeclaredField("theUnsafe");
+				f.setAccessible(true);
+				invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+				unsafe = f.get(null);
+			} catch(Exception e) {
+				invokeCleaner = null; //the memory is freed by the garbage collector instead
+			}
+			UNSAFE = unsafe;
+			INVOKE_CLEANER = invokeCleaner;
+		}
+
+		private static void free(ByteBuffer buffer) {
+			if (buffer == null || INVOKE_CLEANER == null) {
+				return;
+			}
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} catch(Exception e) {} //swallow, the memory is freed by the garbage collector instead
+		}
+	}
+}
@@ -15,14 +15,53 @@ public class JSONTokener implements AutoCloseable {
 	public static String FALSE = "false";
 	public static String NULL = "null";
 
-	private final Reader reader;
+	/**
+	 * Size of the internal character buffer
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The scratch builder is replaced on .reset() if a token made it grow beyond this capacity
+	 */
+	private static final int MAX_RETAINED_SCRATCH = 64 * 1024;
+
+	/**
+	 * The input, or null if the whole input has been copied into the buffer
+	 */
+	private Reader reader;
+
+	/**
+	 * Characters read from the input. The tokener does its own buffering so it does not need a
+	 * BufferedReader, and the buffer is kept across .reset() calls.
+	 */
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	/**
+	 * Number of chars in the buffers before the current one, so consumed + pos chars have been read
+	 */
+	private long consumed;
+
+	/**
+	 * Reused by .tryReadString() and .tryReadNumber() to build the tokens
+	 */
+	private StringBuilder scratch = new StringBuilder();
 
 	/**
 	 * Constructs a <code>JSONTokener</code> from a <code>Reader</code>.
 	 * @param reader the input for characters
 	 */
 	public JSONTokener(Reader reader) {
-		this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+		this.reader = reader;
+	}
+
+	/**
+	 * Constructs a <code>JSONTokener</code> from a <code>String</code>.
+	 * @param input the input for characters
+	 */
+	public JSONTokener(String input) {
+		reset(input);
 	}
 
 	/**
@@ -50,24 +89,106 @@ public class JSONTokener implements AutoCloseable {
 	private boolean EOF = false;
 
 	/**
-	 * number of lines read so far, use in .newSyntaxError()
+	 * Line breaks in the chars before the buffer, and the offset of the line that the buffer
+	 * starts in, counted when the buffer is refilled. Only the offset is followed as the input is
+	 * read; the line and column are worked out from these in .newSyntaxError().
+	 */
+	private int linesBefore;
+	private long lineStartBefore;
+
+	/**
+	 * Chars of the buffer shown before and after the error in the message of .newSyntaxError()
 	 */
-	private int numOfLines = 1;
-	private int charOnLine = -1;
+	private static final int CONTEXT_BEFORE = 24;
+	private static final int CONTEXT_AFTER = 16;
 
 	/**
-	 * Used when a character is read but it may not be used.
+	 * Statistics of the current document, only counted if JSONMetrics.ENABLED is true
 	 */
-	private Character pushback;
+	final long[] tokenCounts = JSONMetrics.ENABLED ? new long[JSONMetrics.TOKEN_TYPE_COUNT] : null;
+	int maxTokenDepth;
+	private int tokenDepth;
+	private long metricsStart;
+
+	/**
+	 * The default of .setMaxDepth()
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 1024;
+
+	/**
+	 * The limits on the input, and the ones checked by the tokener itself, copied for speed
+	 */
+	private JSONLimits limits = JSONLimits.DEFAULT;
+	private long maxChars = Long.MAX_VALUE;
+	private int maxStringLength = Integer.MAX_VALUE;
+	private int maxNumberLength = Integer.MAX_VALUE;
+
+	/**
+	 * How numbers are decoded by the parser
+	 */
+	private JSONNumberPolicy numberPolicy = JSONNumberPolicy.AUTO;
+
+	/**
+	 * Set if a String input was cut to maxChars when it was copied into the buffer, so the input
+	 * is too long if the tokener reads past it
+	 */
+	private boolean truncated;
+
+	/**
+	 * Set by .tryParse() and JSONParser.validate(), so .newSyntaxError() only records the kind
+	 * and the offset of the error and returns QUIET_ERROR, instead of building the exception
+	 */
+	boolean quiet;
+	JSONParseResult.Error errorCode;
+	long errorOffset;
+
+	/**
+	 * Thrown in the quiet mode, it has no stack trace so it can be shared
+	 */
+	private static final JSONException QUIET_ERROR = new JSONException("Syntax error", false);
 
 	/**
 	 * <p>Create and return a <code>JSONException</code> with a message detailing the syntax error.</p>
-	 * <p>The message you passed into this method will be prepended with "JSON Syntax Error on 
-	 * Line(insert line number): "</p>
-	 * <p>e.g. "'}' is missing at the end -&gt; Syntax Error on Line 6: '}' is missing at the end"</p>
+	 * <p>The message you passed into this method will be prepended with the line and the char on
+	 * the line of the last char read, and followed by the input around it.</p>
+	 * <p>e.g. "missing ':'" -&gt; "Syntax error (line 6 char 9): missing ':' near '{"a" 1}'"</p>
 	 */
 	public JSONException newSyntaxError(String message) {
-		return new JSONException("Syntax error (line " + numOfLines + " char " + charOnLine + "): " + message);
+		return newSyntaxError(JSONParseResult.Error.UNEXPECTED_TOKEN, message);
+	}
+
+	/**
+	 * See .newSyntaxError(String), with the kind of error for the quiet mode. An unexpected
+	 * token at the end of the input is an unexpected end.
+	 */
+	JSONException newSyntaxError(JSONParseResult.Error code, String message) {
+		errorCode = code == JSONParseResult.Error.UNEXPECTED_TOKEN && EOF ? JSONParseResult.Error.UNEXPECTED_END : code;
+		errorOffset = errorCode == JSONParseResult.Error.UNEXPECTED_END ? consumed + pos : Math.max(0, consumed + pos - 1);
+		if (quiet) {
+			return QUIET_ERROR;
+		}
+
+		int line = linesBefore + 1;
+		long lineStart = lineStartBefore;
+		for (int i = 0; i < pos; i++) {
+			if (isLineBreak(buffer[i])) {
+				line++;
+				lineStart = consumed + i + 1;
+			}
+		}
+		long column = consumed + pos - 1 - lineStart;
+
+		StringBuilder str = new StringBuilder("Syntax error (line ").append(line).append(" char ").append(column);
+		str.append("): ").append(message);
+		int start = Math.max(0, pos - CONTEXT_BEFORE), end = Math.min(limit, pos + CONTEXT_AFTER);
+		if (start < end) {
+			str.append(" near '");
+			for (int i = start; i < end; i++) {
+				str.append(buffer[i] < ' ' ? ' ' : buffer[i]);
+			}
+			str.append('\'');
+		}
+		return new JSONException(str.toString());
 	}
 	
 	//TODO: javadoc
@@ -90,6 +211,17 @@ public class JSONTokener implements AutoCloseable {
 	 * @throws JSONException if an unrecognized/malformed token is encountered or an <code>IOException</code> occurred
 	 */
 	public String nextToken() throws JSONException {
+		String token = readToken();
+		if (JSONMetrics.ENABLED && token != null) {
+			countToken(token);
+		}
+		return token;
+	}
+
+	/**
+	 * Reads the next token, see .nextToken()
+	 */
+	private String readToken() throws JSONException {
 		char ch = nextNonWhitespace();
 
 		//end of input
@@ -128,12 +260,300 @@ public class JSONTokener implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Reads and checks the next token like .nextToken(), without building a String of it, used by
+	 * JSONParser.validate(). Returns the first char of the token, which is '0' for any number, or
+	 * -1 at the end of input.
+	 */
+	int skipToken() throws JSONException {
+		char ch = nextNonWhitespace();
+		if (EOF) {
+			return -1;
+		}
+		else if (ch == '"') {
+			StringBuilder str = scratch;
+			str.setLength(0);
+			readString(str.append('"'), next());
+			return '"';
+		}
+		else if (isASCIIDigit(ch) || ch == '-') {
+			readNumber(ch);
+			return '0';
+		}
+		else if (ch == 't') {
+			tryReadTrue();
+		}
+		else if (ch == 'f') {
+			tryReadFalse();
+		}
+		else if (ch == 'n') {
+			tryReadNull();
+		}
+		else {
+			tryReadSymbol(ch);
+		}
+		return ch;
+	}
+
+	/**
+	 * Reads the next token if it is the specified constant (a symbol, true, false or null) and
+	 * returns true, or leaves the input unchanged and returns false if it is anything else
+	 */
+	boolean nextTokenIs(String constant) throws JSONException {
+		char ch = nextNonWhitespace();
+		if (EOF || ch != constant.charAt(0)) {
+			back();
+			return false;
+		}
+		if (constant == TRUE) {
+			tryReadTrue();
+		}
+		else if (constant == FALSE) {
+			tryReadFalse();
+		}
+		else if (constant == NULL) {
+			tryReadNull();
+		}
+		if (JSONMetrics.ENABLED) {
+			countToken(constant);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the next token as a JSONObject key, expecting the specified key. The characters are
+	 * compared with the expected key as they are read, so if it matches the expected instance
+	 * itself is returned and no token is built. If it does not match, the key that was read is
+	 * returned, and if the next token is not a string at all, null is returned and nothing is
+	 * read. The expected key must not contain '"', '\\' or control characters.
+	 */
+	String nextKey(String expected) throws JSONException {
+		char ch = nextNonWhitespace();
+		if (EOF || ch != '"') {
+			back();
+			return null;
+		}
+
+		int length = expected.length(), i = 0;
+		ch = next();
+		while (i < length && ch == expected.charAt(i) && !EOF) {
+			ch = next();
+			i++;
+		}
+		if (i == length && ch == '"') {
+			if (JSONMetrics.ENABLED) {
+				tokenCounts[JSONMetrics.STRING]++;
+			}
+			return expected;
+		}
+
+		//continue with the characters that matched so far
+		StringBuilder str = scratch;
+		str.setLength(0);
+		str.append('"').append(expected, 0, i);
+		if (JSONMetrics.ENABLED) {
+			tokenCounts[JSONMetrics.STRING]++;
+		}
+		return toKey(tryReadString(str, ch));
+	}
+
+	/**
+	 * Count a token in the statistics of the current document, and follow the depth
+	 */
+	private void countToken(String token) {
+		char ch = token.charAt(0);
+		int type;
+		if (ch == '"') {
+			type = JSONMetrics.STRING;
+		}
+		else if (isASCIIDigit(ch) || ch == '-') {
+			type = JSONMetrics.NUMBER;
+		}
+		else if (token == TRUE || token == FALSE) {
+			type = JSONMetrics.BOOLEAN;
+		}
+		else if (token == NULL) {
+			type = JSONMetrics.NULL;
+		}
+		else if (token == LEFT_BRACE || token == LEFT_SQUARE) {
+			type = token == LEFT_BRACE ? JSONMetrics.OBJECT : JSONMetrics.ARRAY;
+			if (++tokenDepth > maxTokenDepth) {
+				maxTokenDepth = tokenDepth;
+			}
+		}
+		else {
+			type = JSONMetrics.SYMBOL;
+			if (token == RIGHT_BRACE || token == RIGHT_SQUARE) {
+				tokenDepth--;
+			}
+		}
+		tokenCounts[type]++;
+	}
+
+	/**
+	 * Start the statistics of a new document, used by JSONEvents
+	 */
+	void startMetrics() {
+		if (tokenCounts != null) {
+			for (int i = 0; i < tokenCounts.length; i++) {
+				tokenCounts[i] = 0;
+			}
+		}
+		tokenDepth = 0;
+		maxTokenDepth = 0;
+		metricsStart = consumed + pos;
+	}
+
+	/**
+	 * Number of chars read since .startMetrics()
+	 */
+	long charsSinceStart() {
+		return consumed + pos - metricsStart;
+	}
+
+	/**
+	 * Converts a string token (with its quotes) into a JSONObject key
+	 */
+	String toKey(String token) {
+		return token.substring(1, token.length() - 1);
+	}
+
+	/**
+	 * <p>Sets the deepest nesting of objects and arrays that is parsed from this tokener, 1024 by
+	 * default. A deeper document fails with a syntax error instead of using memory without bound.
+	 * The parser keeps the open objects and arrays on its own stack, not the thread's, so any
+	 * depth can be allowed.</p>
+	 * <p>The limit is kept by .reset().</p>
+	 * @param maxDepth the maximum depth, at least 1
+	 * @return a reference to this object
+	 */
+	public JSONTokener setMaxDepth(int maxDepth) {
+		return setLimits(limits.withMaxDepth(maxDepth));
+	}
+
+	/**
+	 * Returns the deepest nesting of objects and arrays that is parsed from this tokener.
+	 * @return the maximum depth
+	 */
+	public int getMaxDepth() {
+		return limits.maxDepth();
+	}
+
+	/**
+	 * <p>Sets the limits on the input read from this tokener, {@link JSONLimits#DEFAULT} by
+	 * default. Input that crosses a limit fails with a syntax error as soon as it is read.</p>
+	 * <p>The limits are kept by .reset().</p>
+	 * @param limits the limits
+	 * @return a reference to this object
+	 */
+	public JSONTokener setLimits(JSONLimits limits) {
+		this.limits = limits;
+		maxChars = limits.maxChars();
+		maxStringLength = limits.maxStringLength();
+		maxNumberLength = limits.maxNumberLength();
+		truncate();
+		return this;
+	}
+
+	/**
+	 * Returns the limits on the input read from this tokener.
+	 * @return the limits
+	 */
+	public JSONLimits getLimits() {
+		return limits;
+	}
+
+	/**
+	 * <p>Sets how numbers are decoded by JSONObject.parse() and JSONArray.parse() from this
+	 * tokener, {@link JSONNumberPolicy#AUTO} by default.</p>
+	 * <p>The policy is kept by .reset().</p>
+	 * @param numberPolicy the policy
+	 * @return a reference to this object
+	 */
+	public JSONTokener setNumberPolicy(JSONNumberPolicy numberPolicy) {
+		this.numberPolicy = numberPolicy;
+		return this;
+	}
+
+	/**
+	 * Returns how numbers are decoded by the parser from this tokener.
+	 * @return the policy
+	 */
+	public JSONNumberPolicy getNumberPolicy() {
+		return numberPolicy;
+	}
+
+	/**
+	 * <p>Resets this tokener so it reads from the specified <code>Reader</code>, as if it was newly
+	 * constructed. The internal buffers are kept, so a tokener can be reused for many inputs
+	 * without allocating new ones.</p>
+	 * <p>The previous input is not closed.</p>
+	 * @param reader the input for characters
+	 * @return a reference to this object
+	 */
+	public JSONTokener reset(Reader reader) {
+		clearState();
+		this.reader = reader;
+		return this;
+	}
+
+	/**
+	 * <p>Resets this tokener so it reads from the specified <code>String</code>, as if it was newly
+	 * constructed. The internal buffers are kept, so a tokener can be reused for many inputs
+	 * without allocating new ones.</p>
+	 * <p>The previous input is not closed.</p>
+	 * @param input the input for characters
+	 * @return a reference to this object
+	 */
+	public JSONTokener reset(String input) {
+		clearState();
+		if (input.length() <= buffer.length) {
+			input.getChars(0, input.length(), buffer, 0);
+			limit = input.length();
+			reader = null;
+			truncate();
+		}
+		else {
+			reader = new StringReader(input);
+		}
+		return this;
+	}
+
+	/**
+	 * Cut the buffer to maxChars if it holds the whole input, which is then too long if the
+	 * tokener reads past it
+	 */
+	private void truncate() {
+		if (reader == null && consumed + limit > maxChars) {
+			limit = (int) Math.max(pos, maxChars - consumed);
+			truncated = true;
+		}
+	}
+
+	/**
+	 * Used in .reset() to go back to the state of a newly constructed tokener
+	 */
+	private void clearState() {
+		pos = 0;
+		limit = 0;
+		consumed = 0;
+		EOF = false;
+		linesBefore = 0;
+		lineStartBefore = 0;
+		truncated = false;
+		if (scratch.capacity() > MAX_RETAINED_SCRATCH) {
+			scratch = new StringBuilder();
+		}
+	}
+
 	/**
 	 * Closes the tokener.
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		reader.close();
+		if (reader != null) {
+			reader.close();
+		}
 	}
 
 	/**
@@ -141,42 +561,88 @@ public class JSONTokener implements AutoCloseable {
 	 * EOF will be set to true if there are no more characters.
 	 */
 	private char next() throws JSONException {
+		if (pos == limit && !fill()) {
+			EOF = true;
+			return (char) -1;
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * Unread the last character returned by .next(), used when a character is read but it may
+	 * not be used. Nothing is unread at the end of input.
+	 */
+	private void back() {
+		if (!EOF) {
+			pos--;
+		}
+	}
+
+	/**
+	 * Refill the buffer from the reader, returns false if there are no more characters
+	 */
+	private boolean fill() throws JSONException {
+		if (truncated) {
+			throw tooLong();
+		}
+		if (reader == null || EOF) {
+			return false;
+		}
+		//count the line breaks of the chars that are about to be replaced
+		int lines = linesBefore;
+		long lineStart = lineStartBefore;
+		for (int i = 0; i < limit; i++) {
+			if (isLineBreak(buffer[i])) {
+				lines++;
+				lineStart = consumed + i + 1;
+			}
+		}
 		try {
-			int ch = reader.read();
-			if (ch == -1) EOF = true;
-			else          charOnLine++;
-			return (char) ch;
+			//read no further than maxChars, and only read one more char to see if the input ends there
+			long remaining = maxChars - consumed - limit;
+			if (remaining <= 0) {
+				if (reader.read() == -1) {
+					return false;
+				}
+				throw tooLong();
+			}
+			int n = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (n <= 0) {
+				return false;
+			}
+			linesBefore = lines;
+			lineStartBefore = lineStart;
+			consumed += limit;
+			pos = 0;
+			limit = n;
+			return true;
 		}
 		catch(IOException e) {
+			errorCode = JSONParseResult.Error.IO_ERROR;
+			errorOffset = consumed + pos;
 			throw new JSONException(e);
 		}
 	}
 
+	private JSONException tooLong() {
+		return newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "the input is longer than " + maxChars + " chars");
+	}
+
 	/**
 	 * Returns the next non-whitespace char. Needs to check EOF in the methods that use this.
 	 */
 	private char nextNonWhitespace() throws JSONException {
-		//get char from pushback if there it exists, else read it
-		char ch;
-		if (pushback != null) {
-			ch = pushback;
-			pushback = null;
-		}
-		else {
-			ch = next();	
-		}
-
-		//skip all whitespace
 		while (true) {
-			if (isNewLine(ch)) {
-				numOfLines++;
-				charOnLine = -1;
+			while (pos < limit) {
+				char ch = buffer[pos++];
+				if ((ch > ' ' && ch < 0x80) || !isWhitespace(ch)) {
+					return ch; //printable ASCII is checked first as it is the most common
+				}
 			}
-			else if (Character.isWhitespace(ch)) {} //don't do anything for whitespace
-			else {
-				return ch; //when EOF or valid character
+			if (!fill()) {
+				EOF = true;
+				return (char) -1;
 			}
-			ch = next();
 		}
 	}
 	
@@ -185,18 +651,38 @@ public class JSONTokener implements AutoCloseable {
 	 * this will throw JSONException if a syntax error is found
 	 */
 	private String tryReadString() throws JSONException {
-		StringBuilder str = new StringBuilder().append('"');
+		StringBuilder str = scratch;
+		str.setLength(0);
+		str.append('"');
+		return tryReadString(str, next());
+	}
 
-		char ch = next();
+	/**
+	 * Continue reading a string whose start is already in str, starting with the character ch
+	 */
+	private String tryReadString(StringBuilder str, char ch) throws JSONException {
+		readString(str, ch);
+		return str.toString();
+	}
+
+	/**
+	 * Append the rest of a string, up to and including its closing '"', to str, which contains
+	 * its start
+	 */
+	private void readString(StringBuilder str, char ch) throws JSONException {
 		while (!EOF) {
-			if (ch == '\\') {
-				str.append(tryReadEscape());
+			if (ch == '"') {
+				str.append('"');
+				return;
+			}
+			else if (str.length() > maxStringLength) { //the length includes the opening '"'
+				throw newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "a string is longer than " + maxStringLength + " chars");
 			}
-			else if (ch == '"') {
-				return str.append('"').toString();
+			else if (ch == '\\') {
+				str.append(tryReadEscape());
 			}
 			else if (Character.isISOControl(ch)) {
-				throw newSyntaxError("a JSON string cannot contain control character (e.g. \\t): " + ch);
+				throw newSyntaxError(JSONParseResult.Error.INVALID_STRING, "a JSON string cannot contain control character (e.g. \\t): " + ch);
 			}
 			else {
 				str.append(ch);
@@ -205,7 +691,7 @@ public class JSONTokener implements AutoCloseable {
 		}
 
 		//only reached if EOF (end of reader/stream) is reached
-		throw newSyntaxError("missing closing '\"' -> " + str.toString());
+		throw newSyntaxError(JSONParseResult.Error.UNEXPECTED_END, "missing closing '\"' -> " + str.toString());
 	}
 
 	/**
@@ -229,14 +715,9 @@ public class JSONTokener implements AutoCloseable {
 		case 't':
 			return '\t';
 		case 'u':
-			char[] str = new char[4];
-			for (int i = 0; i < 4; i++) {
-				str[i] = next();
-			}
-
 			int num = 0;
 			for (int i = 0; i < 4; i++) {
-				char c = str[i];
+				char c = next();
 				if (isASCIIDigit(c)) {
 					num += (c - 48) << (12 - i * 4);
 				}
@@ -244,12 +725,12 @@ public class JSONTokener implements AutoCloseable {
 					num += (c - 55) << (12 - i * 4);
 				}
 				else {
-					throw newSyntaxError("invalid unicode character '\\u" + new String(str) + "'");
+					throw newSyntaxError(JSONParseResult.Error.INVALID_STRING, "invalid hex digit '" + c + "' in unicode escape sequence");
 				}
 			}
 			return (char) num;
 		default:
-			throw newSyntaxError("invalid escape sequence \\" + ch +
+			throw newSyntaxError(JSONParseResult.Error.INVALID_STRING, "invalid escape sequence \\" + ch +
 			      ", valid escape sequences are \\b\\f\\n\\r\\t\\/\\\"\\\\");
 		}
 	}
@@ -258,24 +739,30 @@ public class JSONTokener implements AutoCloseable {
 	 * Try read a number and will throw JSONException if a syntax error is found.
 	 */
 	private String tryReadNumber(char ch) throws JSONException {
-		StringBuilder str = new StringBuilder().append(ch);
+		readNumber(ch);
+		return scratch.toString();
+	}
+
+	/**
+	 * Read a number starting with ch into the scratch builder
+	 */
+	private void readNumber(char ch) throws JSONException {
+		StringBuilder str = scratch;
+		str.setLength(0);
+		str.append(ch);
 
 		//'-' should be followed by a digit
 		if (ch == '-') {
 			ch = next();
 			if (!isASCIIDigit(ch)) {
-				throw newSyntaxError("expects numeric character after '-', but it is not found");
+				throw newSyntaxError(JSONParseResult.Error.INVALID_NUMBER, "expects numeric character after '-', but it is not found");
 			}
 			str.append(ch);
 		}
 		
 		//if digit is not a zero, we can go with more digits
 		if (ch != '0') {
-			ch = next();
-			while (isASCIIDigit(ch)) {
-				str.append(ch);
-				ch = next();
-			}
+			ch = readDigits(str, next());
 		}
 		else {
 			ch = next();
@@ -287,13 +774,9 @@ public class JSONTokener implements AutoCloseable {
 
 			ch = next();
 			if (!isASCIIDigit(ch)) {
-				throw newSyntaxError("expects numeric character after '.', but it is not found");
-			}
-
-			while (isASCIIDigit(ch)) {
-				str.append(ch);
-				ch = next();
+				throw newSyntaxError(JSONParseResult.Error.INVALID_NUMBER, "expects numeric character after '.', but it is not found");
 			}
+			ch = readDigits(str, ch);
 		}
 
 		//if there is a scientific notation, read it
@@ -306,24 +789,36 @@ public class JSONTokener implements AutoCloseable {
 				str.append(ch);
 				ch = next();
 				if (!isASCIIDigit(ch)) {
-					throw newSyntaxError("expects numeric character after '" + ch + 
+					throw newSyntaxError(JSONParseResult.Error.INVALID_NUMBER, "expects numeric character after '" + ch + 
 					                     "', but it is not found");
 				}
 			}
 			else if (!isASCIIDigit(ch)) {
-				throw newSyntaxError("expects numeric character after '" + ch + 
+				throw newSyntaxError(JSONParseResult.Error.INVALID_NUMBER, "expects numeric character after '" + ch + 
 				                     "', but it is not found");
 			}
-
-			while (isASCIIDigit(ch)) {
-				str.append(ch);
-				ch = next();
-			}
+			ch = readDigits(str, ch);
+		}
+		if (str.length() > maxNumberLength) {
+			throw newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "a number is longer than " + maxNumberLength + " chars");
 		}
 
 		//push back the extra character
-		pushback = ch;
-		return str.toString();
+		back();
+	}
+
+	/**
+	 * Append the digits starting with ch to a number, returns the char after them
+	 */
+	private char readDigits(StringBuilder str, char ch) throws JSONException {
+		while (isASCIIDigit(ch)) {
+			if (str.length() >= maxNumberLength) {
+				throw newSyntaxError(JSONParseResult.Error.LIMIT_EXCEEDED, "a number is longer than " + maxNumberLength + " chars");
+			}
+			str.append(ch);
+			ch = next();
+		}
+		return ch;
 	}
 
 	private String tryReadSymbol(char ch) throws JSONException {
@@ -341,7 +836,7 @@ public class JSONTokener implements AutoCloseable {
 		case ']':
 			return RIGHT_SQUARE;
 		}
-		throw newSyntaxError("Unrecognized symbol starting with '" + ch + "'");
+		throw newSyntaxError(JSONParseResult.Error.INVALID_TOKEN, "Unrecognized symbol starting with '" + ch + "'");
 	}
 	
 	/**
@@ -351,7 +846,7 @@ public class JSONTokener implements AutoCloseable {
 		if (next() == 'r' && next() == 'u' && next() == 'e') {
 			return TRUE;
 		}
-		throw newSyntaxError("Unrecognized symbol starting with 't'");
+		throw newSyntaxError(JSONParseResult.Error.INVALID_TOKEN, "Unrecognized symbol starting with 't'");
 	}
 
 	/**
@@ -361,7 +856,7 @@ public class JSONTokener implements AutoCloseable {
 		if (next() == 'a' && next() == 'l' && next() == 's' && next() == 'e') {
 			return FALSE;
 		}
-		throw newSyntaxError("Unrecognized symbol starting with 'f'");
+		throw newSyntaxError(JSONParseResult.Error.INVALID_TOKEN, "Unrecognized symbol starting with 'f'");
 	}
 
 	/**
@@ -371,29 +866,22 @@ public class JSONTokener implements AutoCloseable {
 		if (next() == 'u' && next() == 'l' && next() == 'l') {
 			return NULL;
 		}
-		throw newSyntaxError("Unrecognized symbol starting with 'n'");
+		throw newSyntaxError(JSONParseResult.Error.INVALID_TOKEN, "Unrecognized symbol starting with 'n'");
 	}
 
 
 	/**
-	 * determine whether a character is a new line -> see "http://en.wikipedia.org/wiki/Newline"
-	 * and "http://download.oracle.com/javase/6/docs/api/java/lang/Character.html#isWhitespace(char)"
+	 * Check whether a character is whitespace between tokens
 	 */
-	private boolean isNewLine(char ch) throws JSONException {
-		if (ch == '\r') {
-			ch = next();
-			if (ch == '\n') {
-				return true;
-			}
-			else {
-				pushback = ch;
-			}
-		}
-		else if (ch == '\n' || ch == '\f' || ch == '\u000B'
-		        || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
-			return  true;
-		}
-		return false;
+	static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t' || Character.isWhitespace(ch) || ch == '\u0085';
+	}
+
+	/**
+	 * Check whether a character ends a line, a "\r\n" is counted by its '\n'
+	 */
+	private static boolean isLineBreak(char ch) {
+		return ch == '\n' || ch == '\f' || ch == '\u000B' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
 	}
 
 	/**
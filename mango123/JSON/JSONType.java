@@ -0,0 +1,28 @@
+package mango123.JSON;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Marks a class for which a {@link JSONCodec} is generated at compile time by
+ * <code>mango123.JSON.processor.JSONCodecProcessor</code>.</p>
+ * <p>The codec of a class <code>Point</code> is generated as <code>PointJSONCodec</code> in the
+ * same package (<code>Outer_InnerJSONCodec</code> for a static nested class), and its instance is
+ * <code>PointJSONCodec.INSTANCE</code>. It reads and writes every field of the class that is not
+ * static, transient or private, using the field name as the key. The class needs a constructor
+ * without parameters that is not private.</p>
+ * <p>The supported field types are the primitives <code>boolean</code>, <code>int</code>,
+ * <code>long</code> and <code>double</code>, their wrapper classes, <code>String</code>,
+ * <code>BigInteger</code>, <code>BigDecimal</code>, <code>JSONObject</code>, <code>JSONArray</code>,
+ * other classes marked with <code>JSONType</code>, and a <code>java.util.List</code> of any of
+ * these types except the primitives.</p>
+ * @see JSONCodec
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JSONType {
+}
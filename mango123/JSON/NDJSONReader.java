@@ -0,0 +1,372 @@
+package mango123.JSON;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Reads a stream of JSON objects one after another, such as newline delimited JSON (NDJSON)
+ * records, and specializes itself for streams whose records all have the same shape.</p>
+ * <p>The first records are parsed as usual and used as a sample. If all of them have the same
+ * keys in the same order, and each key always has a value of the same type, the reader infers
+ * that record shape and parses the following records with it: each key is compared with the
+ * expected key as it is read, without building a token or looking it up, and each value is
+ * decoded directly as the expected type. A record that deviates from the shape (a different key,
+ * a missing or extra key, or a value of another type) is finished on the generic path from the
+ * point where it deviated, so the result is always the same as {@link JSONObject#parse}.</p>
+ * <p>If most of the records stop matching the shape, the reader goes back to sampling and infers
+ * a new one.</p>
+ * <p>e.g. {@code while ((ob = reader.next()) != null) ...}</p>
+ * @see JSONObject
+ */
+public final class NDJSONReader implements AutoCloseable {
+	/**
+	 * Number of records sampled before a shape is inferred, unless specified
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 64;
+
+	/**
+	 * Inferred types of the values
+	 */
+	private static final int ANY = 0, STRING = 1, INTEGER = 2, DOUBLE = 3, BOOLEAN = 4;
+
+	private final JSONTokener tokener;
+	private final int sampleSize;
+
+	/**
+	 * Records sampled so far, null once a shape has been inferred
+	 */
+	private List<Map<String, Object>> samples = new ArrayList<Map<String, Object>>();
+
+	/**
+	 * The inferred shape, null while sampling or if the records have no common shape
+	 */
+	private String[] keys;
+	private int[] types;
+
+	/**
+	 * Records read since the shape was inferred, and the ones that deviated from it
+	 */
+	private int specializedCount;
+	private int deviationCount;
+
+	/**
+	 * Constructs a <code>NDJSONReader</code> that samples {@link #DEFAULT_SAMPLE_SIZE} records.
+	 * @param tokener the JSON input
+	 */
+	public NDJSONReader(JSONTokener tokener) {
+		this(tokener, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Constructs a <code>NDJSONReader</code> that samples the specified number of records before
+	 * inferring their shape.
+	 * @param tokener the JSON input
+	 * @param sampleSize the number of records sampled, at least 1
+	 */
+	public NDJSONReader(JSONTokener tokener, int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("sampleSize must be at least 1");
+		}
+		this.tokener = tokener;
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Reads the next record.
+	 * @return the next record, or <code>null</code> if the end of the input has been reached
+	 * @throws JSONException if any syntax error is encountered or a value is not a JSON object
+	 */
+	public JSONObject next() throws JSONException {
+		String token = tokener.nextToken();
+		if (token == null) {
+			return null;
+		}
+		if (token != JSONTokener.LEFT_BRACE) {
+			throw tokener.newSyntaxError("JSON object needs to start with '{");
+		}
+
+		if (keys == null) {
+			Map<String, Object> map = JSONParse.parseObject(tokener);
+			if (samples != null) {
+				sample(map);
+			}
+			return new JSONObject(map);
+		}
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>(keys.length * 4 / 3 + 1);
+		if (!parseSpecialized(map)) {
+			deviationCount++;
+		}
+		if (++specializedCount == sampleSize) {
+			//most of the records deviate from the shape, infer a new one
+			if (deviationCount * 2 > sampleSize) {
+				keys = null;
+				types = null;
+				samples = new ArrayList<Map<String, Object>>();
+			}
+			specializedCount = 0;
+			deviationCount = 0;
+		}
+		return new JSONObject(map);
+	}
+
+	/**
+	 * Returns <code>true</code> if a record shape has been inferred and the records are parsed
+	 * with it.
+	 * @return <code>true</code> if the reader is specialized
+	 */
+	public boolean isSpecialized() {
+		return keys != null;
+	}
+
+	/**
+	 * Closes the tokener.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		tokener.close();
+	}
+
+	/**
+	 * Add a sampled record, and infer the shape once there are enough samples
+	 */
+	private void sample(Map<String, Object> map) {
+		samples.add(map);
+		if (samples.size() < sampleSize) {
+			return;
+		}
+
+		List<Map<String, Object>> sampled = samples;
+		samples = null;
+
+		Map<String, Object> first = sampled.get(0);
+		String[] k = first.keySet().toArray(new String[first.size()]);
+		int[] t = new int[k.length];
+		for (int i = 0; i < k.length; i++) {
+			if (!isPlainKey(k[i])) {
+				return;
+			}
+			t[i] = typeOf(first.get(k[i]));
+		}
+
+		for (Map<String, Object> m : sampled) {
+			if (m.size() != k.length) {
+				return;
+			}
+			int i = 0;
+			for (Map.Entry<String, Object> e : m.entrySet()) {
+				if (!e.getKey().equals(k[i])) {
+					return;
+				}
+				if (t[i] != typeOf(e.getValue())) {
+					t[i] = ANY;
+				}
+				i++;
+			}
+		}
+		keys = k;
+		types = t;
+	}
+
+	/**
+	 * Keys that can be compared by JSONTokener.nextKey()
+	 */
+	private static boolean isPlainKey(String key) {
+		for (int i = 0; i < key.length(); i++) {
+			char ch = key.charAt(i);
+			if (ch == '"' || ch == '\\' || Character.isISOControl(ch)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int typeOf(Object value) {
+		if (value instanceof String) {
+			return STRING;
+		}
+		else if (value instanceof Integer || value instanceof Long) {
+			return INTEGER;
+		}
+		else if (value instanceof Double) {
+			return DOUBLE;
+		}
+		else if (value instanceof Boolean) {
+			return BOOLEAN;
+		}
+		return ANY;
+	}
+
+	/**
+	 * Parse a record with the inferred shape, assuming the '{' has been read. Returns false if it
+	 * deviated from the shape and was finished on the generic path.
+	 */
+	private boolean parseSpecialized(Map<String, Object> map) throws JSONException {
+		int last = keys.length - 1;
+		if (last == -1) {
+			//the records are empty
+			String token = tokener.nextToken();
+			if (token == JSONTokener.RIGHT_BRACE) {
+				return true;
+			}
+			else if (token == null || token.charAt(0) != '"') {
+				throw tokener.newSyntaxError("missing key");
+			}
+			parseGeneric(map, tokener.toKey(token));
+			return false;
+		}
+		for (int i = 0; i <= last; i++) {
+			String key = tokener.nextKey(keys[i]);
+			if (key != keys[i]) {
+				if (key == null) {
+					//an empty record is the only valid way to get here
+					if (i == 0 && tokener.nextToken() == JSONTokener.RIGHT_BRACE) {
+						return false;
+					}
+					throw tokener.newSyntaxError("missing key");
+				}
+				parseGeneric(map, key);
+				return false;
+			}
+
+			if (tokener.nextToken() != JSONTokener.COLON) {
+				throw tokener.newSyntaxError("missing ':'");
+			}
+			JSONParse.put(map, key, readValue(types[i]), tokener);
+
+			String token = tokener.nextToken();
+			if (token == JSONTokener.RIGHT_BRACE) {
+				return i == last;
+			}
+			else if (token != JSONTokener.COMMA) {
+				throw tokener.newSyntaxError("missing '}'");
+			}
+			else if (i == last) {
+				//more keys than expected
+				token = tokener.nextToken();
+				if (token == null || token.charAt(0) != '"') {
+					throw tokener.newSyntaxError("missing key");
+				}
+				parseGeneric(map, tokener.toKey(token));
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finish a record on the generic path, starting with a key that has been read
+	 */
+	private void parseGeneric(Map<String, Object> map, String key) throws JSONException {
+		while (true) {
+			if (tokener.nextToken() != JSONTokener.COLON) {
+				throw tokener.newSyntaxError("missing ':'");
+			}
+			JSONParse.put(map, key, JSONParse.toCorrespondingPOJO(tokener.nextToken(), tokener), tokener);
+
+			String token = tokener.nextToken();
+			if (token == JSONTokener.RIGHT_BRACE) {
+				return;
+			}
+			else if (token != JSONTokener.COMMA) {
+				throw tokener.newSyntaxError("missing '}'");
+			}
+
+			token = tokener.nextToken();
+			if (token == null || token.charAt(0) != '"') {
+				throw tokener.newSyntaxError("missing key");
+			}
+			key = tokener.toKey(token);
+		}
+	}
+
+	/**
+	 * Read a value expecting the type, decoding it the same way as JSONParse.toCorrespondingPOJO().
+	 * Numbers are only decoded here with the default policy.
+	 */
+	private Object readValue(int type) throws JSONException {
+		String token = tokener.nextToken();
+		if (token != null) {
+			switch (type) {
+			case STRING:
+				if (token.charAt(0) == '"') {
+					return token.substring(1, token.length() - 1);
+				}
+				break;
+			case INTEGER:
+				if (tokener.getNumberPolicy() != JSONNumberPolicy.AUTO) {
+					break;
+				}
+				Object integer = parseInteger(token);
+				if (integer != null) {
+					return integer;
+				}
+				break;
+			case DOUBLE:
+				if (tokener.getNumberPolicy() != JSONNumberPolicy.AUTO) {
+					break;
+				}
+				Object num = parseDouble(token);
+				if (num != null) {
+					return num;
+				}
+				break;
+			case BOOLEAN:
+				if (token == JSONTokener.TRUE) {
+					return Boolean.TRUE;
+				}
+				else if (token == JSONTokener.FALSE) {
+					return Boolean.FALSE;
+				}
+				break;
+			}
+		}
+		return JSONParse.toCorrespondingPOJO(token, tokener);
+	}
+
+	/**
+	 * Decode an integer of up to 18 digits into an Integer or a Long without the trial and error
+	 * of JSONParse.parseNumber(), or return null if the token is anything else
+	 */
+	private static Object parseInteger(String token) {
+		int length = token.length();
+		boolean negative = token.charAt(0) == '-';
+		int i = negative ? 1 : 0;
+		if (length - i > 18 || i == length) {
+			return null;
+		}
+
+		long value = 0;
+		for (; i < length; i++) {
+			char ch = token.charAt(i);
+			if (ch < '0' || ch > '9') {
+				return null;
+			}
+			value = value * 10 + (ch - '0');
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+
+	/**
+	 * Decode a number with a fraction or an exponent into a Double, or return null if the token
+	 * is anything else or the Double would be infinite
+	 */
+	private static Object parseDouble(String token) {
+		char id = token.charAt(0);
+		if (!(id == '-' || (id >= '0' && id <= '9'))
+		    || (token.indexOf('.') == -1 && token.indexOf('e') == -1 && token.indexOf('E') == -1)) {
+			return null;
+		}
+		Double num = Double.valueOf(token);
+		return num.isInfinite() ? null : num;
+	}
+}
@@ -0,0 +1,35 @@
+package mango123.JSON.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the JMH benchmarks over the corpus in {@link Corpus#DEFAULT_DIRECTORY}, with the GC
+ * profiler, so every result has:</p>
+ * <ul>
+ * <li>the score in ops/s</li>
+ * <li><code>megabytes</code>: MB/s of input (output for {@link SerializeBenchmark})</li>
+ * <li><code>gc.alloc.rate.norm</code>: the bytes allocated per op</li>
+ * </ul>
+ * <p>The benchmarks need the JMH core and annotation processor on the class path when they are
+ * compiled, and are run from the repository root:</p>
+ * <pre>
+ * javac -cp jmh-core.jar:jmh-generator-annprocess.jar -d bench mango123/JSON/*.java mango123/JSON/benchmarks/*.java
+ * java -cp jmh-core.jar:jopt-simple.jar:commons-math3.jar:bench mango123.JSON.benchmarks.Benchmarks [regex]
+ * </pre>
+ * <p>The regex selects the benchmarks, e.g. <code>Parse</code>. The usual JMH command line works
+ * as well: <code>org.openjdk.jmh.Main -prof gc</code>.</p>
+ */
+public final class Benchmarks {
+	private Benchmarks() {}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "";
+		new Runner(new OptionsBuilder()
+		        .include(Benchmarks.class.getPackage().getName() + ".*" + include)
+		        .addProfiler(GCProfiler.class)
+		        .build()).run();
+	}
+}
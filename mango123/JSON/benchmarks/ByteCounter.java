@@ -0,0 +1,30 @@
+package mango123.JSON.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the bytes processed by a benchmark. JMH reports it as a rate next to the score, so
+ * <code>megabytes 250.3 ops/s</code> reads as 250.3 MB/s of UTF-8 input or output.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ByteCounter {
+	private long bytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		bytes = 0;
+	}
+
+	void add(long n) {
+		bytes += n;
+	}
+
+	public double megabytes() {
+		return bytes / 1e6;
+	}
+}
@@ -0,0 +1,28 @@
+package mango123.JSON.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Loads the documents of the benchmark corpus, generated by {@link CorpusGenerator}. The corpus is
+ * read from the directory in the system property <code>corpus.dir</code>, or from
+ * {@link #DEFAULT_DIRECTORY} relative to the working directory.
+ */
+public final class Corpus {
+	private Corpus() {}
+
+	public static final String DEFAULT_DIRECTORY = "mango123/JSON/benchmarks/corpus";
+
+	/**
+	 * Reads a corpus document.
+	 * @param name the file name, one of {@link CorpusGenerator#NAMES}
+	 * @return the document
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String read(String name) throws IOException {
+		File file = new File(System.getProperty("corpus.dir", DEFAULT_DIRECTORY), name);
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,62 @@
+package mango123.JSON.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTokener;
+
+/**
+ * The settings shared by the benchmarks, which run once for each document of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class CorpusBenchmark {
+	@Param({"twitter.json", "canada.json", "citm_catalog.json", "numbers.json", "strings.json", "nested.json"})
+	public String file;
+
+	protected String input;
+
+	/**
+	 * The UTF-8 length of the input
+	 */
+	protected int bytes;
+
+	@Setup
+	public void load() throws IOException, JSONException {
+		input = Corpus.read(file);
+		bytes = input.getBytes(StandardCharsets.UTF_8).length;
+		prepare();
+	}
+
+	/**
+	 * Prepare what the benchmark needs from the input, after it has been loaded
+	 */
+	protected void prepare() throws JSONException {}
+
+	/**
+	 * Parses the input, which is an object or an array
+	 */
+	protected Object parse() throws JSONException {
+		JSONTokener tokener = new JSONTokener(input);
+		return input.charAt(0) == '[' ? JSONArray.parse(tokener) : JSONObject.parse(tokener);
+	}
+}
@@ -0,0 +1,271 @@
+package mango123.JSON.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.FileOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * <p>Generates the benchmark corpus: documents shaped like the usual JSON benchmark files, each a
+ * few hundred KB. The same documents are generated every time, so the checked-in corpus can be
+ * regenerated if the generator changes.</p>
+ * <ul>
+ * <li>twitter.json: tweets with users and entities, mostly strings, with unicode and escapes</li>
+ * <li>canada.json: a GeoJSON polygon, arrays of coordinate pairs with 15-17 significant digits</li>
+ * <li>citm_catalog.json: events and performances keyed by numeric ids, mostly integers</li>
+ * <li>numbers.json: integers, longs, big integers, decimals and exponents</li>
+ * <li>strings.json: long strings with escape sequences and non-ASCII chars</li>
+ * <li>nested.json: deeply nested objects and arrays</li>
+ * </ul>
+ * <p>Usage: {@code java mango123.JSON.benchmarks.CorpusGenerator [directory]}</p>
+ */
+public final class CorpusGenerator {
+	private CorpusGenerator() {}
+
+	public static final String[] NAMES = {
+		"twitter.json", "canada.json", "citm_catalog.json", "numbers.json", "strings.json", "nested.json"
+	};
+
+	private static final String[] WORDS = {
+		"the", "JSON", "parser", "\u65e5\u672c\u8a9e", "caf\u00e9", "\ud83d\ude00", "stream", "token", "a \"quote\"",
+		"line\nbreak", "tab\tstop", "back\\slash", "http://example.com/path", "\u00fc\u00f1\u00ee\u00e7\u00f8d\u00e9",
+		"value", "object", "array", "number", "\u0432\u0435\u0442\u0435\u0440", "\u2603"
+	};
+
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : Corpus.DEFAULT_DIRECTORY);
+		dir.mkdirs();
+		for (String name : NAMES) {
+			Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir, name)), StandardCharsets.UTF_8);
+			try {
+				w.write(generate(name));
+			} finally {
+				w.close();
+			}
+		}
+	}
+
+	/**
+	 * Generates the document of the specified corpus file
+	 */
+	public static String generate(String name) {
+		Random random = new Random(name.hashCode());
+		StringBuilder b = new StringBuilder();
+		if (name.equals("twitter.json")) {
+			twitter(b, random);
+		}
+		else if (name.equals("canada.json")) {
+			canada(b, random);
+		}
+		else if (name.equals("citm_catalog.json")) {
+			citm(b, random);
+		}
+		else if (name.equals("numbers.json")) {
+			numbers(b, random);
+		}
+		else if (name.equals("strings.json")) {
+			strings(b, random);
+		}
+		else if (name.equals("nested.json")) {
+			nested(b, random);
+		}
+		else {
+			throw new IllegalArgumentException("unknown corpus file " + name);
+		}
+		return b.append('\n').toString();
+	}
+
+	private static void twitter(StringBuilder b, Random r) {
+		b.append("{\n  \"statuses\": [");
+		for (int i = 0; i < 100; i++) {
+			long id = 505874924095815681L - r.nextInt(1000000);
+			b.append(i == 0 ? "\n" : ",\n");
+			b.append("    {\"created_at\": \"Sun Aug 31 00:29:15 +0000 2014\", \"id\": ").append(id);
+			b.append(", \"id_str\": \"").append(id).append("\", \"text\": ");
+			string(b, sentence(r, 8 + r.nextInt(12)));
+			b.append(", \"source\": \"<a href=\\\"http://twitter.com\\\" rel=\\\"nofollow\\\">Twitter</a>\"");
+			b.append(", \"truncated\": false, \"in_reply_to_status_id\": null, \"in_reply_to_user_id\": ");
+			b.append(r.nextBoolean() ? "null" : String.valueOf(r.nextInt(Integer.MAX_VALUE)));
+			b.append(",\n     \"user\": {\"id\": ").append(r.nextInt(Integer.MAX_VALUE)).append(", \"name\": ");
+			string(b, sentence(r, 2));
+			b.append(", \"screen_name\": \"user_").append(r.nextInt(100000)).append("\", \"location\": ");
+			string(b, sentence(r, 1));
+			b.append(", \"description\": ");
+			string(b, sentence(r, 5 + r.nextInt(15)));
+			b.append(", \"url\": null, \"protected\": false, \"followers_count\": ").append(r.nextInt(100000));
+			b.append(", \"friends_count\": ").append(r.nextInt(5000)).append(", \"listed_count\": ").append(r.nextInt(100));
+			b.append(", \"created_at\": \"Fri Jul 25 03:15:17 +0000 2014\", \"favourites_count\": ").append(r.nextInt(10000));
+			b.append(", \"utc_offset\": null, \"verified\": ").append(r.nextInt(10) == 0);
+			b.append(", \"lang\": \"ja\", \"profile_background_color\": \"C0DEED\"");
+			b.append(", \"profile_image_url\": \"http:\\/\\/pbs.twimg.com\\/profile_images\\/").append(r.nextInt(1000000000)).append("\\/normal.jpeg\"}");
+			b.append(",\n     \"geo\": null, \"coordinates\": null, \"place\": null, \"retweet_count\": ").append(r.nextInt(1000));
+			b.append(", \"favorite_count\": ").append(r.nextInt(1000));
+			b.append(",\n     \"entities\": {\"hashtags\": [");
+			for (int h = r.nextInt(3); h > 0; h--) {
+				int start = r.nextInt(100);
+				b.append("{\"text\": ");
+				string(b, WORDS[r.nextInt(WORDS.length)]);
+				b.append(", \"indices\": [").append(start).append(", ").append(start + 5).append("]}").append(h > 1 ? ", " : "");
+			}
+			b.append("], \"symbols\": [], \"urls\": [], \"user_mentions\": [");
+			for (int m = r.nextInt(3); m > 0; m--) {
+				b.append("{\"screen_name\": \"user_").append(r.nextInt(100000)).append("\", \"id\": ").append(r.nextInt(Integer.MAX_VALUE));
+				b.append(", \"indices\": [0, 12]}").append(m > 1 ? ", " : "");
+			}
+			b.append("]}, \"favorited\": false, \"retweeted\": false, \"lang\": \"ja\"}");
+		}
+		b.append("\n  ],\n  \"search_metadata\": {\"completed_in\": 0.087, \"max_id\": 505874924095815681, ");
+		b.append("\"query\": \"%E4%B8%80\", \"count\": 100, \"since_id\": 0}\n}");
+	}
+
+	private static void canada(StringBuilder b, Random r) {
+		b.append("{\"type\": \"FeatureCollection\", \"features\": [{\"type\": \"Feature\", \"properties\": {\"name\": \"Canada\"}, ");
+		b.append("\"geometry\": {\"type\": \"Polygon\", \"coordinates\": [");
+		for (int ring = 0; ring < 8; ring++) {
+			b.append(ring == 0 ? "\n[" : ",\n[");
+			double x = -65 - r.nextDouble() * 60, y = 43 + r.nextDouble() * 30;
+			for (int i = 0; i < 900; i++) {
+				x += r.nextGaussian() * 0.01;
+				y += r.nextGaussian() * 0.01;
+				b.append(i == 0 ? "[" : ",[").append(x).append(',').append(y).append(']');
+			}
+			b.append(']');
+		}
+		b.append("]}}]}");
+	}
+
+	private static void citm(StringBuilder b, Random r) {
+		b.append("{\n\"areaNames\": {");
+		for (int i = 0; i < 40; i++) {
+			b.append(i == 0 ? "\n  " : ",\n  ").append('"').append(205705993 + i * 2).append("\": ");
+			string(b, "Arri\u00e8re-sc\u00e8ne " + WORDS[r.nextInt(WORDS.length)]);
+		}
+		b.append("},\n\"events\": {");
+		for (int i = 0; i < 300; i++) {
+			int id = 138586341 + i * 4;
+			b.append(i == 0 ? "\n  " : ",\n  ").append('"').append(id).append("\": {\"description\": null, \"id\": ").append(id);
+			b.append(", \"logo\": ").append(r.nextBoolean() ? "null" : "\"/images/UE0AAAAACEKo6QAAAAZDSVRN\"");
+			b.append(", \"name\": ");
+			string(b, sentence(r, 3));
+			b.append(", \"subTopicIds\": [337184269, 337184283], \"subjectCode\": null, \"subtitle\": null, \"topicIds\": [324846099, 107888604]}");
+		}
+		b.append("},\n\"performances\": [");
+		for (int i = 0; i < 250; i++) {
+			b.append(i == 0 ? "\n  " : ",\n  ").append("{\"eventId\": ").append(138586341 + r.nextInt(300) * 4);
+			b.append(", \"id\": ").append(339887544 + i).append(", \"logo\": null, \"name\": null, \"prices\": [");
+			int prices = 1 + r.nextInt(4);
+			for (int p = 0; p < prices; p++) {
+				b.append(p == 0 ? "" : ", ").append("{\"amount\": ").append(9025 * (1 + r.nextInt(20)));
+				b.append(", \"audienceSubCategoryId\": 337100890, \"seatCategoryId\": ").append(338937295 + p).append('}');
+			}
+			b.append("], \"seatCategories\": [");
+			for (int p = 0; p < prices; p++) {
+				b.append(p == 0 ? "" : ", ").append("{\"areas\": [{\"areaId\": ").append(205705993 + r.nextInt(40) * 2);
+				b.append(", \"blockIds\": []}, {\"areaId\": 205705999, \"blockIds\": []}], \"seatCategoryId\": ").append(338937295 + p).append('}');
+			}
+			b.append("], \"seatMapImage\": null, \"start\": ").append(1372701600000L + r.nextInt(100000) * 60000L);
+			b.append(", \"venueCode\": \"PLEYEL_PLEYEL\"}");
+		}
+		b.append("\n]\n}");
+	}
+
+	private static void numbers(StringBuilder b, Random r) {
+		b.append("{\"integers\": [");
+		for (int i = 0; i < 4000; i++) {
+			b.append(i == 0 ? "" : ", ").append(r.nextInt(20000) - 10000);
+		}
+		b.append("],\n\"longs\": [");
+		for (int i = 0; i < 2000; i++) {
+			b.append(i == 0 ? "" : ", ").append(r.nextLong());
+		}
+		b.append("],\n\"big\": [");
+		for (int i = 0; i < 500; i++) {
+			b.append(i == 0 ? "" : ", ").append(Math.abs(r.nextLong())).append(Math.abs(r.nextLong()));
+		}
+		b.append("],\n\"decimals\": [");
+		for (int i = 0; i < 4000; i++) {
+			b.append(i == 0 ? "" : ", ").append(Math.round(r.nextDouble() * 1e6) / 100.0);
+		}
+		b.append("],\n\"exponents\": [");
+		for (int i = 0; i < 2000; i++) {
+			b.append(i == 0 ? "" : ", ").append(r.nextGaussian() * Math.pow(10, r.nextInt(600) - 300));
+		}
+		b.append("]}");
+	}
+
+	private static void strings(StringBuilder b, Random r) {
+		b.append("{\"strings\": [");
+		for (int i = 0; i < 400; i++) {
+			b.append(i == 0 ? "\n" : ",\n");
+			string(b, sentence(r, 20 + r.nextInt(60)));
+		}
+		b.append("],\n\"ascii\": [");
+		for (int i = 0; i < 200; i++) {
+			b.append(i == 0 ? "\n" : ",\n").append('"');
+			for (int n = 100 + r.nextInt(400); n > 0; n--) {
+				b.append((char) ('a' + r.nextInt(26)));
+			}
+			b.append('"');
+		}
+		b.append("]}");
+	}
+
+	private static void nested(StringBuilder b, Random r) {
+		b.append('[');
+		for (int i = 0; i < 60; i++) {
+			b.append(i == 0 ? "\n" : ",\n");
+			int depth = 50 + r.nextInt(150);
+			for (int d = 0; d < depth; d++) {
+				b.append(d % 2 == 0 ? "{\"level\": " + d + ", \"child\": " : "[" + d + ", ");
+			}
+			b.append("null");
+			for (int d = depth - 1; d >= 0; d--) {
+				b.append(d % 2 == 0 ? '}' : ']');
+			}
+		}
+		b.append("\n]");
+	}
+
+	private static String sentence(Random r, int words) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			s.append(i == 0 ? "" : " ").append(WORDS[r.nextInt(WORDS.length)]);
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Append a JSON string, escaping the chars that need it and some non-ASCII ones as \\uXXXX
+	 */
+	static void string(StringBuilder b, String s) {
+		b.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			switch (ch) {
+			case '"':
+				b.append("\\\"");
+				break;
+			case '\\':
+				b.append("\\\\");
+				break;
+			case '\n':
+				b.append("\\n");
+				break;
+			case '\t':
+				b.append("\\t");
+				break;
+			default:
+				if (ch < 0x20 || (ch >= 0x400 && ch < 0x500)) {
+					b.append(String.format("\\u%04X", (int) ch));
+				}
+				else {
+					b.append(ch);
+				}
+			}
+		}
+		b.append('"');
+	}
+}
@@ -0,0 +1,41 @@
+package mango123.JSON.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONTokener;
+
+/**
+ * Throughput of JSONTokener.escapeStr() over every string and key of a document.
+ */
+public class EscapeBenchmark extends CorpusBenchmark {
+	private String[] strings;
+	private int stringBytes;
+
+	@Override
+	protected void prepare() throws JSONException {
+		List<String> list = new ArrayList<String>();
+		JSONTokener tokener = new JSONTokener(input);
+		for (String token = tokener.nextToken(); token != null; token = tokener.nextToken()) {
+			if (token.charAt(0) == '"') {
+				String s = token.substring(1, token.length() - 1);
+				list.add(s);
+				stringBytes += s.getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		strings = list.toArray(new String[list.size()]);
+	}
+
+	@Benchmark
+	public void escapeStr(ByteCounter counter, Blackhole bh) {
+		for (String s : strings) {
+			bh.consume(JSONTokener.escapeStr(s));
+		}
+		counter.add(stringBytes);
+	}
+}
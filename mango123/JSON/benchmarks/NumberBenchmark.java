@@ -0,0 +1,56 @@
+package mango123.JSON.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONTokener;
+
+/**
+ * Throughput of JSONParse.parseNumber() over every number token of a document. JSONParse is
+ * package-private, so it is called through a constant method handle, which the JIT inlines.
+ */
+public class NumberBenchmark extends CorpusBenchmark {
+	private static final MethodHandle PARSE_NUMBER;
+
+	static {
+		try {
+			Method m = Class.forName("mango123.JSON.JSONParse").getDeclaredMethod("parseNumber", String.class);
+			m.setAccessible(true);
+			PARSE_NUMBER = MethodHandles.lookup().unreflect(m);
+		} catch(ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private String[] numbers;
+	private int numberBytes;
+
+	@Override
+	protected void prepare() throws JSONException {
+		List<String> list = new ArrayList<String>();
+		JSONTokener tokener = new JSONTokener(input);
+		for (String token = tokener.nextToken(); token != null; token = tokener.nextToken()) {
+			char ch = token.charAt(0);
+			if (ch == '-' || (ch >= '0' && ch <= '9')) {
+				list.add(token);
+				numberBytes += token.length();
+			}
+		}
+		numbers = list.toArray(new String[list.size()]);
+	}
+
+	@Benchmark
+	public void parseNumber(ByteCounter counter, Blackhole bh) throws Throwable {
+		for (String token : numbers) {
+			bh.consume((Object) PARSE_NUMBER.invokeExact(token));
+		}
+		counter.add(numberBytes);
+	}
+}
@@ -0,0 +1,17 @@
+package mango123.JSON.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import mango123.JSON.JSONException;
+
+/**
+ * Throughput of JSONObject.parse() and JSONArray.parse().
+ */
+public class ParseBenchmark extends CorpusBenchmark {
+	@Benchmark
+	public Object parse(ByteCounter counter) throws JSONException {
+		Object value = parse();
+		counter.add(bytes);
+		return value;
+	}
+}
@@ -0,0 +1,335 @@
+package mango123.JSON.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTokener;
+
+/**
+ * <p>Measures how parsing and serializing scale with the size and shape of the document and with
+ * the number of threads, over documents from {@link SyntheticGenerator}.</p>
+ * <p>Each combination of the settings is run for a fixed time, with every thread parsing (or
+ * serializing) the same document over and over. The results are one row per run, in CSV or JSON:</p>
+ * <ul>
+ * <li><code>mbPerSecond</code>: MB/s of UTF-8 input (or output) across all the threads</li>
+ * <li><code>peakHeapMB</code>: the peak heap used during the run, including the input and the
+ * parsed document</li>
+ * <li><code>gcMillis</code> and <code>gcCount</code>: the GC time and collections during the run</li>
+ * </ul>
+ * <p>The settings are <code>name=value</code> arguments, where a list is comma separated and
+ * sizes take a K, M or G suffix:</p>
+ * <pre>
+ * java -Xmx8g mango123.JSON.benchmarks.ScalingHarness sizes=1K,1M,64M,2G depths=2,16 threads=1,4 format=json out=scaling.json
+ * </pre>
+ * <p>Documents larger than <code>inMemory</code> (256M by default) are written to a temporary
+ * file and parsed from it, since they do not fit in a String.</p>
+ */
+public final class ScalingHarness {
+	private ScalingHarness() {}
+
+	private static final String[] COLUMNS = {
+		"operation", "type", "bytes", "depth", "width", "stringRatio", "escapeDensity", "threads",
+		"ops", "seconds", "mbPerSecond", "peakHeapMB", "gcMillis", "gcCount"
+	};
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> settings = new LinkedHashMap<String, String>();
+		settings.put("types", "array,object");
+		settings.put("sizes", "1K,1M,16M");
+		settings.put("depths", "2,8");
+		settings.put("widths", "8");
+		settings.put("strings", "0.5");
+		settings.put("escapes", "0.02");
+		settings.put("threads", "1,2,4");
+		settings.put("seconds", "2");
+		settings.put("seed", "1");
+		settings.put("inMemory", "256M");
+		settings.put("format", "csv");
+		settings.put("out", "-");
+		for (String arg : args) {
+			int i = arg.indexOf('=');
+			if (i == -1 || !settings.containsKey(arg.substring(0, i))) {
+				throw new IllegalArgumentException("unknown setting " + arg + ", the settings are " + settings.keySet());
+			}
+			settings.put(arg.substring(0, i), arg.substring(i + 1));
+		}
+
+		double seconds = Double.parseDouble(settings.get("seconds"));
+		long inMemory = parseSize(settings.get("inMemory"));
+		boolean json = settings.get("format").equals("json");
+		PrintStream out = settings.get("out").equals("-") ? System.out
+		        : new PrintStream(new FileOutputStream(settings.get("out")), true, "UTF-8");
+		JSONArray results = JSONArray.newEmptyInstance();
+		if (!json) {
+			out.println(String.join(",", COLUMNS));
+		}
+
+		for (String type : settings.get("types").split(",")) {
+			for (String size : settings.get("sizes").split(",")) {
+				for (String depth : settings.get("depths").split(",")) {
+					for (String width : settings.get("widths").split(",")) {
+						for (String ratio : settings.get("strings").split(",")) {
+							for (String escapes : settings.get("escapes").split(",")) {
+								boolean array = type.equals("array");
+								long bytes = parseSize(size);
+								SyntheticGenerator generator = new SyntheticGenerator(Long.parseLong(settings.get("seed")))
+								        .array(array)
+								        .size(bytes)
+								        .depth(Integer.parseInt(depth))
+								        .width(Integer.parseInt(width))
+								        .stringRatio(Double.parseDouble(ratio))
+								        .escapeDensity(Double.parseDouble(escapes));
+								Input input = new Input(generator, array, bytes, inMemory);
+								try {
+									for (String threads : settings.get("threads").split(",")) {
+										for (String operation : new String[] {"parse", "serialize"}) {
+											Object[] row = run(operation, input, Integer.parseInt(threads), seconds);
+											row[1] = type;
+											row[3] = Integer.valueOf(depth);
+											row[4] = Integer.valueOf(width);
+											row[5] = Double.valueOf(ratio);
+											row[6] = Double.valueOf(escapes);
+											if (json) {
+												results.add(results.size(), toJSON(row));
+											}
+											else {
+												out.println(toCSV(row));
+											}
+										}
+									}
+								} finally {
+									input.delete();
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		if (json) {
+			out.println(results);
+		}
+		if (out != System.out) {
+			out.close();
+		}
+	}
+
+	/**
+	 * Runs an operation on the threads for the time, after a warmup on one thread
+	 */
+	private static Object[] run(final String operation, final Input input, int threads, double seconds) throws Exception {
+		final Object document = operation.equals("serialize") ? input.parse() : null;
+		final long bytes = document == null ? input.bytes : serialize(document);
+		long warmupEnd = System.nanoTime() + (long) (seconds * 0.25e9);
+		do {
+			op(input, document);
+		} while (System.nanoTime() < warmupEnd);
+
+		System.gc();
+		List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+				pools.add(pool);
+			}
+		}
+		long[] gc = gcTotals();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final long duration = (long) (seconds * 1e9);
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					start.await();
+					long end = System.nanoTime() + duration;
+					long ops = 0;
+					do {
+						op(input, document);
+						ops++;
+					} while (System.nanoTime() < end);
+					return ops;
+				}
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		long ops = 0;
+		for (Future<Long> f : futures) {
+			ops += f.get();
+		}
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+		executor.shutdown();
+
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			peak += pool.getPeakUsage().getUsed();
+		}
+		long[] gcAfter = gcTotals();
+		return new Object[] {operation, null, input.bytes, null, null, null, null, threads, ops, elapsed,
+		        ops * bytes / 1e6 / elapsed, peak / 1048576.0, gcAfter[0] - gc[0], gcAfter[1] - gc[1]};
+	}
+
+	private static void op(Input input, Object document) throws IOException, JSONException {
+		if (document == null) {
+			input.parse();
+		}
+		else {
+			serialize(document);
+		}
+	}
+
+	/**
+	 * Serializes the document into a sink, and returns the UTF-8 size of the output
+	 */
+	private static long serialize(Object document) throws IOException {
+		ByteCountingSink sink = new ByteCountingSink();
+		if (document instanceof JSONObject) {
+			((JSONObject) document).write(sink);
+		}
+		else {
+			((JSONArray) document).write(sink);
+		}
+		return sink.bytes;
+	}
+
+	/**
+	 * The total GC time in milliseconds and count of collections
+	 */
+	private static long[] gcTotals() {
+		long[] totals = new long[2];
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			totals[0] += Math.max(0, gc.getCollectionTime());
+			totals[1] += Math.max(0, gc.getCollectionCount());
+		}
+		return totals;
+	}
+
+	static long parseSize(String size) {
+		char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+		int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+		return Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1)) << shift;
+	}
+
+	private static String toCSV(Object[] row) {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < row.length; i++) {
+			b.append(i == 0 ? "" : ",").append(row[i]);
+		}
+		return b.toString();
+	}
+
+	private static JSONObject toJSON(Object[] row) {
+		JSONObject ob = JSONObject.newEmptyInstance();
+		for (int i = 0; i < row.length; i++) {
+			Object value = row[i];
+			if (value instanceof String) {
+				ob.put(COLUMNS[i], (String) value);
+			}
+			else if (value instanceof Integer) {
+				ob.put(COLUMNS[i], (Integer) value);
+			}
+			else if (value instanceof Long) {
+				ob.put(COLUMNS[i], (Long) value);
+			}
+			else {
+				ob.put(COLUMNS[i], (Double) value);
+			}
+		}
+		return ob;
+	}
+
+	/**
+	 * Counts the UTF-8 bytes appended, and discards them
+	 */
+	private static final class ByteCountingSink implements Appendable {
+		private long bytes;
+
+		@Override
+		public Appendable append(CharSequence s) {
+			return append(s, 0, s.length());
+		}
+
+		@Override
+		public Appendable append(CharSequence s, int start, int end) {
+			for (int i = start; i < end; i++) {
+				append(s.charAt(i));
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(char ch) {
+			bytes += ch < 0x80 ? 1 : ch < 0x800 || Character.isSurrogate(ch) ? 2 : 3;
+			return this;
+		}
+	}
+
+	/**
+	 * A generated document, in a String or in a temporary file if it is larger than inMemory
+	 */
+	private static final class Input {
+		private final String text;
+		private final File file;
+		private final long bytes;
+		private final boolean array;
+
+		Input(SyntheticGenerator generator, boolean array, long size, long inMemory) throws IOException {
+			this.array = array;
+			if (size <= inMemory) {
+				text = generator.generate();
+				file = null;
+				bytes = text.getBytes(StandardCharsets.UTF_8).length;
+			}
+			else {
+				text = null;
+				file = File.createTempFile("synthetic", ".json");
+				file.deleteOnExit();
+				Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+				try {
+					bytes = generator.write(w);
+				} finally {
+					w.close();
+				}
+			}
+		}
+
+		Object parse() throws IOException, JSONException {
+			JSONTokener tokener = text != null ? new JSONTokener(text) : new JSONTokener(file);
+			try {
+				return array ? JSONArray.parse(tokener) : JSONObject.parse(tokener);
+			} finally {
+				tokener.close();
+			}
+		}
+
+		void delete() {
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package mango123.JSON.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import mango123.JSON.JSONException;
+
+/**
+ * Throughput of toString() of a parsed document. The bytes counted are those of the output.
+ */
+public class SerializeBenchmark extends CorpusBenchmark {
+	private Object document;
+	private int outputBytes;
+
+	@Override
+	protected void prepare() throws JSONException {
+		document = parse();
+		outputBytes = document.toString().getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	@Benchmark
+	public String serialize(ByteCounter counter) {
+		String s = document.toString();
+		counter.add(outputBytes);
+		return s;
+	}
+}
@@ -0,0 +1,257 @@
+package mango123.JSON.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * <p>Generates synthetic JSON documents of any size, for the {@link ScalingHarness}. The same
+ * settings and seed always generate the same document, so results can be compared between runs.</p>
+ * <p>The document is an array (or an object with keys <code>"r0"</code>, <code>"r1"</code>, ...)
+ * of records, appended until the document reaches the size. A record is a container of
+ * <code>width</code> values, one of which is a nested container, down to <code>depth</code>
+ * levels; the others are strings or numbers, according to the string ratio. The escape density is
+ * the fraction of chars in strings that need escaping: quotes, backslashes, control chars, or
+ * non-ASCII chars.</p>
+ * <p>e.g. {@code new SyntheticGenerator(1).size(1 << 20).depth(4).width(8).write(writer);}</p>
+ */
+public final class SyntheticGenerator {
+	private static final char[] ESCAPED = {'"', '\\', '\n', '\t', '\u0001', '\u00E9', '\u4E2D'};
+
+	private final long seed;
+	private long size = 1 << 20;
+	private int depth = 4;
+	private int width = 8;
+	private double stringRatio = 0.5;
+	private double escapeDensity = 0.02;
+	private boolean array = true;
+
+	/**
+	 * Constructs a <code>SyntheticGenerator</code> with the default settings: 1 MB, depth 4,
+	 * width 8, half strings and 2% escapes in an array.
+	 * @param seed the seed of the random values
+	 */
+	public SyntheticGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param bytes the minimal UTF-8 size of the document
+	 * @return this
+	 */
+	public SyntheticGenerator size(long bytes) {
+		if (bytes < 2) {
+			throw new IllegalArgumentException("size must be at least 2");
+		}
+		size = bytes;
+		return this;
+	}
+
+	/**
+	 * @param depth the levels of nesting of a record, at least 1
+	 * @return this
+	 */
+	public SyntheticGenerator depth(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("depth must be positive");
+		}
+		this.depth = depth;
+		return this;
+	}
+
+	/**
+	 * @param width the number of values in each container of a record, at least 1
+	 * @return this
+	 */
+	public SyntheticGenerator width(int width) {
+		if (width < 1) {
+			throw new IllegalArgumentException("width must be positive");
+		}
+		this.width = width;
+		return this;
+	}
+
+	/**
+	 * @param ratio the fraction of the values that are strings rather than numbers, 0 to 1
+	 * @return this
+	 */
+	public SyntheticGenerator stringRatio(double ratio) {
+		if (!(ratio >= 0 && ratio <= 1)) {
+			throw new IllegalArgumentException("ratio must be between 0 and 1");
+		}
+		stringRatio = ratio;
+		return this;
+	}
+
+	/**
+	 * @param density the fraction of chars in strings that need escaping, 0 to 1
+	 * @return this
+	 */
+	public SyntheticGenerator escapeDensity(double density) {
+		if (!(density >= 0 && density <= 1)) {
+			throw new IllegalArgumentException("density must be between 0 and 1");
+		}
+		escapeDensity = density;
+		return this;
+	}
+
+	/**
+	 * @param array true to generate an array of records, false for an object
+	 * @return this
+	 */
+	public SyntheticGenerator array(boolean array) {
+		this.array = array;
+		return this;
+	}
+
+	/**
+	 * Generates the document as a String, which must be smaller than 2 GB.
+	 * @return the document
+	 */
+	public String generate() {
+		if (size > Integer.MAX_VALUE / 2) {
+			throw new IllegalStateException("the document is too large for a String, use write()");
+		}
+		StringWriter out = new StringWriter((int) size + 1024);
+		try {
+			write(out);
+		} catch(IOException e) {
+			throw new IllegalStateException(e); //StringWriter does not throw IOException
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Writes the document, buffered, so <code>out</code> does not need to be.
+	 * @param out where the document is written to
+	 * @return the UTF-8 size of the document
+	 * @throws IOException if the <code>Writer</code> throws it
+	 */
+	public long write(Writer out) throws IOException {
+		Random random = new Random(seed);
+		Output o = new Output(out);
+		o.append(array ? '[' : '{');
+		for (long i = 0; o.bytes < size - 1; i++) {
+			if (i > 0) {
+				o.append(',');
+			}
+			if (!array) {
+				o.append("\"r").append(Long.toString(i)).append("\":");
+			}
+			record(o, random, depth);
+		}
+		o.append(array ? ']' : '}');
+		o.flush();
+		return o.bytes;
+	}
+
+	/**
+	 * Objects at odd levels and arrays at even levels, with the nested container in the middle
+	 */
+	private void record(Output o, Random random, int level) throws IOException {
+		boolean object = level % 2 == 1;
+		o.append(object ? '{' : '[');
+		for (int i = 0; i < width; i++) {
+			if (i > 0) {
+				o.append(',');
+			}
+			if (object) {
+				o.append("\"k").append(Integer.toString(i)).append("\":");
+			}
+			if (level > 1 && i == width / 2) {
+				record(o, random, level - 1);
+			}
+			else if (random.nextDouble() < stringRatio) {
+				string(o, random);
+			}
+			else {
+				number(o, random);
+			}
+		}
+		o.append(object ? '}' : ']');
+	}
+
+	private void string(Output o, Random random) throws IOException {
+		o.append('"');
+		for (int n = 4 + random.nextInt(29); n > 0; n--) {
+			if (escapeDensity > 0 && random.nextDouble() < escapeDensity) {
+				char ch = ESCAPED[random.nextInt(ESCAPED.length)];
+				switch (ch) {
+				case '"':
+					o.append("\\\"");
+					break;
+				case '\\':
+					o.append("\\\\");
+					break;
+				case '\n':
+					o.append("\\n");
+					break;
+				case '\t':
+					o.append("\\t");
+					break;
+				case '\u0001':
+					o.append("\\u0001");
+					break;
+				default:
+					o.append(ch);
+				}
+			}
+			else {
+				o.append((char) ('a' + random.nextInt(26)));
+			}
+		}
+		o.append('"');
+	}
+
+	private void number(Output o, Random random) throws IOException {
+		switch (random.nextInt(4)) {
+		case 0:
+			o.append(Integer.toString(random.nextInt(2000) - 1000));
+			break;
+		case 1:
+			o.append(Integer.toString(random.nextInt()));
+			break;
+		case 2:
+			o.append(Long.toString(random.nextLong()));
+			break;
+		default:
+			o.append(Double.toString(random.nextGaussian() * 1000));
+		}
+	}
+
+	/**
+	 * Buffers the output and counts its UTF-8 bytes
+	 */
+	private static final class Output {
+		private final Writer out;
+		private final char[] buffer = new char[8192];
+		private int length;
+		private long bytes;
+
+		Output(Writer out) {
+			this.out = out;
+		}
+
+		Output append(char ch) throws IOException {
+			if (length == buffer.length) {
+				flush();
+			}
+			buffer[length++] = ch;
+			bytes += ch < 0x80 ? 1 : ch < 0x800 ? 2 : 3;
+			return this;
+		}
+
+		Output append(String s) throws IOException {
+			for (int i = 0; i < s.length(); i++) {
+				append(s.charAt(i));
+			}
+			return this;
+		}
+
+		void flush() throws IOException {
+			out.write(buffer, 0, length);
+			length = 0;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package mango123.JSON.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONTokener;
+
+/**
+ * Throughput of JSONTokener.nextToken() over a whole document, without building anything.
+ */
+public class TokenizerBenchmark extends CorpusBenchmark {
+	@Benchmark
+	public int nextToken(ByteCounter counter) throws JSONException {
+		JSONTokener tokener = new JSONTokener(input);
+		int tokens = 0;
+		while (tokener.nextToken() != null) {
+			tokens++;
+		}
+		counter.add(bytes);
+		return tokens;
+	}
+}
@@ -0,0 +1,322 @@
+package mango123.JSON.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import mango123.JSON.JSONType;
+
+/**
+ * <p>Generates a {@link mango123.JSON.JSONCodec} for every class marked with {@link JSONType}.</p>
+ * <p>The generated reader runs directly against the <code>JSONTokener</code>: it switches on the
+ * key tokens, assigns the fields as their values are read, decodes primitive fields without
+ * boxing them and skips unknown keys. Each nested object or list is read one level deeper, up
+ * to the <code>maxDepth</code> of the tokener's limits. The generated writer appends the keys as constants and the
+ * values with the matching codec. No reflection is used at runtime.</p>
+ * <p>The processor is registered by <code>resources/processor/META-INF/services</code>, which is
+ * packaged into the processor's jar and kept off the class path of the library's own build, e.g.
+ * {@code jar cf json-processor.jar -C classes mango123/JSON/processor -C resources/processor META-INF}.
+ * It then runs whenever that jar is on the annotation processor path of the compiler.</p>
+ */
+@SupportedAnnotationTypes("mango123.JSON.JSONType")
+public class JSONCodecProcessor extends AbstractProcessor {
+	/**
+	 * Appended to the name of a class to get the name of its codec
+	 */
+	static final String SUFFIX = "JSONCodec";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+		for (Element e : env.getElementsAnnotatedWith(JSONType.class)) {
+			if (e.getKind() != ElementKind.CLASS) {
+				error(e, "@JSONType can only be used on a class");
+				continue;
+			}
+			TypeElement type = (TypeElement) e;
+			try {
+				List<Field> fields = fieldsOf(type);
+				writeCodec(type, fields);
+			}
+			catch(InvalidTypeException ex) {
+				error(ex.element, ex.getMessage());
+			}
+			catch(IOException ex) {
+				error(type, "cannot write the codec of " + type.getSimpleName() + ": " + ex.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A field of the annotated class, with the code that reads and writes it
+	 */
+	private static class Field {
+		final String name;
+		final String read;
+		final String write;
+
+		Field(String name, String read, String write) {
+			this.name = name;
+			this.read = read;
+			this.write = write;
+		}
+	}
+
+	/**
+	 * Thrown when the annotated class or one of its fields is not supported
+	 */
+	private static class InvalidTypeException extends Exception {
+		private static final long serialVersionUID = 0L;
+		final Element element;
+
+		InvalidTypeException(Element element, String message) {
+			super(message);
+			this.element = element;
+		}
+	}
+
+	/**
+	 * Checks the class and returns its fields that are read and written
+	 */
+	private List<Field> fieldsOf(TypeElement type) throws InvalidTypeException {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			throw new InvalidTypeException(type, "@JSONType class must not be abstract");
+		}
+		if (type.getNestingKind() != NestingKind.TOP_LEVEL
+		    && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+			throw new InvalidTypeException(type, "@JSONType class must be a top level or a static nested class");
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			throw new InvalidTypeException(type, "@JSONType class must not be generic");
+		}
+
+		boolean hasConstructor = false;
+		for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+				hasConstructor = true;
+			}
+		}
+		if (!hasConstructor) {
+			throw new InvalidTypeException(type, "@JSONType class needs a constructor without parameters that is not private");
+		}
+
+		List<Field> fields = new ArrayList<Field>();
+		for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			Set<Modifier> modifiers = f.getModifiers();
+			if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+				continue;
+			}
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+				throw new InvalidTypeException(f, "field of a @JSONType class must not be private or final, "
+				                                  + "make it transient to leave it out");
+			}
+			fields.add(toField(f));
+		}
+		return fields;
+	}
+
+	private Field toField(VariableElement f) throws InvalidTypeException {
+		String name = f.getSimpleName().toString();
+		String value = "value." + name;
+		TypeMirror t = f.asType();
+
+		switch (t.getKind()) {
+		case BOOLEAN:
+			return new Field(name, "JSONCodecs.readBoolean(tokener)", "JSONCodecs.writeBoolean(" + value + ", out)");
+		case INT:
+			return new Field(name, "JSONCodecs.readInt(tokener)", "JSONCodecs.writeInt(" + value + ", out)");
+		case LONG:
+			return new Field(name, "JSONCodecs.readLong(tokener)", "JSONCodecs.writeLong(" + value + ", out)");
+		case DOUBLE:
+			return new Field(name, "JSONCodecs.readDouble(tokener)", "JSONCodecs.writeDouble(" + value + ", out)");
+		default:
+			break;
+		}
+
+		if (t.getKind() == TypeKind.DECLARED && nameOf(t).equals("java.util.List")) {
+			List<? extends TypeMirror> args = ((DeclaredType) t).getTypeArguments();
+			String codec = args.size() == 1 ? codecOf(args.get(0)) : null;
+			if (codec == null) {
+				throw new InvalidTypeException(f, "unsupported element type of List field " + name);
+			}
+			return new Field(name, "JSONCodecs.readList(tokener, " + codec + ", depth + 1)",
+			                 "JSONCodecs.writeList(" + value + ", " + codec + ", out)");
+		}
+
+		String codec = codecOf(t);
+		if (codec == null) {
+			throw new InvalidTypeException(f, "unsupported type " + t + " of field " + name);
+		}
+		return new Field(name, codec + ".read(tokener, depth + 1)", codec + ".write(" + value + ", out)");
+	}
+
+	/**
+	 * Returns the expression of the codec of a reference type, or null if it is not supported
+	 */
+	private String codecOf(TypeMirror t) {
+		if (t.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		String name = nameOf(t);
+		if (name.equals("java.lang.String"))       return "JSONCodecs.STRING";
+		if (name.equals("java.lang.Integer"))      return "JSONCodecs.INTEGER";
+		if (name.equals("java.lang.Long"))         return "JSONCodecs.LONG";
+		if (name.equals("java.lang.Double"))       return "JSONCodecs.DOUBLE";
+		if (name.equals("java.lang.Boolean"))      return "JSONCodecs.BOOLEAN";
+		if (name.equals("java.math.BigInteger"))   return "JSONCodecs.BIG_INTEGER";
+		if (name.equals("java.math.BigDecimal"))   return "JSONCodecs.BIG_DECIMAL";
+		if (name.equals("mango123.JSON.JSONObject")) return "JSONCodecs.OBJECT";
+		if (name.equals("mango123.JSON.JSONArray"))  return "JSONCodecs.ARRAY";
+
+		TypeElement e = (TypeElement) ((DeclaredType) t).asElement();
+		if (e.getAnnotation(JSONType.class) != null) {
+			return packageOf(e) + codecNameOf(e) + ".INSTANCE";
+		}
+		return null;
+	}
+
+	private static String nameOf(TypeMirror t) {
+		return ((TypeElement) ((DeclaredType) t).asElement()).getQualifiedName().toString();
+	}
+
+	/**
+	 * Returns the package of the type followed by a '.', or "" for the default package
+	 */
+	private String packageOf(TypeElement type) {
+		String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		return pkg.isEmpty() ? "" : pkg + ".";
+	}
+
+	/**
+	 * Point -> PointJSONCodec, Outer.Inner -> Outer_InnerJSONCodec
+	 */
+	static String codecNameOf(TypeElement type) {
+		String name = type.getSimpleName().toString();
+		Element outer = type.getEnclosingElement();
+		while (outer instanceof TypeElement) {
+			name = outer.getSimpleName() + "_" + name;
+			outer = outer.getEnclosingElement();
+		}
+		return name + SUFFIX;
+	}
+
+	private void writeCodec(TypeElement type, List<Field> fields) throws IOException {
+		String pkg = packageOf(type);
+		String codec = codecNameOf(type);
+		String t = type.getQualifiedName().toString();
+		String simple = type.getSimpleName().toString();
+
+		StringBuilder s = new StringBuilder();
+		if (!pkg.isEmpty()) {
+			s.append("package ").append(pkg, 0, pkg.length() - 1).append(";\n\n");
+		}
+		s.append("import java.io.IOException;\n\n")
+		 .append("import mango123.JSON.JSONCodec;\n")
+		 .append("import mango123.JSON.JSONCodecs;\n")
+		 .append("import mango123.JSON.JSONException;\n")
+		 .append("import mango123.JSON.JSONTokener;\n\n")
+		 .append("/**\n")
+		 .append(" * Codec of {@link ").append(t).append("}, generated by ")
+		 .append(JSONCodecProcessor.class.getName()).append(". Do not edit.\n")
+		 .append(" */\n")
+		 .append("public final class ").append(codec).append(" implements JSONCodec<").append(t).append("> {\n")
+		 .append("\tpublic static final ").append(codec).append(" INSTANCE = new ").append(codec).append("();\n\n")
+		 .append("\tprivate ").append(codec).append("() {}\n\n");
+
+		//reader
+		s.append("\tpublic ").append(t).append(" read(JSONTokener tokener, int depth) throws JSONException {\n")
+		 .append("\t\tString token = tokener.nextToken();\n")
+		 .append("\t\tif (token == JSONTokener.NULL) {\n")
+		 .append("\t\t\treturn null;\n")
+		 .append("\t\t}\n")
+		 .append("\t\tif (token != JSONTokener.LEFT_BRACE) {\n")
+		 .append("\t\t\tthrow tokener.newSyntaxError(\"expects an object for ").append(simple)
+		 .append(" but found \" + token);\n")
+		 .append("\t\t}\n")
+		 .append("\t\tJSONCodecs.checkDepth(tokener, depth);\n\n")
+		 .append("\t\t").append(t).append(" ob = new ").append(t).append("();\n")
+		 .append("\t\ttoken = tokener.nextToken();\n")
+		 .append("\t\tif (token == JSONTokener.RIGHT_BRACE) {\n")
+		 .append("\t\t\treturn ob;\n")
+		 .append("\t\t}\n")
+		 .append("\t\twhile (true) {\n")
+		 .append("\t\t\tif (token == null || token.charAt(0) != '\"') {\n")
+		 .append("\t\t\t\tthrow tokener.newSyntaxError(\"missing key\");\n")
+		 .append("\t\t\t}\n")
+		 .append("\t\t\tif (tokener.nextToken() != JSONTokener.COLON) {\n")
+		 .append("\t\t\t\tthrow tokener.newSyntaxError(\"missing ':'\");\n")
+		 .append("\t\t\t}\n\n")
+		 .append("\t\t\t//the key tokens still have their quotes\n")
+		 .append("\t\t\tswitch (token) {\n");
+		for (Field f : fields) {
+			s.append("\t\t\tcase \"\\\"").append(f.name).append("\\\"\":\n")
+			 .append("\t\t\t\tob.").append(f.name).append(" = ").append(f.read).append(";\n")
+			 .append("\t\t\t\tbreak;\n");
+		}
+		s.append("\t\t\tdefault:\n")
+		 .append("\t\t\t\tJSONCodecs.skipValue(tokener, depth + 1);\n")
+		 .append("\t\t\t}\n\n")
+		 .append("\t\t\ttoken = tokener.nextToken();\n")
+		 .append("\t\t\tif (token == JSONTokener.RIGHT_BRACE) {\n")
+		 .append("\t\t\t\treturn ob;\n")
+		 .append("\t\t\t}\n")
+		 .append("\t\t\telse if (token != JSONTokener.COMMA) {\n")
+		 .append("\t\t\t\tthrow tokener.newSyntaxError(\"missing '}'\");\n")
+		 .append("\t\t\t}\n")
+		 .append("\t\t\ttoken = tokener.nextToken();\n")
+		 .append("\t\t}\n")
+		 .append("\t}\n\n");
+
+		//writer
+		s.append("\tpublic void write(").append(t).append(" value, Appendable out) throws IOException {\n")
+		 .append("\t\tif (value == null) {\n")
+		 .append("\t\t\tout.append(\"null\");\n")
+		 .append("\t\t\treturn;\n")
+		 .append("\t\t}\n");
+		String separator = "{";
+		for (Field f : fields) {
+			s.append("\t\tout.append(\"").append(separator).append("\\\"").append(f.name).append("\\\":\");\n")
+			 .append("\t\t").append(f.write).append(";\n");
+			separator = ",";
+		}
+		s.append("\t\tout.append(\"").append(fields.isEmpty() ? "{}" : "}").append("\");\n")
+		 .append("\t}\n")
+		 .append("}\n");
+
+		Writer w = processingEnv.getFiler().createSourceFile(pkg + codec, type).openWriter();
+		try {
+			w.write(s.toString());
+		}
+		finally {
+			w.close();
+		}
+	}
+
+	private void error(Element e, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+	}
+}
@@ -0,0 +1,238 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParser;
+import mango123.JSON.JSONTokener;
+
+/**
+ * <p>Fails when an operation allocates more bytes than its budget, so allocation improvements
+ * on the hot paths are not lost. Each operation is measured in a JVM of its own, so that other
+ * tests cannot change how it is compiled. The bytes are counted by the JVM for the measuring
+ * thread, after a warmup so that the JIT has compiled the operation (and removed what escape
+ * analysis can).</p>
+ * <p>The budgets are the allocation measured when they were set, per operation over the fixed
+ * inputs below on a 64 bit HotSpot JVM with compressed references, plus about 10%. When an
+ * operation allocates less, lower its budget. The budgets are skipped on other JVMs, e.g. with
+ * -XX:-UseCompressedOops, where every reference takes twice the bytes.</p>
+ */
+public class MakeSureAllocationBudgetsHold {
+	private static final String OBJECT;
+	private static final String ARRAY;
+
+	static {
+		StringBuilder b = new StringBuilder("{");
+		for (int i = 0; i < 100; i++) {
+			b.append(i == 0 ? "" : ",").append("\n  \"key").append(i % 10).append(i).append("\": ");
+			b.append("{\"id\": ").append(i * 7919).append(", \"name\": \"name ").append(i);
+			b.append("\", \"tags\": [\"a\", \"b\\n\"], \"score\": ").append(i * 0.25).append(", \"ok\": true, \"none\": null}");
+		}
+		OBJECT = b.append("\n}").toString();
+
+		b = new StringBuilder("[");
+		for (int i = 0; i < 500; i++) {
+			b.append(i == 0 ? "" : ", ").append(i % 3 == 0 ? String.valueOf(i * 31) : i % 3 == 1 ? "\"s" + i + "\"" : "[true, false]");
+		}
+		ARRAY = b.append(']').toString();
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * An operation whose allocation is measured
+	 */
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Returns the bytes allocated per run of the operation by the current thread, the least of
+	 * several rounds so that a round in which the JIT is still compiling does not count
+	 */
+	private static long allocatedBytes(Operation op) throws Exception {
+		for (int i = 0; i < 5000; i++) {
+			op.run();
+		}
+		int runs = 500;
+		long id = Thread.currentThread().getId();
+		long least = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long before = THREADS.getThreadAllocatedBytes(id);
+			for (int i = 0; i < runs; i++) {
+				op.run();
+			}
+			least = Math.min(least, (THREADS.getThreadAllocatedBytes(id) - before) / runs);
+		}
+		return least;
+	}
+
+	/**
+	 * Returns the operation of the name, with the state it runs on
+	 */
+	private static Operation operation(String name) throws Exception {
+		if (name.equals("nextToken")) {
+			final JSONTokener tokener = new JSONTokener("");
+			return new Operation() {
+				@Override
+				public void run() throws JSONException {
+					tokener.reset(OBJECT);
+					while (tokener.nextToken() != null) {}
+				}
+			};
+		}
+		else if (name.equals("JSONParser.parseObject")) {
+			return new Operation() {
+				@Override
+				public void run() throws JSONException {
+					JSONParser.parseObject(OBJECT);
+				}
+			};
+		}
+		else if (name.equals("JSONParser.parseArray")) {
+			return new Operation() {
+				@Override
+				public void run() throws JSONException {
+					JSONParser.parseArray(ARRAY);
+				}
+			};
+		}
+		else if (name.equals("JSONObject.parse")) {
+			return new Operation() {
+				@Override
+				public void run() throws JSONException {
+					JSONObject.parse(new JSONTokener(OBJECT));
+				}
+			};
+		}
+		else if (name.equals("JSONParser.validate")) {
+			return new Operation() {
+				@Override
+				public void run() {
+					JSONParser.validate(OBJECT);
+				}
+			};
+		}
+		else if (name.equals("JSONObject.write")) {
+			final JSONObject ob = JSONParser.parseObject(OBJECT);
+			final StringBuilder out = new StringBuilder(OBJECT.length());
+			return new Operation() {
+				@Override
+				public void run() throws Exception {
+					out.setLength(0);
+					ob.write(out);
+				}
+			};
+		}
+		else if (name.equals("JSONObject.toString")) {
+			final JSONObject ob = JSONParser.parseObject(OBJECT);
+			return new Operation() {
+				@Override
+				public void run() {
+					ob.toString();
+				}
+			};
+		}
+		else if (name.equals("JSONArray.toString")) {
+			final JSONArray array = JSONParser.parseArray(ARRAY);
+			return new Operation() {
+				@Override
+				public void run() {
+					array.toString();
+				}
+			};
+		}
+		throw new IllegalArgumentException("unknown operation " + name);
+	}
+
+	/**
+	 * Measures the operation named by the argument and prints its bytes per run, run by
+	 * .assertWithinBudget() in a JVM of its own
+	 */
+	public static void main(String[] args) throws Exception {
+		System.out.println(allocatedBytes(operation(args[0])));
+	}
+
+	/**
+	 * Returns true if the budgets apply to this JVM, a HotSpot JVM with compressed references
+	 */
+	private static boolean hasCompressedReferences() {
+		com.sun.management.HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+		try {
+			return hotSpot != null && Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue());
+		} catch(IllegalArgumentException e) {
+			return false; //no such option, e.g. a 32 bit JVM
+		}
+	}
+
+	/**
+	 * Measures the operation in a new JVM, with the -XX options of this one, so the result does
+	 * not depend on the tests that ran before it: the profiles and the compiled code of the
+	 * call sites it shares with them would otherwise decide what escape analysis removes.
+	 */
+	private static void assertWithinBudget(String name, long budget) throws Exception {
+		assumeTrue("the budgets are for a JVM with compressed references", hasCompressedReferences());
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (arg.startsWith("-XX:")) {
+				command.add(arg);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(MakeSureAllocationBudgetsHold.class.getName());
+		command.add(name);
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		String output = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8).trim();
+		assertEquals(name + " could not be measured: " + output, 0, process.waitFor());
+
+		long bytes = Long.parseLong(output);
+		assertTrue(name + " allocated " + bytes + " bytes per operation, the budget is " + budget, bytes <= budget);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testNextToken() throws Exception {
+		assertWithinBudget("nextToken", 64000);
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		assertWithinBudget("JSONParser.parseObject", 190000);
+		assertWithinBudget("JSONParser.parseArray", 56000);
+		assertWithinBudget("JSONObject.parse", 208000);
+		assertWithinBudget("JSONParser.validate", 170);
+	}
+
+	@Test
+	public void testSerialize() throws Exception {
+		assertWithinBudget("JSONObject.write", 10600);
+		assertWithinBudget("JSONObject.toString", 62000);
+		assertWithinBudget("JSONArray.toString", 24000);
+	}
+}
@@ -1,17 +1,28 @@
 package mango123.JSON.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Random;
 
 import org.junit.Test;
 
 import mango123.JSON.JSONArray;
+import mango123.JSON.JSONBinaryReader;
+import mango123.JSON.JSONBinaryWriter;
 import mango123.JSON.JSONException;
+import mango123.JSON.JSONNumber;
+import mango123.JSON.JSONNumberPolicy;
 import mango123.JSON.JSONObject;
 import mango123.JSON.JSONTokener;
 
@@ -159,4 +170,127 @@ public class MakeSureJSONArrayWorks {
 			fail(".toString should return valid JSON: " + e.getMessage());
 		}
 	}
+
+	@Test
+	public void testFrozenArrayRejectsModification() throws Exception {
+		JSONArray arr = JSONArray.parse(new JSONTokener(correctJSONString)).freeze();
+		assertTrue("nested object frozen", arr.getObject(9).isFrozen());
+		try {
+			Iterator<Object> it = arr.iterator();
+			it.next();
+			it.remove();
+			fail("UnsupportedOperationException not thrown");
+		} catch(UnsupportedOperationException e) {
+			//IGNORE
+		}
+		assertEquals("length not changed", 12, arr.size());
+
+		//a document built in code can be nested deeper than the thread's stack allows recursion
+		JSONArray deep = JSONArray.newEmptyInstance(), innermost = deep;
+		for (int i = 0; i < 200000; i++) {
+			JSONArray next = JSONArray.newEmptyInstance();
+			innermost.add(0, next);
+			innermost = next;
+		}
+		deep.freeze();
+		assertTrue("innermost array frozen", innermost.isFrozen());
+	}
+
+	@Test
+	public void testWithSetReturnsUpdatedCopyAndLeavesOriginalUnchanged() throws Exception {
+		JSONArray arr = JSONArray.newEmptyInstance();
+		for (int i = 0; i < 5000; i++) {
+			arr.add(i, i);
+		}
+
+		JSONArray v1 = arr.withSet(0, "first").withSet(1055, 1055L);
+		JSONArray v2 = v1.withSet(4999, Boolean.TRUE).withSetNull(1056);
+		assertFalse("original mutable", arr.isFrozen());
+		JSONObject value = JSONObject.newEmptyInstance();
+		JSONArray v3 = arr.withSet(1, value);
+		value.put("a", 1);
+		arr.set(2, "changed");
+		assertFalse("value mutable", value.isFrozen());
+		assertFalse("value copied", v3.getObject(1).hasKey("a"));
+		assertEquals("original changes not seen", 2, v3.getInt(2).intValue());
+		assertEquals("original unchanged", 0, arr.getInt(0).intValue());
+		assertEquals("v1", "first", v1.get(0));
+		assertEquals("v1", 1055L, v1.getLong(1055).longValue());
+		assertEquals("v1 unchanged", 4999, v1.getInt(4999).intValue());
+		assertEquals("v2", Boolean.TRUE, v2.getBool(4999));
+		assertNull("v2", v2.get(1056));
+		assertEquals("size", 5000, v2.size());
+
+		//converted once, then every update shares it
+		JSONArray base = arr.persistent();
+		assertTrue("persistent frozen", base.isFrozen());
+		assertSame("already persistent", base, base.persistent());
+		assertSame("withSet() result persistent", v2, v2.persistent());
+		assertEquals("same elements", arr.toString(), base.toString());
+		assertEquals("update of the base", "x", base.withSet(3, "x").get(3));
+		assertEquals("base unchanged", 3, base.getInt(3).intValue());
+		for (int i = 1; i < 5000; i++) {
+			if (i != 1055 && i != 1056 && i != 4999) {
+				assertEquals("shared element", i, v2.getInt(i).intValue());
+			}
+		}
+	}
+
+	@Test
+	public void testNumberPolicies() throws Exception {
+		String input = "[0, -0, 7, -2147483649, 123456789012345678901, 1.5, -0.0, 2.50, 1e3, 1.5E-7, 1e400, 9007199254740993, 0.1]";
+		String[] types = {
+		        "Integer Integer Integer Long BigInteger Double Double Double Double Double BigDecimal Long Double",
+		        "Long Long Long Long BigInteger Double Double Double Double Double BigDecimal Long Double",
+		        "Double Double Double Double Double Double Double Double Double Double BigDecimal Double Double",
+		        "BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal BigDecimal",
+		        "JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber JSONNumber"};
+		String[] tokens = input.substring(1, input.length() - 1).split(", ");
+		for (JSONNumberPolicy policy : JSONNumberPolicy.values()) {
+			JSONArray array = JSONArray.parse(new JSONTokener(input).setNumberPolicy(policy));
+			StringBuilder found = new StringBuilder();
+			for (int i = 0; i < array.size(); i++) {
+				Object value = array.get(i);
+				found.append(i == 0 ? "" : " ").append(value.getClass().getSimpleName());
+				if (value instanceof Double) {
+					assertEquals(tokens[i], Double.valueOf(tokens[i]), value);
+				}
+				else if (value instanceof BigDecimal) {
+					assertEquals(tokens[i], new BigDecimal(tokens[i]), value);
+				}
+				else {
+					assertEquals(tokens[i], new BigDecimal(tokens[i]).compareTo(new BigDecimal(value.toString())), 0);
+				}
+			}
+			assertEquals(policy.name(), types[policy.ordinal()], found.toString());
+		}
+
+		//the digits are decoded to the same double as Double.valueOf()
+		Random random = new Random(48);
+		StringBuilder str = new StringBuilder("[");
+		for (int i = 0; i < 20000; i++) {
+			long digits = random.nextLong() >>> (1 + random.nextInt(63));
+			int scale = random.nextInt(40) - 20;
+			str.append(i == 0 ? "" : ",").append(random.nextBoolean() ? "-" : "").append(new BigDecimal(BigInteger.valueOf(digits), scale));
+		}
+		String numbers = str.append(']').toString();
+		JSONArray doubles = JSONArray.parse(new JSONTokener(numbers).setNumberPolicy(JSONNumberPolicy.ALL_DOUBLE));
+		JSONArray decimals = JSONArray.parse(new JSONTokener(numbers).setNumberPolicy(JSONNumberPolicy.ALL_DECIMAL));
+		tokens = numbers.substring(1, numbers.length() - 1).split(",");
+		for (int i = 0; i < tokens.length; i++) {
+			assertEquals(tokens[i], Double.valueOf(tokens[i]), doubles.get(i));
+			assertEquals(tokens[i], new BigDecimal(tokens[i]), decimals.get(i));
+		}
+
+		//raw numbers are written back as they were, and as their value in the binary encoding
+		JSONArray raw = JSONArray.parse(new JSONTokener(input).setNumberPolicy(JSONNumberPolicy.RAW));
+		assertEquals(input.replace(" ", ""), raw.toString());
+		assertEquals("2.50", ((JSONNumber) raw.get(7)).toBigDecimal().toString());
+		assertEquals(-2147483649L, ((JSONNumber) raw.get(3)).longValue());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONBinaryWriter writer = new JSONBinaryWriter(out, false);
+		writer.write(raw);
+		writer.close();
+		assertEquals(JSONArray.parse(new JSONTokener(input)).toString(), new JSONBinaryReader(new ByteArrayInputStream(out.toByteArray())).readArray().toString());
+	}
 }
@@ -0,0 +1,116 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONNumberPolicy;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParser;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONAsyncParseWorks {
+	private static final String OBJECT = "{\"a\\u00E9\\n\": [1, -0.5e-3, 12345678901, 123456789012345678901, 1E400, true, false, null],"
+	        + " \"\u00e9\u4e2d\ud83d\ude00\": {\"x\": {}, \"y\": []}, \"0\": 0}";
+
+	@Test
+	public void testParseAsync() throws Exception {
+		Path dir = Files.createTempDirectory("json");
+		try {
+			StringBuilder b = new StringBuilder("[");
+			for (int i = 0; i < 50000; i++) {
+				b.append(i == 0 ? "" : ", ").append(OBJECT);
+			}
+			b.append(']');
+			Path large = dir.resolve("large.json");
+			Files.write(large, b.toString().getBytes(StandardCharsets.UTF_8));
+			assertEquals(JSONArray.parse(new JSONTokener(b.toString())).toString(), JSONArray.parseAsync(large).get().toString());
+
+			List<Path> paths = new ArrayList<Path>();
+			for (int i = 0; i < 200; i++) {
+				Path p = dir.resolve(i + ".json");
+				Files.write(p, (i % 2 == 0 ? "{\"i\": " + i + "}" : "[" + i + "]").getBytes(StandardCharsets.UTF_8));
+				paths.add(p);
+			}
+			assertEquals("{\"i\":0}", JSONObject.parseAsync(paths.get(0)).get().toString());
+			List<Object> values = JSONParser.parseAsync(paths, 8).get();
+			for (int i = 0; i < 200; i++) {
+				assertEquals(i % 2 == 0 ? "{\"i\":" + i + "}" : "[" + i + "]", values.get(i).toString());
+			}
+
+			Path[] invalid = {dir.resolve("missing.json"), paths.get(1), Files.write(dir.resolve("empty.json"), new byte[0]),
+			        Files.write(dir.resolve("two.json"), "{} {}".getBytes(StandardCharsets.UTF_8)),
+			        Files.write(dir.resolve("bad.json"), "{\"a\": }".getBytes(StandardCharsets.UTF_8))};
+			for (Path p : invalid) {
+				try {
+					JSONObject.parseAsync(p).get();
+					fail("ExecutionException not thrown: " + p);
+				} catch(ExecutionException e) {
+					//IGNORE
+				}
+			}
+			paths.add(invalid[4]);
+			try {
+				JSONParser.parseAsync(paths).get();
+				fail("ExecutionException not thrown");
+			} catch(ExecutionException e) {
+				assertTrue(e.getCause() instanceof JSONException);
+			}
+		} finally {
+			for (Path p : Files.newDirectoryStream(dir)) {
+				Files.delete(p);
+			}
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testParseAsyncWithLimitsAndNumberPolicy() throws Exception {
+		Path dir = Files.createTempDirectory("json");
+		try {
+			Path numbers = Files.write(dir.resolve("numbers.json"), "{\"a\": [1, 1.5], \"b\": \"abcdef\"}".getBytes(StandardCharsets.UTF_8));
+			JSONObject ob = JSONObject.parseAsync(numbers, JSONLimits.DEFAULT, JSONNumberPolicy.ALL_DECIMAL).get();
+			assertEquals(new BigDecimal("1"), ob.getArray("a").getDecimal(0));
+			assertEquals(new BigDecimal("1.5"), ob.getArray("a").getDecimal(1));
+			assertEquals(Long.valueOf(1), JSONArray.parseAsync(Files.write(dir.resolve("array.json"), "[1]".getBytes(StandardCharsets.UTF_8)),
+			        JSONLimits.DEFAULT, JSONNumberPolicy.INTEGERS_AS_LONG).get().getLong(0));
+
+			JSONLimits[] exceeded = {JSONLimits.DEFAULT.withMaxStringLength(5), JSONLimits.DEFAULT.withMaxEntries(1), JSONLimits.DEFAULT.withMaxDepth(1)};
+			String[] messages = {"a string is longer than 5 chars", "an object or array has more than 1 values", "maximum depth of 1 exceeded"};
+			for (int i = 0; i < exceeded.length; i++) {
+				try {
+					JSONObject.parseAsync(numbers, exceeded[i], JSONNumberPolicy.AUTO).get();
+					fail("ExecutionException not thrown");
+				} catch(ExecutionException e) {
+					assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("): " + messages[i]));
+				}
+				try {
+					JSONParser.parseAsync(Arrays.asList(numbers), 1, exceeded[i], JSONNumberPolicy.AUTO).get();
+					fail("ExecutionException not thrown");
+				} catch(ExecutionException e) {
+					assertTrue(e.getCause() instanceof JSONException);
+				}
+			}
+			assertEquals(ob.toString(), JSONParser.parseAsync(Arrays.asList(numbers), 1, JSONLimits.DEFAULT, JSONNumberPolicy.ALL_DECIMAL).get().get(0).toString());
+		} finally {
+			for (Path p : Files.newDirectoryStream(dir)) {
+				Files.delete(p);
+			}
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONBinaryReader;
+import mango123.JSON.JSONBinaryWriter;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONBinaryWorks {
+	private static JSONObject sample(int i) throws JSONException {
+		JSONObject ob = JSONObject.parse(new JSONTokener("{\"id\": " + i + ", \"name\": \"n" + i + "\", \"tags\": [\"a\", \"b\", null, true, false, 1.5, -0.0, {}], \"nested\": {\"x\": []}}"));
+		ob.put("long", Long.MIN_VALUE + i);
+		ob.put("int", Integer.MIN_VALUE);
+		ob.put("big", new BigInteger("-123456789012345678901234567890"));
+		ob.put("decimal", new BigDecimal("1234567890.123456789e-40"));
+		ob.put("unicode", "\u00e9\u4e2d\ud83d\ude00 \ud800 \udc00\u0000");
+		return ob;
+	}
+
+	private static byte[] write(boolean useDictionary, int count) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONBinaryWriter writer = new JSONBinaryWriter(out, useDictionary);
+		for (int i = 0; i < count; i++) {
+			writer.write(sample(i));
+		}
+		writer.write(JSONArray.newEmptyInstance().add(0, "n0"));
+		writer.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		for (boolean useDictionary : new boolean[] {true, false}) {
+			JSONBinaryReader reader = new JSONBinaryReader(new ByteArrayInputStream(write(useDictionary, 10)));
+			for (int i = 0; i < 10; i++) {
+				JSONObject expected = sample(i);
+				JSONObject ob = reader.readObject();
+				assertEquals(expected.toString(), ob.toString());
+				for (String key : new String[] {"id", "long", "int", "big", "decimal", "unicode"}) {
+					assertEquals(key, expected.get(key), ob.get(key));
+				}
+			}
+			assertEquals("[\"n0\"]", reader.readArray().toString());
+			assertNull("end of input", reader.read());
+		}
+	}
+
+	@Test
+	public void testDictionaryMakesRepeatedStringsSmaller() throws Exception {
+		assertTrue(write(true, 100).length * 3 < write(false, 100).length * 2);
+
+		JSONBinaryReader reader = new JSONBinaryReader(new ByteArrayInputStream(write(true, 2)));
+		JSONObject first = reader.readObject();
+		JSONObject second = reader.readObject();
+		assertSame(first.getArray("tags").get(0), second.getArray("tags").get(0));
+	}
+
+	@Test
+	public void testLongStrings() throws Exception {
+		char[] chars = new char[100000];
+		Arrays.fill(chars, '\u00e9');
+		String s = new String(chars);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONBinaryWriter writer = new JSONBinaryWriter(out);
+		writer.write(JSONArray.newEmptyInstance().add(0, s).add(1, s));
+		writer.close();
+
+		JSONArray array = new JSONBinaryReader(new ByteArrayInputStream(out.toByteArray())).readArray();
+		assertEquals(s, array.get(0));
+		assertEquals(s, array.get(1));
+	}
+
+	@Test
+	public void testConcurrentInstancesAreWrittenWhileBeingModified() throws Exception {
+		final JSONObject ob = JSONObject.newConcurrentInstance();
+		final JSONArray arr = JSONArray.newConcurrentInstance();
+		ob.put("array", arr);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 200000; i++) {
+					ob.put("k" + (i % 50), i);
+					if (i % 70 == 0) {
+						ob.clear();
+					}
+					if (i % 2 == 0) {
+						arr.add(0, i);
+					}
+					else {
+						arr.remove(0);
+					}
+				}
+			}
+		};
+		writer.start();
+		while (writer.isAlive()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			JSONBinaryWriter binary = new JSONBinaryWriter(out);
+			binary.write(ob);
+			binary.close();
+			new JSONBinaryReader(new ByteArrayInputStream(out.toByteArray())).readObject();
+		}
+		writer.join();
+	}
+
+	@Test
+	public void testCannotReadInvalidInput() throws Exception {
+		byte[] bytes = write(true, 1);
+		byte[][] invalid = {
+			{'J', 'S', 1, 0},
+			{'J', 'B', 2, 0},
+			{'J', 'B', 1, 0, 99},
+			{'J', 'B', 1, 0, 9, 0},
+			Arrays.copyOf(bytes, bytes.length / 2),
+			{'J', 'B', 1, 0, 10, (byte) 0xF7, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7}, //an object of 2^31 - 9 entries
+			{'J', 'B', 1, 0, 11, (byte) 0xF7, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7, 0},
+			{'J', 'B', 1, 0, 8, (byte) 0xF7, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7, 'a'},
+		};
+		for (byte[] b : invalid) {
+			try {
+				JSONBinaryReader reader = new JSONBinaryReader(new ByteArrayInputStream(b));
+				while (reader.read() != null);
+				fail("JSONException not thrown: " + Arrays.toString(b));
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+	}
+
+	@Test
+	public void testDeepDocumentsAndLimits() throws Exception {
+		int depth = 200000;
+		JSONArray deep = JSONArray.newEmptyInstance(), innermost = deep;
+		for (int i = 1; i < depth; i++) {
+			JSONArray next = JSONArray.newEmptyInstance();
+			innermost.add(0, next);
+			innermost = next;
+		}
+		innermost.add(0, "end");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONBinaryWriter writer = new JSONBinaryWriter(out);
+		writer.write(deep);
+		writer.close();
+		byte[] bytes = out.toByteArray();
+
+		try {
+			new JSONBinaryReader(new ByteArrayInputStream(bytes)).read();
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum depth of 1024 exceeded"));
+		}
+		JSONArray array = new JSONBinaryReader(new ByteArrayInputStream(bytes)).setLimits(JSONLimits.DEFAULT.withMaxDepth(depth)).readArray();
+		for (int i = 1; i < depth; i++) {
+			array = array.getArray(0);
+		}
+		assertEquals("end", array.get(0));
+
+		out.reset();
+		writer = new JSONBinaryWriter(out);
+		writer.write(JSONObject.newEmptyInstance().put("a", "abcd").put("b", JSONArray.newEmptyInstance().add(0, 1).add(1, 2)));
+		writer.close();
+		bytes = out.toByteArray();
+		JSONLimits[] exceeded = {JSONLimits.DEFAULT.withMaxEntries(1), JSONLimits.DEFAULT.withMaxStringLength(3), JSONLimits.DEFAULT.withMaxDepth(1)};
+		for (JSONLimits limits : exceeded) {
+			try {
+				new JSONBinaryReader(new ByteArrayInputStream(bytes)).setLimits(limits).read();
+				fail("JSONException not thrown: " + limits);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+		new JSONBinaryReader(new ByteArrayInputStream(bytes)).setLimits(JSONLimits.DEFAULT.withMaxEntries(2).withMaxStringLength(4).withMaxDepth(2)).read();
+	}
+}
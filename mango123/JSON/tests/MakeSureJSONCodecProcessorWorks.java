@@ -0,0 +1,187 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONCodec;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONCodecProcessorWorks {
+	public static String order = "package sample;\n" +
+			"import java.util.List;\n" +
+			"import mango123.JSON.*;\n" +
+			"@JSONType public class Order {\n" +
+			"  int id; long total; double rate; boolean paid; String name; Integer maybe;\n" +
+			"  java.math.BigDecimal price; List<String> tags; List<Item> items; Item main;\n" +
+			"  JSONObject extra; transient int skipped; static int ignored;\n" +
+			"  @JSONType public static class Item { String sku; int qty; }\n" +
+			"}\n";
+
+	public static String json = "{\"id\": 7, \"unknown\": [1, {\"a\": null}], \"total\": 12345678901, " +
+			"\"rate\": 0.25, \"paid\": true, \"name\": \"a \\\"b\\\"\", \"maybe\": null, \"price\": 1.10, " +
+			"\"tags\": [\"x\", \"y\"], \"items\": [{\"sku\": \"s1\", \"qty\": 2}, {}], \"main\": null, " +
+			"\"extra\": {\"k\": [true]}, \"skipped\": 5}";
+
+	/**
+	 * Compiles the source with the processor and returns the class loader of the output,
+	 * or null if the compilation failed
+	 */
+	private static ClassLoader compile(String className, String source) throws Exception {
+		File dir = File.createTempFile("codec", "");
+		dir.delete();
+		File pkg = new File(dir, "sample");
+		pkg.mkdirs();
+		File file = new File(pkg, className + ".java");
+		FileWriter w = new FileWriter(file);
+		w.write(source);
+		w.close();
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null,
+				"-classpath", System.getProperty("java.class.path"),
+				"-processor", "mango123.JSON.processor.JSONCodecProcessor",
+				"-d", dir.getPath(), "-s", dir.getPath(), file.getPath());
+		if (result != 0) {
+			return null;
+		}
+		return new URLClassLoader(new URL[] {dir.toURI().toURL()}, MakeSureJSONCodecProcessorWorks.class.getClassLoader());
+	}
+
+	private static Object field(Object ob, String name) throws Exception {
+		Field f = ob.getClass().getDeclaredField(name);
+		f.setAccessible(true);
+		return f.get(ob);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGeneratedCodecReadsAndWrites() throws Exception {
+		ClassLoader loader = compile("Order", order);
+		assertTrue("generated codec does not compile", loader != null);
+		JSONCodec<Object> codec = (JSONCodec<Object>) loader.loadClass("sample.OrderJSONCodec").getField("INSTANCE").get(null);
+
+		Object ob = codec.read(new JSONTokener(json), 0);
+		assertEquals("int", 7, field(ob, "id"));
+		assertEquals("long", 12345678901L, field(ob, "total"));
+		assertEquals("double", 0.25, field(ob, "rate"));
+		assertEquals("boolean", true, field(ob, "paid"));
+		assertEquals("string", "a \"b\"", field(ob, "name"));
+		assertNull("boxed null", field(ob, "maybe"));
+		assertEquals("decimal", new BigDecimal("1.10"), field(ob, "price"));
+		assertEquals("list", Arrays.asList("x", "y"), field(ob, "tags"));
+		assertEquals("nested list", 2, ((List<?>) field(ob, "items")).size());
+		assertEquals("nested", "s1", field(((List<?>) field(ob, "items")).get(0), "sku"));
+		assertNull("nested null", field(ob, "main"));
+		assertTrue("JSONObject", field(ob, "extra") instanceof JSONObject);
+		assertEquals("transient", 0, field(ob, "skipped"));
+
+		StringBuilder out = new StringBuilder();
+		codec.write(ob, out);
+		JSONObject written = JSONObject.parse(new JSONTokener(out.toString()));
+		assertFalse("transient written", written.hasKey("skipped"));
+		assertEquals("round trip", out.toString(), toString(codec, codec.read(new JSONTokener(out.toString()), 0)));
+	}
+
+	private static String toString(JSONCodec<Object> codec, Object ob) throws Exception {
+		StringBuilder out = new StringBuilder();
+		codec.write(ob, out);
+		return out.toString();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGeneratedCodecRejectsWrongTypes() throws Exception {
+		ClassLoader loader = compile("Order", order);
+		JSONCodec<Object> codec = (JSONCodec<Object>) loader.loadClass("sample.OrderJSONCodec").getField("INSTANCE").get(null);
+		String[] invalid = {"{\"id\": \"7\"}", "{\"id\": 1.5}", "{\"paid\": null}", "[]", "{\"id\" 1}", "{\"tags\": [1]}",
+		                    "{\"unknown\": [1,]}", "{\"unknown\": {\"a\" 1}}", "{\"unknown\": }"};
+		for (String s : invalid) {
+			try {
+				codec.read(new JSONTokener(s), 0);
+				fail("JSONException not thrown: " + s);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+	}
+
+	public static String node = "package sample;\n" +
+			"import java.util.List;\n" +
+			"import mango123.JSON.*;\n" +
+			"@JSONType public class Node { Node next; List<Node> children; JSONArray extra; }\n";
+
+	/**
+	 * An object with the key, and n nested containers as its value
+	 */
+	private static String nest(String key, String open, String close, int n) {
+		StringBuilder s = new StringBuilder("{\"" + key + "\": ");
+		for (int i = 0; i < n; i++) {
+			s.append(open);
+		}
+		s.append("null");
+		for (int i = 0; i < n; i++) {
+			s.append(close);
+		}
+		return s.append("}").toString();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGeneratedCodecLimitsTheDepth() throws Exception {
+		ClassLoader loader = compile("Node", node);
+		assertTrue("generated codec does not compile", loader != null);
+		JSONCodec<Object> codec = (JSONCodec<Object>) loader.loadClass("sample.NodeJSONCodec").getField("INSTANCE").get(null);
+
+		//nested Nodes, a list of Nodes, a JSONArray and an unknown key, each at the limit and past it
+		String[] keys = {"next", "children", "extra", "unknown"};
+		String[] opens = {"{\"next\": ", "[{\"children\": ", "[", "["};
+		String[] closes = {"}", "}]", "]", "]"};
+		int[] levels = {1, 2, 1, 1};
+		for (int i = 0; i < keys.length; i++) {
+			int n = (1024 - 1) / levels[i]; //the most that fit inside the outer object
+			codec.read(new JSONTokener(nest(keys[i], opens[i], closes[i], n)), 0);
+			try {
+				codec.read(new JSONTokener(nest(keys[i], opens[i], closes[i], n + 1)), 0);
+				fail("JSONException not thrown: " + keys[i]);
+			} catch(JSONException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("maximum depth of 1024 exceeded"));
+			}
+		}
+
+		//a codec read inside other containers counts them as well
+		JSONLimits limits = JSONLimits.DEFAULT.withMaxDepth(3);
+		codec.read(new JSONTokener("{\"next\": {}}").setLimits(limits), 1);
+		try {
+			codec.read(new JSONTokener("{\"next\": {}}").setLimits(limits), 2);
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum depth of 3 exceeded"));
+		}
+	}
+
+	@Test
+	public void testProcessorRejectsPrivateFields() throws Exception {
+		String source = "package sample;\n@mango123.JSON.JSONType public class Bad { private int x; }\n";
+		assertNull("private field accepted", compile("Bad", source));
+	}
+}
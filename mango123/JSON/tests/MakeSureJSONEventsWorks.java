@@ -0,0 +1,105 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONBinaryWriter;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParser;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONEventsWorks {
+	@Test
+	public void testParseAndSerializeEventsAreRecorded() throws Exception {
+		String input = "{\"a\": [1, true, null, {\"b\": \"c\"}]}";
+		List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+		int written;
+		Path file = Files.createTempFile("json", ".jfr");
+		Recording recording = new Recording();
+		try {
+			recording.enable("mango123.JSON.Parse").withThreshold(Duration.ZERO);
+			recording.enable("mango123.JSON.Serialize").withThreshold(Duration.ZERO);
+			recording.start();
+			JSONObject ob = JSONObject.parse(new JSONTokener(input));
+			ob.toString();
+			ob.write(new StringWriter());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			JSONBinaryWriter writer = new JSONBinaryWriter(out);
+			writer.write(JSONArray.parse(new JSONTokener("[[], 1]")));
+			writer.flush();
+			written = out.size();
+			//a BigInteger longer than the buffer of the writer is written past it
+			StringBuilder b = new StringBuilder();
+			for (int i = 0; i < 30000; i++) {
+				b.append('9');
+			}
+			writer.write(JSONArray.parse(new JSONTokener("[" + b + "]")));
+			writer.close();
+			written = out.size() - written;
+			try {
+				JSONParser.parseArray("[1, 2");
+				fail("JSONException not thrown");
+			} catch(JSONException e) {
+				//IGNORE
+			}
+			recording.stop();
+			recording.dump(file);
+			for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+				if (e.getEventType().getName().startsWith("mango123.JSON.")) {
+					events.add(e);
+				}
+			}
+		} finally {
+			recording.close();
+			Files.delete(file);
+		}
+
+		assertEquals(8, events.size());
+		RecordedEvent parse = events.get(0);
+		assertEquals("mango123.JSON.Parse", parse.getEventType().getName());
+		assertEquals("object", parse.getString("type"));
+		assertEquals(input.length(), parse.getLong("chars"));
+		assertEquals(7, parse.getLong("elements"));
+		assertEquals(3, parse.getInt("depth"));
+		assertNull(parse.getString("error"));
+		assertEquals(Thread.currentThread().getName(), parse.getThread().getJavaName());
+
+		for (int i = 1; i <= 2; i++) {
+			RecordedEvent serialize = events.get(i);
+			assertEquals("mango123.JSON.Serialize", serialize.getEventType().getName());
+			assertEquals("json", serialize.getString("format"));
+			assertEquals(JSONParser.parseObject(input).toString().length(), serialize.getLong("size"));
+			assertEquals(7, serialize.getLong("elements"));
+		}
+
+		assertEquals("array", events.get(3).getString("type"));
+		RecordedEvent binary = events.get(4);
+		assertEquals("binary", binary.getString("format"));
+		assertTrue(binary.getLong("size") > 0);
+		assertEquals(3, binary.getLong("elements"));
+		assertEquals(2, binary.getInt("depth"));
+
+		assertEquals(written, events.get(6).getLong("size"));
+
+		RecordedEvent failed = events.get(7);
+		assertEquals("mango123.JSON.Parse", failed.getEventType().getName());
+		assertTrue(failed.getString("error").contains("Syntax error"));
+	}
+}
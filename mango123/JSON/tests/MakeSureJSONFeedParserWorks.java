@@ -0,0 +1,155 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONFeedParser;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParser;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONFeedParserWorks {
+	private static final String OBJECT = "{\"a\\u00E9\\n\": [1, -0.5e-3, 12345678901, 123456789012345678901, 1E400, true, false, null],"
+	        + " \"\u00e9\u4e2d\ud83d\ude00\": {\"x\": {}, \"y\": []}, \"0\": 0}";
+	private static final String ARRAY = "[\"\\\"\", [[]], {}]";
+
+	@Test
+	public void testEveryChunkBoundary() throws Exception {
+		String expected = JSONObject.parse(new JSONTokener(OBJECT)).toString();
+		String expectedArray = JSONArray.parse(new JSONTokener(ARRAY)).toString();
+		byte[] bytes = (OBJECT + "\n " + ARRAY + OBJECT).getBytes(StandardCharsets.UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			JSONFeedParser parser = new JSONFeedParser();
+			parser.feed(bytes, 0, split);
+			parser.feed(ByteBuffer.wrap(bytes, split, bytes.length - split));
+			parser.endOfInput();
+			assertEquals(expected, parser.poll().toString());
+			assertEquals(expectedArray, parser.poll().toString());
+			assertEquals(expected, parser.poll().toString());
+			assertNull(parser.poll());
+		}
+	}
+
+	@Test
+	public void testOneByteAtATime() throws Exception {
+		byte[] bytes = OBJECT.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(1);
+		JSONFeedParser parser = new JSONFeedParser();
+		for (int i = 0; i < bytes.length; i++) {
+			assertNull(parser.poll());
+			direct.clear();
+			direct.put(bytes[i]).flip();
+			parser.feed(direct);
+			assertEquals(i == bytes.length - 1, parser.isIdle());
+		}
+		assertEquals(JSONObject.parse(new JSONTokener(OBJECT)).toString(), parser.poll().toString());
+	}
+
+	@Test
+	public void testCannotParseIncorrectInput() throws Exception {
+		String[] invalid = {"1", "\"a\"", "{\"a\" 1}", "{\"a\": 1,}", "[1,]", "[1 2]", "{1: 2}", "[tru]", "[\"\\x\"]",
+		        "[\"\\u12g4\"]", "[-]", "[1.]", "[1e]", "[01]", "[}", "{]", "[\"\t\"]", "[1.5.]"};
+		for (String s : invalid) {
+			JSONFeedParser parser = new JSONFeedParser();
+			try {
+				parser.feed(s.getBytes(StandardCharsets.UTF_8));
+				fail("JSONException not thrown: " + s);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+			try {
+				parser.feed(new byte[] {' '});
+				fail("IllegalStateException not thrown: " + s);
+			} catch(IllegalStateException e) {
+				//IGNORE
+			}
+		}
+
+		byte[][] invalidUTF8 = {{'[', '"', (byte) 0xFF}, {'[', '"', (byte) 0xC3, 'a'}, {'[', '"', (byte) 0xC0, (byte) 0x80},
+		        {'[', '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80}};
+		for (byte[] b : invalidUTF8) {
+			try {
+				new JSONFeedParser().feed(b);
+				fail("JSONException not thrown");
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+	}
+
+	@Test
+	public void testEndOfInput() throws Exception {
+		for (String s : new String[] {"{", "[1", "[\"a", "{\"a\": tr", "[1, 2"}) {
+			JSONFeedParser parser = new JSONFeedParser();
+			parser.feed(s.getBytes(StandardCharsets.UTF_8));
+			assertFalse(parser.isIdle());
+			try {
+				parser.endOfInput();
+				fail("JSONException not thrown: " + s);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+
+		JSONFeedParser parser = new JSONFeedParser();
+		parser.feed(" [] ".getBytes(StandardCharsets.UTF_8));
+		parser.endOfInput();
+		assertTrue(parser.isIdle());
+		assertEquals("[]", parser.poll().toString());
+	}
+
+	@Test
+	public void testLimitsAndWhitespaceAreTheTokenersOnes() throws Exception {
+		JSONLimits limits = JSONLimits.DEFAULT.withMaxStringLength(5).withMaxNumberLength(4).withMaxDepth(3).withMaxEntries(3);
+		String[] accepted = {"[\"abcde\", 1234]", "[{\"a\": [-1.5]}]", "[1, 2, \"\\n\\n\\n\\n\\n\"]", "{\"a\": 1, \"a\": 2, \"b\": 3}"};
+		for (String input : accepted) {
+			JSONFeedParser parser = new JSONFeedParser().setLimits(limits);
+			parser.feed(input.getBytes(StandardCharsets.UTF_8));
+			JSONTokener tokener = new JSONTokener(input).setLimits(limits);
+			Object expected = input.charAt(0) == '{' ? JSONObject.parse(tokener) : JSONArray.parse(tokener);
+			assertEquals(expected.toString(), parser.poll().toString());
+		}
+
+		String[] rejected = {"[\"abcdef\"]", "[{\"abcdef\": 1}]", "[12345]", "[-1.25]", "[1e+10]", "[[[[]]]]", "[1, 2, 3, 4]"};
+		String[] messages = {"a string is longer than 5 chars", "a string is longer than 5 chars", "a number is longer than 4 chars",
+		        "a number is longer than 4 chars", "a number is longer than 4 chars", "maximum depth of 3 exceeded",
+		        "an object or array has more than 3 values"};
+		for (int i = 0; i < rejected.length; i++) {
+			JSONFeedParser parser = new JSONFeedParser().setLimits(limits);
+			try {
+				parser.feed(rejected[i].getBytes(StandardCharsets.UTF_8));
+				fail("JSONException not thrown: " + rejected[i]);
+			} catch(JSONException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("): " + messages[i]));
+			}
+		}
+
+		//the default depth is the tokener's
+		StringBuilder deep = new StringBuilder();
+		for (int i = 0; i < 1025; i++) {
+			deep.append('[');
+		}
+		try {
+			new JSONFeedParser().feed(deep.toString().getBytes(StandardCharsets.UTF_8));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("): maximum depth of 1024 exceeded"));
+		}
+
+		JSONFeedParser parser = new JSONFeedParser();
+		parser.feed("\u0085[1,\u00852]\u0085{\u0085\"a\"\u0085:\u00851\u0085}".getBytes(StandardCharsets.UTF_8));
+		assertEquals("[1,2]", parser.poll().toString());
+		assertEquals("{\"a\":1}", parser.poll().toString());
+	}
+}
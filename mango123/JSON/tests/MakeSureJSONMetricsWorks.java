@@ -0,0 +1,99 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONMetrics;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParser;
+import mango123.JSON.JSONTokener;
+
+/**
+ * Checks the metrics in whichever mode the JVM runs, enabled with -Dmango123.JSON.metrics=true
+ */
+public class MakeSureJSONMetricsWorks {
+	@Test
+	public void testMetricsAreCountedOnlyWhenEnabled() throws Exception {
+		final List<String> events = new ArrayList<String>();
+		JSONMetrics.Listener listener = new JSONMetrics.Listener() {
+			@Override
+			public void parsed(long chars, long tokens, int maxDepth, long nanos) {
+				events.add("parsed " + chars + " " + tokens + " " + maxDepth);
+			}
+
+			@Override
+			public void parseFailed(long chars, JSONException e) {
+				events.add("failed " + chars);
+			}
+
+			@Override
+			public void serialized(long chars, long nanos) {
+				events.add("serialized " + chars);
+			}
+		};
+		JSONMetrics metrics = JSONMetrics.get();
+		JSONMetrics.addListener(listener);
+		try {
+			metrics.reset();
+			String input = "{\"a\": [1, true, null, {\"b\": \"c\"}]}";
+			JSONObject ob = JSONObject.parse(new JSONTokener(input));
+			String output = ob.toString();
+			ob.write(new StringBuilder());
+			try {
+				JSONParser.parseArray("[1, 2");
+				fail("JSONException not thrown");
+			} catch(JSONException e) {
+				//IGNORE
+			}
+
+			if (!JSONMetrics.ENABLED) {
+				assertEquals(0, metrics.getDocumentsParsed());
+				assertEquals(0, metrics.getDocumentsSerialized());
+				assertEquals(0, events.size());
+				return;
+			}
+			assertEquals(1, metrics.getDocumentsParsed());
+			assertEquals(input.length(), metrics.getCharsParsed());
+			assertEquals(1, metrics.getSyntaxErrors());
+			assertEquals(3, metrics.getMaxDepth());
+			Map<String, Long> tokens = metrics.getTokenCounts();
+			assertEquals(Long.valueOf(3), tokens.get("string"));
+			assertEquals(Long.valueOf(1), tokens.get("number"));
+			assertEquals(Long.valueOf(1), tokens.get("boolean"));
+			assertEquals(Long.valueOf(1), tokens.get("null"));
+			assertEquals(Long.valueOf(2), tokens.get("object"));
+			assertEquals(Long.valueOf(1), tokens.get("array"));
+			assertEquals(Long.valueOf(8), tokens.get("symbol"));
+			assertEquals(2, metrics.getDocumentsSerialized());
+			assertEquals(2 * output.length(), metrics.getCharsSerialized());
+			long sum = 0;
+			for (long n : metrics.getParseLatencyHistogram()) {
+				sum += n;
+			}
+			assertEquals(1, sum);
+
+			assertEquals("parsed " + input.length() + " 17 3", events.get(0));
+			assertEquals("serialized " + output.length(), events.get(1));
+			assertEquals("serialized " + output.length(), events.get(2));
+			assertEquals("failed 5", events.get(3));
+
+			ObjectName name = new ObjectName("mango123.JSON:type=JSONMetrics");
+			assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+			assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "DocumentsParsed"));
+		} finally {
+			JSONMetrics.removeListener(listener);
+			metrics.reset();
+		}
+	}
+}
@@ -148,4 +148,225 @@ public class MakeSureJSONObjectWorks {
 			fail(".toString should return valid JSON: " + e.getMessage());
 		}
 	}
+
+	@Test
+	public void testFreezeMakesTheWholeDocumentImmutable() throws Exception {
+		JSONObject ob = JSONObject.parse(new JSONTokener(correctJSONString));
+		JSONObject nested = ob.getObject("object");
+		nested.freeze();
+		assertTrue("subtree frozen", nested.isFrozen());
+		assertFalse("parent not frozen", ob.isFrozen());
+		ob.put("int", 2);
+
+		assertSame(ob, ob.freeze());
+		assertTrue("array frozen", ob.getArray("array").isFrozen());
+		assertEquals("read after freeze", 2, ob.getInt("int").intValue());
+		try {
+			ob.put("int", 3);
+			fail("UnsupportedOperationException not thrown");
+		} catch(UnsupportedOperationException e) {
+			//IGNORE
+		}
+		try {
+			ob.getArray("array").setNull(0);
+			fail("UnsupportedOperationException not thrown");
+		} catch(UnsupportedOperationException e) {
+			//IGNORE
+		}
+	}
+
+	@Test
+	public void testWithReturnsUpdatedCopyAndLeavesOriginalUnchanged() throws Exception {
+		JSONObject ob = JSONObject.newEmptyInstance();
+		for (int i = 0; i < 2000; i++) {
+			ob.put("k" + i, i);
+		}
+		JSONArray nested = JSONArray.newEmptyInstance().add(0, 1);
+		ob.put("Aa", "colliding").put("BB", "hash").put("nested", nested);
+
+		JSONObject value = JSONObject.newEmptyInstance().put("a", 1);
+		JSONObject v1 = ob.with("k5", "five").with("new", true).with("value", value);
+		JSONObject v2 = v1.with("k1999", 0L).with("BB", 1.5).withNull("k0");
+
+		//the caller's containers are copied, not frozen
+		assertFalse("original mutable", ob.isFrozen());
+		assertFalse("value mutable", value.isFrozen());
+		nested.add(1, 2);
+		value.put("a", 2);
+		ob.put("later", 0);
+		assertEquals("nested copied", 1, v2.getArray("nested").size());
+		assertTrue("nested copy frozen", v2.getArray("nested").isFrozen());
+		assertEquals("value copied", 1, v2.getObject("value").getInt("a").intValue());
+		assertFalse("original changes not seen", v2.hasKey("later"));
+
+		assertTrue("copy frozen", v2.isFrozen());
+		assertEquals("original unchanged", 5, ob.getInt("k5").intValue());
+		assertNull("original unchanged", ob.get("new"));
+		assertEquals("v1", "five", v1.getString("k5"));
+		assertEquals("v1 unchanged", 1999, v1.getInt("k1999").intValue());
+		assertEquals("v2", 0L, v2.getLong("k1999").longValue());
+		assertEquals("collision", "colliding", v2.getString("Aa"));
+		assertEquals("collision", 1.5, v2.getDouble("BB"), 0);
+		assertTrue("null", v2.hasKey("k0") && v2.isNull("k0"));
+		assertTrue("new key", v2.getBoolean("new"));
+
+		JSONObject reparsed = JSONObject.parse(new JSONTokener(v2.toString()));
+		assertEquals("toString keeps the order", v2.toString(), reparsed.toString());
+		assertTrue("new keys last", reparsed.toString().endsWith("\"new\":true,\"value\":{\"a\":1}}"));
+
+		//converted once, then every update shares it
+		JSONObject base = ob.persistent();
+		assertTrue("persistent frozen", base.isFrozen());
+		assertSame("already persistent", base, base.persistent());
+		assertSame("with() result persistent", v2, v2.persistent());
+		assertEquals("same mappings", ob.toString(), base.toString());
+		assertFalse("original mutable", ob.isFrozen());
+		assertEquals("update of the base", "five", base.with("k5", "five").getString("k5"));
+		assertEquals("base unchanged", 5, base.getInt("k5").intValue());
+	}
+
+	@Test
+	public void testConcurrentInstanceSerializesWhileBeingModified() throws Exception {
+		final JSONObject ob = JSONObject.newConcurrentInstance();
+		final JSONArray arr = JSONArray.newConcurrentInstance();
+		ob.put("array", arr).putNull("null");
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						ob.put("k" + (i % 500), id * i);
+						if (i % 3 == 0) {
+							ob.clear();
+						}
+						if (i % 100 == 0) {
+							arr.add(0, "\"" + i);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+
+		for (int i = 0; i < 200; i++) {
+			JSONObject.parse(new JSONTokener(ob.toString()));
+		}
+		for (Thread t : writers) {
+			t.join();
+		}
+
+		ob.putNull("null");
+		assertTrue("null value", ob.hasKey("null") && ob.isNull("null"));
+		assertEquals("round trip", ob.toString(), JSONObject.parse(new JSONTokener(ob.toString())).toString());
+	}
+
+	@Test
+	public void testDeepDocumentsAreLimitedAndDoNotOverflowTheStack() throws Exception {
+		int depth = 100000;
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			str.append(i % 2 == 0 ? "{\"a\":" : "[");
+		}
+		str.append("null");
+		for (int i = depth - 1; i >= 0; i--) {
+			str.append(i % 2 == 0 ? '}' : ']');
+		}
+		String input = str.toString();
+
+		try {
+			JSONObject.parse(new JSONTokener(input));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum depth of 1024 exceeded"));
+		}
+
+		JSONObject ob = JSONObject.parse(new JSONTokener(input).setMaxDepth(depth));
+		assertEquals("round trip", input, ob.toString());
+		StringBuilder out = new StringBuilder();
+		ob.write(out);
+		assertEquals(input, out.toString());
+
+		assertEquals("{\"a\":[{}]}", JSONObject.parse(new JSONTokener("{\"a\": [{}]}").setMaxDepth(3)).toString());
+		try {
+			JSONObject.parse(new JSONTokener("{\"a\": [{}]}").setMaxDepth(2));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum depth of 2 exceeded"));
+		}
+	}
+
+	@Test
+	public void testRawNumbersAreDecodedOnFirstReadLikeAuto() throws Exception {
+		String input = "{\"int\": -12, \"long\": 12345678901, \"big\": 123456789012345678901234, \"double\": 2.50, \"decimal\": 1e400, \"s\": \"7\"}";
+		JSONObject auto = JSONObject.parse(new JSONTokener(input));
+		JSONObject raw = JSONObject.parse(new JSONTokener(input).setNumberPolicy(JSONNumberPolicy.RAW));
+		for (String key : new String[] {"int", "long", "big", "double", "decimal", "s"}) {
+			assertEquals(key, auto.getInt(key), raw.getInt(key));
+			assertEquals(key, auto.getLong(key), raw.getLong(key));
+			assertEquals(key, auto.getBigInt(key), raw.getBigInt(key));
+			assertEquals(key, auto.getDouble(key), raw.getDouble(key));
+			assertEquals(key, auto.getDecimal(key), raw.getDecimal(key));
+		}
+		assertSame(raw.getBigInt("big"), raw.getBigInt("big"));
+		assertSame(raw.getDecimal("decimal"), ((JSONNumber) raw.get("decimal")).toNumber());
+		assertEquals(2.5, ((JSONNumber) raw.get("double")).doubleValue(), 0);
+
+		//reading does not change how they are written
+		assertEquals(input.replace(" ", ""), raw.toString());
+		JSONArray array = JSONArray.parse(new JSONTokener("[1, 2.0, -3e2]").setNumberPolicy(JSONNumberPolicy.RAW));
+		assertEquals(Integer.valueOf(1), array.getInt(0));
+		assertEquals(Double.valueOf(2.0), array.getDouble(1));
+		assertEquals(Double.valueOf(-300), array.getDouble(2));
+		assertNull(array.getLong(0));
+		assertEquals("[1,2.0,-3e2]", array.toString());
+	}
+
+	@Test
+	public void testEqualsIsStructuralAndNumberAware() throws Exception {
+		JSONObject a = JSONObject.parse(new JSONTokener("{\"a\": 1, \"b\": [0.1, true, null, \"s\"], \"c\": {\"d\": 1e20}}"));
+		JSONObject b = JSONObject.newEmptyInstance()
+				.put("c", JSONObject.newEmptyInstance().put("d", new BigDecimal("100000000000000000000")))
+				.put("b", JSONArray.parse(new JSONTokener("[0.1, true, null, \"s\"]")).add(4, Long.valueOf(2)))
+				.put("a", new BigDecimal("1.00"));
+		assertNotEquals(a, b);
+		a.getArray("b").add(4, Double.valueOf(2.0));
+		assertEquals(a, b);
+		assertEquals(b, a);
+		assertEquals(a.hashCode(), b.hashCode());
+		JSONObject raw = JSONObject.parse(new JSONTokener(a.toString()).setNumberPolicy(JSONNumberPolicy.RAW));
+		assertEquals(a, raw);
+		assertEquals(a.hashCode(), raw.hashCode());
+
+		//order matters in arrays, and a missing key is not a null one
+		assertNotEquals(JSONArray.parse(new JSONTokener("[1, 2]")), JSONArray.parse(new JSONTokener("[2, 1]")));
+		assertNotEquals(JSONObject.parse(new JSONTokener("{\"a\": null}")), JSONObject.parse(new JSONTokener("{\"b\": null}")));
+		assertNotEquals(JSONObject.parse(new JSONTokener("{\"a\": \"1\"}")), JSONObject.parse(new JSONTokener("{\"a\": 1}")));
+		assertNotEquals(JSONObject.parse(new JSONTokener("{\"a\": {}}")), JSONObject.parse(new JSONTokener("{\"a\": []}")));
+		assertNotEquals(JSONObject.parse(new JSONTokener("{\"a\": 0.1}")), JSONObject.parse(new JSONTokener("{\"a\": 0.10000000000000001}")).put("a", new BigDecimal("0.10000000000000001")));
+
+		//the hash is computed every time until it is frozen
+		int before = b.hashCode();
+		b.getObject("c").put("e", Integer.valueOf(3));
+		assertNotEquals(a, b);
+		assertNotEquals(before, b.hashCode());
+		a.getObject("c").put("e", Double.valueOf(3));
+		assertEquals(a.freeze(), b.freeze());
+		assertEquals(a.hashCode(), b.hashCode());
+		assertEquals(a.with("f", "g").hashCode(), b.with("f", "g").hashCode());
+		assertNotEquals(a, b.with("f", "g"));
+	}
+
+	@Test
+	public void testDeepDocumentsCanBeCompared() throws Exception {
+		int depth = 100000;
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < depth; i++) b.append("{\"a\":[");
+		for (int i = 0; i < depth; i++) b.append("]}");
+		JSONObject x = JSONObject.parse(new JSONTokener(b.toString()).setMaxDepth(2 * depth));
+		JSONObject y = JSONObject.parse(new JSONTokener(b.toString()).setMaxDepth(2 * depth));
+		assertEquals(x, y);
+		assertEquals(x.hashCode(), y.hashCode());
+	}
 }
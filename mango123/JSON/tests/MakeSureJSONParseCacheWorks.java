@@ -0,0 +1,83 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONParseCache;
+
+public class MakeSureJSONParseCacheWorks {
+	@Test
+	public void testHitsReturnTheSameFrozenDocument() throws Exception {
+		JSONParseCache cache = new JSONParseCache(1 << 20);
+		String input = "{\"a\": [1, 2.5, \"x\"], \"b\": {\"c\": null}}";
+		JSONObject first = cache.parseObject(input);
+		assertTrue(first.isFrozen());
+		assertTrue(first.getArray("a").isFrozen());
+		assertSame(first, cache.parseObject(new String(input)));
+		assertNotSame(first, cache.parseObject(input.getBytes(StandardCharsets.UTF_8)));
+		assertSame(cache.parseObject(input.getBytes(StandardCharsets.UTF_8)), cache.parseObject(input.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(3, cache.hitCount());
+		assertEquals(2, cache.missCount());
+		assertEquals(2, cache.size());
+		assertTrue(cache.estimatedBytes() > 0);
+
+		//inputs of the same length are told apart
+		assertEquals("{\"a\":2}", cache.parseObject("{\"a\": 2}").toString());
+		assertEquals("{\"a\":3}", cache.parseObject("{\"a\": 3}").toString());
+		assertEquals("[3]", cache.parseArray("[3]").toString());
+		assertSame(cache.parseArray("[3]"), cache.parseArray("[3]"));
+
+		//a reused byte array does not change the cached key
+		byte[] buffer = "[4]".getBytes(StandardCharsets.UTF_8);
+		JSONArray four = cache.parseArray(buffer);
+		buffer[1] = '5';
+		assertEquals("[5]", cache.parseArray(buffer).toString());
+		assertSame(four, cache.parseArray("[4]".getBytes(StandardCharsets.UTF_8)));
+
+		try {
+			cache.parseArray(input);
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			//IGNORE
+		}
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.estimatedBytes());
+	}
+
+	@Test
+	public void testCacheIsBoundedByEstimatedBytes() throws Exception {
+		JSONParseCache cache = new JSONParseCache(64 * 1024);
+		for (int i = 0; i < 2000; i++) {
+			cache.parseArray("[" + i + ", \"some string value\", {\"key\": " + i + "}]");
+		}
+		assertTrue(cache.estimatedBytes() <= cache.maxBytes());
+		assertTrue(cache.evictionCount() > 0);
+		assertEquals(2000, cache.missCount());
+		assertEquals(2000 - cache.evictionCount(), cache.size());
+
+		//the most recently used are kept
+		JSONArray last = cache.parseArray("[1999, \"some string value\", {\"key\": 1999}]");
+		assertEquals(1, cache.hitCount());
+		assertSame(last, cache.parseArray("[1999, \"some string value\", {\"key\": 1999}]"));
+
+		//too large to be cached
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++) {
+			b.append(i).append(',');
+		}
+		b.append("0]");
+		JSONArray large = cache.parseArray(b.toString());
+		assertNotSame(large, cache.parseArray(b.toString()));
+	}
+}
@@ -0,0 +1,264 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONArray;
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONNumberPolicy;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTape;
+import mango123.JSON.JSONTokener;
+
+public class MakeSureJSONTapeWorks {
+	private static final String DOCUMENT = "{\"id\": 12, \"long\": -12345678901, \"big\": 123456789012345678901234, "
+	        + "\"double\": -1.5e3, \"decimal\": 1e400, \"name\": \"a\\\"b\\u00E9\", \"ok\": true, \"no\": false, "
+	        + "\"nothing\": null, \"empty\": {}, \"list\": [1, [], [2, {\"x\": \"y\"}], \"z\"]}";
+
+	@Test
+	public void testTapeEqualsTree() throws Exception {
+		String[] inputs = {DOCUMENT, "[]", "{}", "[[[[]]], {\"a\": [{}]}]", "  [0, -0, 0.5, 9223372036854775807, -9223372036854775808, 9223372036854775808]  "};
+		for (String s : inputs) {
+			Object expected = s.trim().charAt(0) == '{'
+			        ? JSONObject.parse(new JSONTokener(s)) : JSONArray.parse(new JSONTokener(s));
+			assertEquals(s, expected.toString(), JSONTape.parse(s).cursor().get().toString());
+			assertEquals(s, expected.toString(), JSONTape.parse(new StringReader(s)).cursor().get().toString());
+		}
+	}
+
+	@Test
+	public void testCursorGetters() throws Exception {
+		JSONTape.Cursor c = JSONTape.parse(DOCUMENT).cursor();
+		assertTrue(c.isObject());
+		assertEquals(11, c.size());
+
+		assertTrue(c.find("id"));
+		assertEquals(Integer.valueOf(12), c.getInt());
+		assertNull(c.getLong());
+		assertTrue(c.next());
+		assertEquals("long", c.key());
+		assertEquals(Long.valueOf(-12345678901L), c.getLong());
+		assertNull(c.getInt());
+		assertTrue(c.next());
+		assertEquals(new BigInteger("123456789012345678901234"), c.getBigInt());
+		assertTrue(c.next());
+		assertEquals(Double.valueOf(-1500), c.getDouble());
+		assertTrue(c.next());
+		assertEquals(new BigDecimal("1e400"), c.getDecimal());
+		assertTrue(c.next());
+		assertEquals("a\"b\u00E9", c.getString());
+		assertTrue(c.next());
+		assertEquals(Boolean.TRUE, c.getBoolean());
+		assertTrue(c.next());
+		assertEquals(Boolean.FALSE, c.getBoolean());
+		assertTrue(c.next());
+		assertTrue(c.isNull());
+		assertTrue(c.next());
+		assertFalse("empty object", c.down());
+		assertEquals(0, c.size());
+		assertTrue(c.next());
+		assertFalse("last value", c.next());
+
+		assertTrue(c.isArray());
+		assertEquals(4, c.size());
+		assertTrue(c.at(2));
+		assertTrue(c.at(1));
+		assertTrue(c.find("x"));
+		assertEquals("y", c.getString());
+		assertTrue(c.up());
+		assertTrue(c.up());
+		assertTrue(c.up());
+		assertFalse(c.at(4));
+		assertTrue(c.up());
+		assertFalse("root", c.up());
+		assertFalse(c.find("missing"));
+		assertTrue(c.isObject());
+	}
+
+	@Test
+	public void testDeepAndLargeDocuments() throws Exception {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			b.append('[');
+		}
+		for (int i = 0; i < 100000; i++) {
+			b.append(']');
+		}
+		JSONTape.parse(b.toString(), JSONLimits.DEFAULT.withMaxDepth(100000), JSONNumberPolicy.AUTO);
+		try {
+			JSONTape.parse(b.toString());
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("): maximum depth of 1024 exceeded"));
+		}
+
+		//copied out of the tape without recursing
+		b.setLength(0);
+		for (int i = 0; i < 50000; i++) {
+			b.append("{\"a\": [1, ");
+		}
+		b.append("true");
+		for (int i = 0; i < 50000; i++) {
+			b.append("], \"b\": null}");
+		}
+		Object value = JSONTape.parse(b.toString(), JSONLimits.DEFAULT.withMaxDepth(100000), JSONNumberPolicy.AUTO).cursor().get();
+		for (int i = 0; i < 50000; i++) {
+			JSONObject ob = (JSONObject) value;
+			assertTrue(ob.isNull("b"));
+			JSONArray array = ob.getArray("a");
+			assertEquals(2, array.length());
+			assertEquals(1, array.get(0));
+			value = array.get(1);
+		}
+		assertEquals(Boolean.TRUE, value);
+
+		b.setLength(0);
+		b.append("[\"");
+		for (int i = 0; i < 50000; i++) {
+			b.append("ab\\n");
+		}
+		b.append("\"");
+		for (int i = 0; i <= 10000; i++) {
+			b.append(",1");
+		}
+		b.append(']');
+		JSONTape.Cursor c = JSONTape.parse(new StringReader(b.toString())).cursor();
+		assertEquals(10002, c.size());
+		assertTrue(c.down());
+		assertEquals(150000, c.getString().length());
+
+		//a run of plain chars that ends at a refill of the buffer
+		b.setLength(0);
+		b.append("[\"");
+		for (int i = 0; i < 20000; i++) {
+			b.append('a');
+		}
+		b.append("\"]");
+		c = JSONTape.parse(new StringReader(b.toString())).cursor();
+		assertTrue(c.down());
+		assertEquals(20000, c.getString().length());
+	}
+
+	@Test
+	public void testOffHeapTape() throws Exception {
+		JSONTape tape = JSONTape.parseOffHeap(new StringReader(DOCUMENT));
+		assertEquals(JSONTape.parse(DOCUMENT).cursor().get().toString(), tape.cursor().get().toString());
+		JSONTape.Cursor c = tape.cursor();
+		assertTrue(c.find("name"));
+		tape.close();
+		try {
+			c.getString();
+			fail("IllegalStateException not thrown");
+		} catch(IllegalStateException e) {
+			//IGNORE
+		}
+		tape.close();
+
+		//spans many chunks of words and chars
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < 200000; i++) {
+			b.append(i == 0 ? "" : ",").append("{\"key\": \"value ").append(i).append("\", \"n\": ").append(i).append('}');
+		}
+		b.append(']');
+		String s = b.toString();
+		tape = JSONTape.parseOffHeap(new StringReader(s));
+		try {
+			assertTrue(tape.tapeLength() > 1 << 18);
+			assertTrue(tape.charLength() > 1 << 21);
+			c = tape.cursor();
+			assertEquals(200000, c.size());
+			assertTrue(c.at(199999));
+			assertTrue(c.find("key"));
+			assertEquals("value 199999", c.getString());
+			assertEquals(JSONTape.parse(s).cursor().get().toString(), tape.cursor().get().toString());
+		} finally {
+			tape.close();
+		}
+
+		try {
+			JSONTape.parseOffHeap(new StringReader("[1, 2"));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			//IGNORE
+		}
+	}
+
+	@Test
+	public void testLimitsAndNumberPolicyAreTheTokenersOnes() throws Exception {
+		JSONLimits limits = JSONLimits.DEFAULT.withMaxChars(30).withMaxStringLength(5).withMaxNumberLength(4).withMaxDepth(3).withMaxEntries(3);
+		String[] accepted = {"[\"abcde\", 1234]", "[{\"a\": [-1.5]}]", "[1, 2, \"\\n\\n\\n\\n\\n\"]", "[[[]]]"};
+		for (String input : accepted) {
+			assertEquals(JSONArray.parse(new JSONTokener(input).setLimits(limits)).toString(),
+			        JSONTape.parse(input, limits, JSONNumberPolicy.AUTO).cursor().get().toString());
+		}
+
+		String[] rejected = {"[\"abcdef\"]", "[{\"abcdef\": 1}]", "[12345]", "[-1.25]", "[1e+10]", "[[[[]]]]", "[1, 2, 3, 4]",
+		        "[1,                           2]"};
+		String[] messages = {"a string is longer than 5 chars", "a string is longer than 5 chars", "a number is longer than 4 chars",
+		        "a number is longer than 4 chars", "a number is longer than 4 chars", "maximum depth of 3 exceeded",
+		        "an object or array has more than 3 values", "the input is longer than 30 chars"};
+		for (int i = 0; i < rejected.length; i++) {
+			try {
+				JSONArray.parse(new JSONTokener(rejected[i]).setLimits(limits));
+				fail("JSONException not thrown: " + rejected[i]);
+			} catch(JSONException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("): " + messages[i]));
+			}
+			for (int j = 0; j < 2; j++) {
+				try {
+					if (j == 0) {
+						JSONTape.parse(rejected[i], limits, JSONNumberPolicy.AUTO);
+					}
+					else {
+						JSONTape.parseOffHeap(new StringReader(rejected[i]), limits, JSONNumberPolicy.AUTO);
+					}
+					fail("JSONException not thrown: " + rejected[i]);
+				} catch(JSONException e) {
+					assertTrue(e.getMessage(), e.getMessage().contains("): " + messages[i]));
+				}
+			}
+		}
+
+		//NEL is whitespace as it is for the tokener
+		assertEquals("[1,2]", JSONTape.parse("\u0085[1,\u00852]\u0085").cursor().get().toString());
+
+		String input = "[1, 12345678901, 1.5, 1e400]";
+		for (JSONNumberPolicy policy : JSONNumberPolicy.values()) {
+			JSONArray expected = JSONArray.parse(new JSONTokener(input).setNumberPolicy(policy));
+			JSONTape.Cursor c = JSONTape.parse(new StringReader(input), JSONLimits.DEFAULT, policy).cursor();
+			assertEquals(expected.toString(), c.get().toString());
+			assertTrue(c.down());
+			for (int i = 0; i < expected.size(); i++, c.next()) {
+				assertEquals(policy + " " + i, expected.getInt(i), c.getInt());
+				assertEquals(policy + " " + i, expected.getLong(i), c.getLong());
+				assertEquals(policy + " " + i, expected.getDouble(i), c.getDouble());
+				assertEquals(policy + " " + i, expected.getDecimal(i), c.getDecimal());
+				assertEquals(policy + " " + i, expected.get(i).getClass(), c.get().getClass());
+			}
+		}
+	}
+
+	@Test
+	public void testCannotParseIncorrectInput() {
+		String[] invalid = {"", "1", "\"a\"", "{", "[", "{\"a\" 1}", "{\"a\": 1,}", "[1,]", "[1 2]", "{1: 2}", "[tru]",
+		        "[\"a]", "[\"\\x\"]", "[\"\\u12g4\"]", "[-]", "[1.]", "[1e]", "{} {}", "[}", "{]", "[\"\t\"]"};
+		for (String s : invalid) {
+			try {
+				JSONTape.parse(s);
+				fail("JSONException not thrown: " + s);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+	}
+}
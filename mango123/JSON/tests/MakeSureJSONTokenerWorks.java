@@ -58,4 +58,171 @@ public class MakeSureJSONTokenerWorks {
 			}
 		}
 	}
+
+	@Test
+	public void testResetReusesTokenerForNewInput() throws Exception {
+		StringBuilder big = new StringBuilder("[");
+		for (int i = 0; i < 5000; i++) {
+			big.append(i).append(',');
+		}
+		String bigArray = big.append("\"end\"]").toString();
+
+		JSONTokener tokener = new JSONTokener("\"unfinished");
+		for (int i = 0; i < 3; i++) {
+			assertEquals("1.5", tokener.reset("  1.5 ").nextToken());
+			assertNull(tokener.nextToken());
+
+			JSONArray arr = JSONArray.parse(tokener.reset(bigArray));
+			assertEquals(5001, arr.size());
+			assertEquals("end", arr.get(5000));
+
+			JSONObject ob = JSONObject.parse(tokener.reset(new StringReader("{\"a\":\r1}")));
+			assertEquals(1, ob.getInt("a").intValue());
+		}
+	}
+
+	@Test
+	public void testJSONParserFacade() throws Exception {
+		assertEquals(1, JSONParser.parseObject("{\"a\": 1}").getInt("a").intValue());
+		assertEquals("b", JSONParser.parseArray(new StringReader("[\"b\"]")).get(0));
+		try {
+			JSONParser.parseObject("{\"a\": ");
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			//IGNORE
+		}
+		assertEquals(2, JSONParser.parseObject("{\"a\": 2}").getInt("a").intValue());
+	}
+
+	@Test
+	public void testSyntaxErrorPosition() throws Exception {
+		String[] inputs = {"[{\n  \"a\": 1,\r\n  \"b\" 2\n}]", "[1,\n\n  tru]", "[\u2028 1 \u0085 ,\f x]"};
+		String[] expected = {"Syntax error (line 3 char 6): missing ':' near '[{   \"a\": 1,    \"b\" 2 }]'",
+		        "Syntax error (line 3 char 5): Unrecognized symbol starting with 't' near '[1,    tru]'",
+		        "Syntax error (line 4 char 1): Unrecognized symbol starting with 'x' near '[\u2028 1 \u0085 ,  x]'"};
+		for (int i = 0; i < inputs.length; i++) {
+			try {
+				JSONArray.parse(new JSONTokener(inputs[i]));
+				fail("JSONException not thrown");
+			} catch(JSONException e) {
+				assertEquals(expected[i], e.getMessage());
+			}
+		}
+
+		//lines of the chars before a buffer refill are counted
+		StringBuilder big = new StringBuilder("[");
+		int lines = 1;
+		for (int i = 0; i < 3000; i++) {
+			big.append(i % 7 == 0 ? "1,\n" : i % 11 == 0 ? "2,\r\n\t" : "3, ");
+			lines += i % 7 == 0 || i % 11 == 0 ? 1 : 0;
+		}
+		try {
+			JSONArray.parse(new JSONTokener(new StringReader(big.append("  x]").toString())));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Syntax error (line " + lines + " char 11): "));
+			assertTrue(e.getMessage(), e.getMessage().endsWith(" near '3, 3, 3, 1, 3, 3, 3,   x]'"));
+		}
+	}
+
+	@Test
+	public void testLimitsAreCheckedAsTheInputIsRead() throws Exception {
+		JSONLimits limits = JSONLimits.DEFAULT.withMaxChars(30).withMaxStringLength(5).withMaxNumberLength(4).withMaxDepth(3).withMaxEntries(3);
+		String[] accepted = {"[\"abcde\", 1234]", "{\"a\": [-1.5]}", "[1, 2, \"\\n\\n\\n\\n\\n\"]", "{\"a\": 1, \"a\": 2, \"b\": 3}"};
+		for (String input : accepted) {
+			JSONParser.parseObject("{\"x\": " + input + "}"); //valid without the limits
+			JSONArray.parse(new JSONTokener(new StringReader("[" + input + "]")).setLimits(limits));
+		}
+
+		String[] rejected = {"[\"abcdef\"]", "[{\"abcdef\": 1}]", "[12345]", "[-1.25]", "[1e+10]", "[[[[]]]]", "[1, 2, 3, 4]",
+		        "[1,                           2]"};
+		String[] messages = {"a string is longer than 5 chars", "a string is longer than 5 chars", "a number is longer than 4 chars",
+		        "a number is longer than 4 chars", "a number is longer than 4 chars", "maximum depth of 3 exceeded",
+		        "an object or array has more than 3 values", "the input is longer than 30 chars"};
+		for (int i = 0; i < rejected.length; i++) {
+			for (JSONTokener tokener : new JSONTokener[] {new JSONTokener(rejected[i]), new JSONTokener(new StringReader(rejected[i]))}) {
+				try {
+					JSONArray.parse(tokener.setLimits(limits));
+					fail("JSONException not thrown: " + rejected[i]);
+				} catch(JSONException e) {
+					assertTrue(e.getMessage(), e.getMessage().contains("): " + messages[i]));
+				}
+			}
+		}
+
+		//the limits are kept by .reset(), and a long input fails before it is read to the end
+		JSONTokener tokener = new JSONTokener("").setLimits(limits);
+		assertEquals(30, tokener.reset("[1]").getLimits().maxChars());
+		assertEquals(3, tokener.getMaxDepth());
+		StringBuilder big = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++) {
+			big.append("1, ");
+		}
+		final int[] read = new int[1];
+		tokener.reset(new StringReader(big.append("1]").toString()) {
+			@Override
+			public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+				int n = super.read(buffer, offset, length);
+				read[0] += Math.max(n, 0);
+				return n;
+			}
+		});
+		try {
+			JSONArray.parse(tokener.setLimits(limits.withMaxEntries(100000)));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("the input is longer than 30 chars"));
+		}
+		assertTrue("read " + read[0], read[0] <= 31);
+	}
+
+	@Test
+	public void testTryParseAndValidateReturnTheError() throws Exception {
+		String[] inputs = {"{\"a\": [1, -2.5e3, \"x\\u0041\", true, false, null, {}, []]}", "[]", "{\"a\" 1}", "[1, 2", "[tru]", "[\"a\tb\"]",
+		        "[\"\\q\"]", "[1.]", "[-]", "[1] 2", "{\"a\": 1,}", "[1,]", "", "  ", "[1 2]", "{1: 2}", "[\"abc", "[01]", "{\"a\": {\"b\": [[]] }", "]"};
+		String[] errors = {null, null, "UNEXPECTED_TOKEN at offset 5", "UNEXPECTED_END at offset 5", "INVALID_TOKEN at offset 4", "INVALID_STRING at offset 3",
+		        "INVALID_STRING at offset 3", "INVALID_NUMBER at offset 3", "INVALID_NUMBER at offset 2", "TRAILING_INPUT at offset 4",
+		        "UNEXPECTED_TOKEN at offset 8", "UNEXPECTED_TOKEN at offset 3", "UNEXPECTED_END at offset 0", "UNEXPECTED_END at offset 2",
+		        "UNEXPECTED_TOKEN at offset 3", "UNEXPECTED_TOKEN at offset 1", "UNEXPECTED_END at offset 5", "UNEXPECTED_TOKEN at offset 2",
+		        "UNEXPECTED_END at offset 18", "UNEXPECTED_TOKEN at offset 0"};
+		for (int i = 0; i < inputs.length; i++) {
+			boolean valid;
+			try {
+				if (inputs[i].startsWith("[")) {
+					JSONParser.parseArray(inputs[i]);
+				}
+				else {
+					JSONParser.parseObject(inputs[i]);
+				}
+				valid = true;
+			} catch(JSONException e) {
+				valid = false;
+			}
+			assertEquals(inputs[i], errors[i] == null, valid);
+
+			JSONParseResult<Void> validated = JSONParser.validate(inputs[i]);
+			assertEquals(inputs[i], errors[i] == null ? "valid" : errors[i], validated.toString());
+			JSONParseResult<?> parsed = inputs[i].startsWith("[") ? JSONParser.tryParseArray(inputs[i]) : JSONParser.tryParseObject(inputs[i]);
+			assertEquals(inputs[i], validated.toString(), parsed.toString());
+			assertEquals(inputs[i], valid, parsed.getValue() != null);
+			assertEquals(valid ? -1 : validated.getOffset(), parsed.getOffset());
+		}
+
+		JSONParseResult<JSONObject> result = JSONParser.tryParseObject("{\"a\": [1]}");
+		assertTrue(result.isValid());
+		assertEquals(null, result.getError());
+		assertEquals(Integer.valueOf(1), result.getValue().getArray("a").getInt(0));
+		assertEquals(JSONParseResult.Error.UNEXPECTED_TOKEN, JSONParser.tryParseObject("[1]").getError());
+
+		//the limits are checked, and the tokener throws detailed exceptions again afterwards
+		JSONTokener tokener = new JSONTokener("[[1, 2, 3]]").setLimits(JSONLimits.DEFAULT.withMaxEntries(2));
+		assertEquals("LIMIT_EXCEEDED at offset 8", JSONParser.validate(tokener).toString());
+		assertEquals("LIMIT_EXCEEDED at offset 8", JSONArray.tryParse(tokener.reset("[[1, 2, 3]]")).toString());
+		try {
+			JSONArray.parse(tokener.reset("[[1, 2, 3]]"));
+			fail("JSONException not thrown");
+		} catch(JSONException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Syntax error (line 1 char 8): an object or array has more than 2 values"));
+		}
+	}
 }
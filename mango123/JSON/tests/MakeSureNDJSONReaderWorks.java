@@ -0,0 +1,142 @@
+package mango123.JSON.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import mango123.JSON.JSONException;
+import mango123.JSON.JSONLimits;
+import mango123.JSON.JSONNumberPolicy;
+import mango123.JSON.JSONObject;
+import mango123.JSON.JSONTokener;
+import mango123.JSON.NDJSONReader;
+
+public class MakeSureNDJSONReaderWorks {
+	public static String[] deviations = {
+		"{}",
+		"{\"id\": 1, \"name\": \"x\"}",
+		"{\"id\": 1, \"name\": \"x\", \"value\": 1.5, \"ok\": true, \"extra\": [1]}",
+		"{\"id\": 1, \"nam\": \"x\", \"value\": 1.5, \"ok\": true}",
+		"{\"id\": 1, \"names\": \"x\", \"value\": 1.5, \"ok\": true}",
+		"{\"i\\u0064\": 1, \"name\": \"x\", \"value\": 1.5, \"ok\": true}",
+		"{\"id\": \"1\", \"name\": 2, \"value\": 3, \"ok\": null}",
+		"{\"id\": 12345678901, \"name\": \"x\", \"value\": 1e400, \"ok\": false}",
+		"{\"id\": 123456789012345678901, \"name\": {\"a\": []}, \"value\": -0.0, \"ok\": true}",
+		"{\"ok\": true, \"value\": 1.5, \"name\": \"x\", \"id\": 1}",
+	};
+
+	/**
+	 * Returns records with the same shape, followed by the deviations, repeated
+	 */
+	private static List<String> records() {
+		List<String> records = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			records.add("{\"id\": " + (i * 1000003) + ", \"name\": \"n\\\"" + i + "\", \"value\": " + i + ".5, \"ok\": " + (i % 2 == 0) + "}");
+		}
+		for (int n = 0; n < 3; n++) {
+			for (String s : deviations) {
+				records.add(s);
+			}
+		}
+		return records;
+	}
+
+	@Test
+	public void testSpecializedRecordsEqualGenericParse() throws Exception {
+		List<String> records = records();
+		StringBuilder input = new StringBuilder();
+		for (String s : records) {
+			input.append(s).append('\n');
+		}
+
+		NDJSONReader reader = new NDJSONReader(new JSONTokener(input.toString()), 8);
+		for (int i = 0; i < records.size(); i++) {
+			JSONObject ob = reader.next();
+			JSONObject expected = JSONObject.parse(new JSONTokener(records.get(i)));
+			assertEquals("record " + i, expected.toString(), ob.toString());
+			if (i == 10) {
+				assertTrue("specialized", reader.isSpecialized());
+			}
+		}
+		assertNull("end of input", reader.next());
+	}
+
+	@Test
+	public void testSpecializedRecordsFollowTheNumberPolicy() throws Exception {
+		NDJSONReader reader = new NDJSONReader(new JSONTokener("{\"a\": 1, \"b\": 2.5}\n{\"a\": 3, \"b\": 4.25}\n{\"a\": 5, \"b\": 6.0}")
+		        .setNumberPolicy(JSONNumberPolicy.ALL_DECIMAL), 2);
+		for (JSONObject ob = reader.next(); ob != null; ob = reader.next()) {
+			assertTrue(ob.toString(), ob.get("a") instanceof BigDecimal && ob.get("b") instanceof BigDecimal);
+		}
+		assertTrue("specialized", reader.isSpecialized());
+	}
+
+	@Test
+	public void testNoShapeIsInferredForDifferentRecords() throws Exception {
+		NDJSONReader reader = new NDJSONReader(new JSONTokener("{\"a\": 1} {\"b\": 1} {\"a\": 1}"), 2);
+		while (reader.next() != null) {
+			assertFalse("specialized", reader.isSpecialized());
+		}
+	}
+
+	@Test
+	public void testSyntaxErrorsAreDetectedWhenSpecialized() throws Exception {
+		String[] invalid = {"{\"a\": 1 \"b\": 2}", "{\"a\" 1, \"b\": 2}", "{\"a\": 1,}", "{\"a\": 1, \"b\": }", "[1]", "{\"a\": 1, \"b\": 2"};
+		for (String s : invalid) {
+			NDJSONReader reader = new NDJSONReader(new JSONTokener("{\"a\": 1, \"b\": 2}\n" + s), 1);
+			reader.next();
+			assertTrue("specialized", reader.isSpecialized());
+			try {
+				reader.next();
+				fail("JSONException not thrown: " + s);
+			} catch(JSONException e) {
+				//IGNORE
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyRecordsAreSpecialized() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append("{}\n");
+		}
+		input.append("{\"a\": 1}\n{ }\n");
+		NDJSONReader reader = new NDJSONReader(new JSONTokener(input.toString()));
+		for (int i = 0; i < 200; i++) {
+			assertEquals("record " + i, "{}", reader.next().toString());
+		}
+		assertTrue("specialized", reader.isSpecialized());
+		assertEquals("{\"a\":1}", reader.next().toString());
+		assertEquals("{}", reader.next().toString());
+		assertNull(reader.next());
+	}
+
+	@Test
+	public void testEntriesAreLimited() throws Exception {
+		String[] inputs = {
+			"{\"a\": 1, \"b\": 2}\n{\"a\": 1, \"b\": 2, \"c\": 3}", //generic path after the shape
+			"{\"a\": 1, \"b\": 2, \"c\": 3}\n{\"a\": 1, \"b\": 2, \"c\": 3}"}; //the shape itself
+		for (String input : inputs) {
+			JSONTokener tokener = new JSONTokener(input);
+			NDJSONReader reader = new NDJSONReader(tokener, 1);
+			reader.next();
+			assertTrue("specialized", reader.isSpecialized());
+			tokener.setLimits(JSONLimits.DEFAULT.withMaxEntries(2));
+			try {
+				reader.next();
+				fail("JSONException not thrown: " + input);
+			} catch(JSONException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("more than 2 values"));
+			}
+		}
+	}
+}